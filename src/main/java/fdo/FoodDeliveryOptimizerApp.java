@@ -10,6 +10,7 @@ import fdo.domain.*;
 
 import fdo.generator.Generator;
 import fdo.generator.JsonIO;
+import fdo.solver.CourierPoolGrowth;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 
@@ -27,6 +28,10 @@ public class FoodDeliveryOptimizerApp {
         String path = "src/main/resources/DeliveryProblem100.json";
         DeliverySolution problem = JsonIO.read_json(path); //New json solution
 
+        // the matrix comes first, pickup candidates are pruned by travel time
+        Router router = Router.getDefaultRouterInstance();
+        router.setDistanceTimeMap(problem);
+
         List<Visit> visits = Generator.VisitGenerator.generateAll(problem);
         problem.setVisitList(visits);
 
@@ -35,25 +40,30 @@ public class FoodDeliveryOptimizerApp {
     }
     private static void runBenchmark() {
         PlannerBenchmarkFactory benchmarkFactory = PlannerBenchmarkFactory.createFromXmlResource(
-                "benchmarkConfig.xml");
+                "BenchmarkConfig.xml");
+        Router router = Router.getDefaultRouterInstance();
 
         String path = "src/main/resources/DeliveryProblemSmall.json";
         DeliverySolution problem = JsonIO.read_json(path);
+        router.setDistanceTimeMap(problem);
         List<Visit> visits = Generator.VisitGenerator.generateAll(problem);
         problem.setVisitList(visits);
 
         String path2 = "src/main/resources/DeliveryProblem30.json";
         DeliverySolution problem2 = JsonIO.read_json(path2);
+        router.setDistanceTimeMap(problem2);
         List<Visit> visits2 = Generator.VisitGenerator.generateAll(problem2);
         problem2.setVisitList(visits2);
 
         String path3 = "src/main/resources/DeliveryProblem50.json";
         DeliverySolution problem3 = JsonIO.read_json(path3);
+        router.setDistanceTimeMap(problem3);
         List<Visit> visits3 = Generator.VisitGenerator.generateAll(problem3);
         problem3.setVisitList(visits3);
 
         String path4 = "src/main/resources/DeliveryProblem100.json";
         DeliverySolution problem4 = JsonIO.read_json(path4);
+        router.setDistanceTimeMap(problem4);
         List<Visit> visits4 = Generator.VisitGenerator.generateAll(problem4);
         problem4.setVisitList(visits4);
 
@@ -62,13 +72,12 @@ public class FoodDeliveryOptimizerApp {
     }
 
     private static void startSolution(DeliverySolution problem) {
-        Router router = Router.getDefaultRouterInstance();
-        router.setDistanceTimeMap(problem.getLocationList());
-
         SolverFactory<DeliverySolution> solverFactory =
                 SolverFactory.createFromXmlResource("solverConfig.xml");
 
         Solver<DeliverySolution> solver = solverFactory.buildSolver();
+        CourierPoolGrowth poolGrowth = new CourierPoolGrowth(solver::addProblemChange);
+        solver.addEventListener(event -> poolGrowth.onBestSolution(event.getNewBestSolution()));
         DeliverySolution solution = solver.solve(problem);
 
         var solutionManager = SolutionManager.create(solverFactory);
@@ -0,0 +1,875 @@
+package fdo;
+
+import ai.timefold.solver.core.api.domain.solution.cloner.SolutionCloner;
+import ai.timefold.solver.core.api.solver.SolverFactory;
+import ai.timefold.solver.core.api.solver.SolverJob;
+import ai.timefold.solver.core.api.solver.SolverManager;
+import ai.timefold.solver.core.config.constructionheuristic.ConstructionHeuristicPhaseConfig;
+import ai.timefold.solver.core.config.heuristic.selector.move.MoveSelectorConfig;
+import ai.timefold.solver.core.config.heuristic.selector.move.composite.UnionMoveSelectorConfig;
+import ai.timefold.solver.core.config.heuristic.selector.move.factory.MoveIteratorFactoryConfig;
+import ai.timefold.solver.core.config.localsearch.LocalSearchPhaseConfig;
+import ai.timefold.solver.core.config.phase.PhaseConfig;
+import ai.timefold.solver.core.config.phase.custom.CustomPhaseConfig;
+import ai.timefold.solver.core.config.solver.EnvironmentMode;
+import ai.timefold.solver.core.config.solver.SolverConfig;
+import ai.timefold.solver.core.config.solver.termination.TerminationConfig;
+import ai.timefold.solver.core.impl.domain.solution.cloner.FieldAccessingSolutionCloner;
+import ai.timefold.solver.core.impl.domain.solution.descriptor.SolutionDescriptor;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import fdo.domain.CourierShift;
+import fdo.domain.DeliverySolution;
+import fdo.domain.DeliverySolutionCloner;
+import fdo.domain.Location;
+import fdo.domain.Order;
+import fdo.domain.Router;
+import fdo.domain.TravelMatrix;
+import fdo.domain.TravelTimeCache;
+import fdo.domain.Visit;
+import fdo.generator.Generator;
+import fdo.generator.ProblemGenerator;
+import fdo.solver.CookingTimeline;
+import fdo.solver.OrderInsertionPhaseCommand;
+import fdo.solver.move.OrderCompatibility;
+import fdo.solver.move.OrderPairMoveIteratorFactory;
+import fdo.solver.move.OrderVisitIndex;
+import fdo.solver.live.InsertionRecommender;
+import fdo.solver.partition.PartitionedSolver;
+import fdo.solver.portfolio.PortfolioMember;
+import fdo.solver.portfolio.PortfolioSolver;
+import fdo.generator.JsonIO;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Micro benchmarks for the parts around the solver (matrix building etc.).
+ * Solver configurations themselves are compared with BenchmarkConfig.xml, see {@link FoodDeliveryOptimizerApp}.
+ */
+@Slf4j
+public class FoodDeliveryOptimizerBenchmarkApp {
+
+    private static final String PROBLEM_100 = "src/main/resources/DeliveryProblem100.json";
+    private static final String PROBLEM_50 = "src/main/resources/DeliveryProblem50.json";
+    private static final String REAL_SLOTS_200 = "data/real_slots_problem_200.json";
+
+    /**
+     * Runs the benchmark named by the first argument ({@code matrix} when there is none), e.g.
+     * {@code java fdo.FoodDeliveryOptimizerBenchmarkApp pickup-pruning}.
+     */
+    public static void main(String[] args) {
+        String benchmark = args.length == 0 ? "matrix" : args[0];
+        switch (benchmark) {
+            case "matrix" -> runMatrixBenchmark(PROBLEM_100);
+            case "many-to-many" -> runManyToManyBenchmark(PROBLEM_100);
+            case "matrix-lookup" -> runMatrixLookupBenchmark();
+            case "travel-time-cache" -> runTravelTimeCacheBenchmark(PROBLEM_100);
+            case "pickup-pruning" -> runPickupPruningBenchmark(PROBLEM_100);
+            case "shift-times" -> runShiftTimesBenchmark(PROBLEM_100);
+            case "cooking-timeline" -> runCookingTimelineBenchmark();
+            case "nearby" -> runNearbyBenchmark(PROBLEM_100, PROBLEM_50, REAL_SLOTS_200);
+            case "compatibility" -> runCompatibilityBenchmark(PROBLEM_100);
+            case "construction" -> runConstructionBenchmark(PROBLEM_100, PROBLEM_50);
+            case "solution-cloner" -> runSolutionClonerBenchmark(PROBLEM_100);
+            case "move-threads" -> runMoveThreadBenchmark();
+            case "partitioned" -> runPartitionedBenchmark(2_000);
+            case "portfolio" -> runPortfolioBenchmark(PROBLEM_100, PROBLEM_50);
+            case "recommendation" -> runRecommendationBenchmark(50, 200, 500);
+            default -> throw new IllegalArgumentException("Unknown benchmark " + benchmark + ", expected one of "
+                    + "matrix, many-to-many, matrix-lookup, travel-time-cache, pickup-pruning, shift-times, "
+                    + "cooking-timeline, nearby, compatibility, construction, solution-cloner, move-threads, "
+                    + "partitioned, portfolio, recommendation");
+        }
+    }
+
+    /**
+     * Builds the same distance/time matrix with 1, 2, 4, ... threads up to the number of cores,
+     * checks that every result equals the serial one and prints the speedup per thread count.
+     */
+    private static void runMatrixBenchmark(String path) {
+        try (Router defaultRouter = Router.getDefaultRouterInstance();
+             Router serialRouter = defaultRouter.withParallelism(1)) {
+            // measure the routing itself, not the persistent store or the cell cache
+            serialRouter.setMatrixStore(null);
+            serialRouter.setTravelTimeCache(null);
+
+            // warm up the graph caches before measuring
+            serialRouter.buildTravelMatrix(JsonIO.read_json(path).getLocationList(), (done, total) -> {});
+
+            List<Location> serialLocations = JsonIO.read_json(path).getLocationList();
+            long serialMillis = timeMatrix(serialRouter, serialLocations);
+            log.info("Matrix {}x{}: 1 thread(s) {} ms", serialLocations.size(), serialLocations.size(), serialMillis);
+
+            int cores = Runtime.getRuntime().availableProcessors();
+            for (int threads = 2; threads <= cores; threads *= 2) {
+                List<Location> locations = JsonIO.read_json(path).getLocationList();
+                long millis;
+                try (Router router = serialRouter.withParallelism(threads)) {
+                    millis = timeMatrix(router, locations);
+                }
+
+                if (!sameMatrix(serialLocations, locations)) {
+                    throw new IllegalStateException("Matrix built with " + threads + " threads differs from the serial one");
+                }
+                log.info("Matrix {}x{}: {} thread(s) {} ms, speedup {}",
+                        locations.size(), locations.size(), threads, millis,
+                        String.format("%.2f", (double) serialMillis / Math.max(1, millis)));
+            }
+        }
+    }
+
+    /**
+     * Compares the point-to-point matrix with the CH many-to-many one: build time and the largest cell difference.
+     * Small differences are expected where several paths have the same weight.
+     */
+    private static void runManyToManyBenchmark(String path) {
+        try (Router router = Router.getDefaultRouterInstance()) {
+            router.setMatrixStore(null);
+            router.setTravelTimeCache(null);
+
+            List<Location> pointToPoint = JsonIO.read_json(path).getLocationList();
+            router.setMatrixMode(Router.MatrixMode.POINT_TO_POINT);
+            long pointToPointMillis = timeMatrix(router, pointToPoint);
+
+            List<Location> manyToMany = JsonIO.read_json(path).getLocationList();
+            router.setMatrixMode(Router.MatrixMode.MANY_TO_MANY);
+            long manyToManyMillis = timeMatrix(router, manyToMany);
+
+            long maxTimeDifference = 0;
+            double maxDistanceDifference = 0;
+            for (int i = 0; i < pointToPoint.size(); i++) {
+                for (int j = 0; j < pointToPoint.size(); j++) {
+                    maxTimeDifference = Math.max(maxTimeDifference, Math.abs(
+                            pointToPoint.get(i).timeTo(pointToPoint.get(j))
+                                    - manyToMany.get(i).timeTo(manyToMany.get(j))));
+                    maxDistanceDifference = Math.max(maxDistanceDifference, Math.abs(
+                            pointToPoint.get(i).distanceTo(pointToPoint.get(j))
+                                    - manyToMany.get(i).distanceTo(manyToMany.get(j))));
+                }
+            }
+            log.info("Matrix {}x{}: point-to-point {} ms, many-to-many {} ms, max difference {} s / {} km",
+                    pointToPoint.size(), pointToPoint.size(), pointToPointMillis, manyToManyMillis,
+                    maxTimeDifference, String.format("%.3f", maxDistanceDifference));
+        }
+    }
+
+    /**
+     * Lookup cost and heap footprint of the former per-Location HashMaps against the dense TravelMatrix,
+     * filled with synthetic values so no routing is needed.
+     */
+    private static void runMatrixLookupBenchmark() {
+        for (int size : new int[] {200, 1_000, 5_000}) {
+            List<Location> locations = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                locations.add(new Location((long) i, 56.9 + i * 1e-5, 24.1 + i * 1e-5));
+            }
+            Random random = new Random(37);
+            int[] from = random.ints(LOOKUP_COUNT, 0, size).toArray();
+            int[] to = random.ints(LOOKUP_COUNT, 0, size).toArray();
+
+            long before = usedHeap();
+            TravelMatrix matrix = new TravelMatrix(size);
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    matrix.set(i, j, i + j, (i + j) / 100.0);
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                locations.get(i).setIndex(i);
+                locations.get(i).setTravelMatrix(matrix);
+            }
+            long matrixBytes = usedHeap() - before;
+
+            long sum = 0;
+            long start = System.nanoTime();
+            for (int k = 0; k < LOOKUP_COUNT; k++) {
+                sum += locations.get(from[k]).timeTo(locations.get(to[k]));
+            }
+            double matrixNanos = (double) (System.nanoTime() - start) / LOOKUP_COUNT;
+            log.info("{} locations, TravelMatrix: {} MB, {} ns/lookup (checksum {})",
+                    size, matrixBytes / 1_000_000, String.format("%.1f", matrixNanos), sum);
+
+            // the layout Location used before: two boxed HashMaps per location
+            try {
+                before = usedHeap();
+                List<Map<Location, Long>> timeMaps = new ArrayList<>(size);
+                List<Map<Location, Double>> distanceMaps = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    Map<Location, Long> timeMap = new HashMap<>();
+                    Map<Location, Double> distanceMap = new HashMap<>();
+                    for (int j = 0; j < size; j++) {
+                        timeMap.put(locations.get(j), (long) (i + j));
+                        distanceMap.put(locations.get(j), (i + j) / 100.0);
+                    }
+                    timeMaps.add(timeMap);
+                    distanceMaps.add(distanceMap);
+                }
+                long mapBytes = usedHeap() - before;
+
+                sum = 0;
+                start = System.nanoTime();
+                for (int k = 0; k < LOOKUP_COUNT; k++) {
+                    Long seconds = timeMaps.get(from[k]).get(locations.get(to[k]));
+                    sum += seconds != null ? seconds : 0;
+                }
+                double mapNanos = (double) (System.nanoTime() - start) / LOOKUP_COUNT;
+                log.info("{} locations, HashMaps:     {} MB, {} ns/lookup (checksum {}, {} distance maps)",
+                        size, mapBytes / 1_000_000, String.format("%.1f", mapNanos), sum, distanceMaps.size());
+            } catch (OutOfMemoryError e) {
+                log.info("{} locations, HashMaps:     do not fit into the heap ({} MB max)",
+                        size, Runtime.getRuntime().maxMemory() / 1_000_000);
+            }
+        }
+    }
+
+    /**
+     * Two overlapping jobs as dispatchers submit them every few minutes: the second one reads the same problem
+     * into new Location objects, with every fifth location moved a little, so most of its cells come from the cache.
+     */
+    private static void runTravelTimeCacheBenchmark(String path) {
+        try (Router router = Router.getDefaultRouterInstance()) {
+            router.setMatrixStore(null);
+            TravelTimeCache cache = new TravelTimeCache(TravelTimeCache.DEFAULT_MAX_CELLS);
+            router.setTravelTimeCache(cache);
+
+            // warm up the graph caches without filling the cell cache
+            router.setTravelTimeCache(null);
+            router.buildTravelMatrix(JsonIO.read_json(path).getLocationList(), (done, total) -> {});
+            router.setTravelTimeCache(cache);
+
+            List<Location> firstJob = JsonIO.read_json(path).getLocationList();
+            long firstMillis = timeMatrix(router, firstJob);
+            log.info("First job {}x{}: {} ms, cache {} cells", firstJob.size(), firstJob.size(), firstMillis,
+                    cache.getSize());
+
+            List<Location> secondJob = JsonIO.read_json(path).getLocationList();
+            for (int i = 0; i < secondJob.size(); i += 5) {
+                Location location = secondJob.get(i);
+                location.setLat(location.getLat() + 0.001);
+            }
+            long hitsBefore = cache.getHitCount();
+            long missesBefore = cache.getMissCount();
+            long secondMillis = timeMatrix(router, secondJob);
+            log.info("Second job {}x{}: {} ms, {} cache hits, {} misses, cache {} cells",
+                    secondJob.size(), secondJob.size(), secondMillis,
+                    cache.getHitCount() - hitsBefore, cache.getMissCount() - missesBefore, cache.getSize());
+
+            List<Location> repeatedJob = JsonIO.read_json(path).getLocationList();
+            long repeatedMillis = timeMatrix(router, repeatedJob);
+            if (!sameMatrix(firstJob, repeatedJob)) {
+                throw new IllegalStateException("Matrix read from the cache differs from the routed one");
+            }
+            log.info("Repeated job {}x{}: {} ms, hit ratio {}", repeatedJob.size(), repeatedJob.size(), repeatedMillis,
+                    String.format("%.2f", cache.getHitRatio()));
+        }
+    }
+
+    /**
+     * Solves the same problem with all chain restaurants and with the k fastest feasible ones as pickup candidates,
+     * for the same time each, and prints the visit count, score calculation speed and final score per k.
+     */
+    private static void runPickupPruningBenchmark(String path) {
+        try (Router router = Router.getDefaultRouterInstance()) {
+            for (int maxCandidates : new int[] {Generator.VisitGenerator.ALL_PICKUP_CANDIDATES, 5, 3, 2, 1}) {
+                DeliverySolution problem = JsonIO.read_json(path);
+                router.setDistanceTimeMap(problem);
+                problem.setVisitList(Generator.VisitGenerator.generateAll(problem, maxCandidates));
+
+                SolverRun run = solve(problem, BENCHMARK_SPENT_LIMIT);
+                log.info("Pickup candidates {}: {} visits, {} score calculations/s, score {}",
+                        maxCandidates == Generator.VisitGenerator.ALL_PICKUP_CANDIDATES ? "all" : maxCandidates,
+                        problem.getVisitList().size(), run.scoreCalculationSpeed(), run.solution().getScore());
+            }
+        }
+    }
+
+    /**
+     * Score calculation speed of a fixed time run, then the cost of reading start, end and duration of every
+     * shift of the result: from the first and last visit against the former scan over all visits.
+     * Compare the speed with a run on the commit before the change for the full before/after picture.
+     */
+    private static void runShiftTimesBenchmark(String path) {
+        try (Router router = Router.getDefaultRouterInstance()) {
+            DeliverySolution problem = JsonIO.read_json(path);
+            router.setDistanceTimeMap(problem);
+            problem.setVisitList(Generator.VisitGenerator.generateAll(problem));
+
+            SolverRun run = solve(problem, BENCHMARK_SPENT_LIMIT);
+            log.info("{}: {} score calculations/s, score {}", path, run.scoreCalculationSpeed(),
+                    run.solution().getScore());
+
+            List<CourierShift> shifts = run.solution().getCourierShifts().stream()
+                    .filter(CourierShift::isUsed)
+                    .toList();
+            long sum = 0;
+            long start = System.nanoTime();
+            for (int k = 0; k < SHIFT_READ_ROUNDS; k++) {
+                for (CourierShift shift : shifts) {
+                    sum += shift.getDurationMinutes() + shift.getStartMinute() + shift.getEndMinute();
+                }
+            }
+            double firstLastNanos =
+                    (double) (System.nanoTime() - start) / SHIFT_READ_ROUNDS / Math.max(1, shifts.size());
+
+            long scanSum = 0;
+            start = System.nanoTime();
+            for (int k = 0; k < SHIFT_READ_ROUNDS; k++) {
+                for (CourierShift shift : shifts) {
+                    scanSum += scanDuration(shift) + scanMinute(shift, true) + scanMinute(shift, false);
+                }
+            }
+            double scanNanos = (double) (System.nanoTime() - start) / SHIFT_READ_ROUNDS / Math.max(1, shifts.size());
+
+            if (sum != scanSum) {
+                throw new IllegalStateException("Shift times from the first and last visit differ from the scan");
+            }
+            log.info("{} used shifts: first/last visit {} ns/shift, scan {} ns/shift",
+                    shifts.size(), String.format("%.1f", firstLastNanos), String.format("%.1f", scanNanos));
+        }
+    }
+
+    private static final int SHIFT_READ_ROUNDS = 1_000_000;
+
+    // CourierShift.getStartMinute/getEndMinute before they read the first and last visit
+    private static Integer scanMinute(CourierShift shift, boolean start) {
+        return shift.getVisits().stream()
+                .map(Visit::getMinuteTime)
+                .filter(t -> t != null)
+                .reduce(start ? Integer::min : Integer::max)
+                .orElse(null);
+    }
+
+    private static int scanDuration(CourierShift shift) {
+        Integer start = scanMinute(shift, true);
+        Integer end = scanMinute(shift, false);
+        if (start == null || end == null) return 0;
+        return end - start;
+    }
+
+    /**
+     * Times the cooking capacity timeline against the former pairwise rule on random evenings of one busy restaurant
+     * (pickups and the odd customer at the same location). Correctness is covered by CookingTimelineTest.
+     */
+    private static void runCookingTimelineBenchmark() {
+        Random random = new Random(37);
+        for (int visitCount : new int[] {25, 100, 400, 1_600}) {
+            List<List<CookingTimeline.Entry>> evenings = new ArrayList<>();
+            for (int k = 0; k < TIMELINE_EVENINGS; k++) {
+                List<CookingTimeline.Entry> entries = new ArrayList<>(visitCount);
+                for (int i = 0; i < visitCount; i++) {
+                    int minuteTime = 1020 + random.nextInt(300);
+                    int cookTime = 5 + random.nextInt(40);
+                    boolean pickup = random.nextInt(10) != 0;
+                    entries.add(new CookingTimeline.Entry(random.nextInt(1_000_000), minuteTime - cookTime, minuteTime,
+                            pickup, pickup ? 1 + random.nextInt(8) : 0));
+                }
+                evenings.add(entries);
+            }
+
+            long timelineSum = 0;
+            long start = System.nanoTime();
+            for (List<CookingTimeline.Entry> entries : evenings) {
+                timelineSum += CookingTimeline.overloadedPickupCount(entries);
+            }
+            double timelineMicros = (System.nanoTime() - start) / 1000.0 / TIMELINE_EVENINGS;
+
+            long pairwiseSum = 0;
+            start = System.nanoTime();
+            for (List<CookingTimeline.Entry> entries : evenings) {
+                int pairwise = CookingTimeline.overloadedPickupCountPairwise(entries);
+                if (pairwise != CookingTimeline.overloadedPickupCount(entries)) {
+                    throw new IllegalStateException("Timeline differs from the pairwise rule for " + entries);
+                }
+                pairwiseSum += pairwise;
+            }
+            double pairwiseMicros = (System.nanoTime() - start) / 1000.0 / TIMELINE_EVENINGS;
+
+            log.info("{} visits: timeline {} us, pairwise (with check) {} us, {} overloaded pickups",
+                    visitCount, String.format("%.1f", timelineMicros), String.format("%.1f", pairwiseMicros),
+                    timelineSum == pairwiseSum ? timelineSum : "differing");
+        }
+    }
+
+    private static final int TIMELINE_EVENINGS = 200;
+
+    /**
+     * Time to the best score with the order pair moves placing orders anywhere against next to nearby visits,
+     * see {@link #readProblem} for the real slots instance.
+     */
+    private static void runNearbyBenchmark(String... paths) {
+        try (Router router = Router.getDefaultRouterInstance()) {
+            for (String path : paths) {
+                for (int nearbyDistributionSize : new int[] {0, 20}) {
+                    DeliverySolution problem = readProblem(path);
+                    router.setDistanceTimeMap(problem);
+                    problem.setVisitList(Generator.VisitGenerator.generateAll(problem));
+
+                    SolverConfig solverConfig = benchmarkSolverConfig(BENCHMARK_SPENT_LIMIT);
+                    setMoveIteratorFactoryProperty(solverConfig, OrderPairMoveIteratorFactory.class,
+                            "nearbyDistributionSize", String.valueOf(nearbyDistributionSize));
+                    SolverRun run = solve(problem, solverConfig);
+                    log.info("{}, nearby distribution size {}: best score {} after {} ms",
+                            path, nearbyDistributionSize, run.solution().getScore(), run.millisToBest());
+                }
+            }
+        }
+    }
+
+    /**
+     * A problem in the JsonIO format, or for {@link #REAL_SLOTS_200}, which is in the vehicle routing format of
+     * another tool, one order at each of its 200 real customer addresses with the restaurants, foods and order
+     * windows of DeliveryProblem100, see {@link ProblemGenerator}.
+     */
+    private static DeliverySolution readProblem(String path) {
+        if (path.equals(REAL_SLOTS_200)) {
+            return ProblemGenerator.generate(JsonIO.read_json(PROBLEM_100), JsonIO.read_customer_locations(path), 42);
+        }
+        return JsonIO.read_json(path);
+    }
+
+    /**
+     * Build time and share of incompatible order pairs, then score calculation speed and final score of fixed time
+     * runs without and with the compatibility filters on the stock list moves. The order pair moves check
+     * compatibility in both runs.
+     */
+    private static void runCompatibilityBenchmark(String path) {
+        try (Router router = Router.getDefaultRouterInstance()) {
+            DeliverySolution problem = JsonIO.read_json(path);
+            router.setDistanceTimeMap(problem);
+            problem.setVisitList(Generator.VisitGenerator.generateAll(problem));
+
+            long start = System.nanoTime();
+            OrderCompatibility compatibility = OrderCompatibility.of(OrderVisitIndex.of(problem, null), null);
+            long buildMillis = (System.nanoTime() - start) / 1_000_000;
+            long pairs = (long) compatibility.getOrderCount() * (compatibility.getOrderCount() - 1) / 2;
+            log.info("{} orders: compatibility built in {} ms, {} of {} pairs incompatible",
+                    compatibility.getOrderCount(), buildMillis, compatibility.getIncompatiblePairCount(), pairs);
+
+            for (boolean filtered : new boolean[] {false, true}) {
+                DeliverySolution runProblem = JsonIO.read_json(path);
+                router.setDistanceTimeMap(runProblem);
+                runProblem.setVisitList(Generator.VisitGenerator.generateAll(runProblem));
+
+                SolverConfig solverConfig = benchmarkSolverConfig(BENCHMARK_SPENT_LIMIT);
+                if (!filtered) {
+                    removeMoveFilters(solverConfig);
+                }
+                SolverRun run = solve(runProblem, solverConfig);
+                log.info("Filtered {}: {} score calculations/s, score {}",
+                        filtered, run.scoreCalculationSpeed(), run.solution().getScore());
+            }
+        }
+    }
+
+    /**
+     * Time and score of the construction phase alone: the stock construction heuristic against the cheapest
+     * insertion of whole orders (solverConfig.xml).
+     */
+    private static void runConstructionBenchmark(String... paths) {
+        try (Router router = Router.getDefaultRouterInstance()) {
+            for (String path : paths) {
+                for (PhaseConfig<?> construction : List.of(new ConstructionHeuristicPhaseConfig(),
+                        new CustomPhaseConfig()
+                                .withCustomPhaseCommandClassList(List.of(OrderInsertionPhaseCommand.class)))) {
+                    DeliverySolution problem = JsonIO.read_json(path);
+                    router.setDistanceTimeMap(problem);
+                    problem.setVisitList(Generator.VisitGenerator.generateAll(problem));
+
+                    SolverConfig solverConfig = SolverConfig.createFromXmlResource("solverConfig.xml")
+                            .withPhases(construction);
+                    long start = System.nanoTime();
+                    SolverRun run = solve(problem, solverConfig);
+                    log.info("{}, {}: {} orders, score {} in {} ms", path, construction.getClass().getSimpleName(),
+                            problem.getOrders().size(), run.solution().getScore(),
+                            (System.nanoTime() - start) / 1_000_000);
+                }
+            }
+        }
+    }
+
+    /**
+     * Clones a constructed solution with the reflection based cloner and with {@link DeliverySolutionCloner},
+     * checks that both clones are equal and prints the time per clone. Then solves for a while with FULL_ASSERT,
+     * which clones every new best solution and fails on a clone that scores differently from its original.
+     */
+    private static void runSolutionClonerBenchmark(String path) {
+        try (Router router = Router.getDefaultRouterInstance()) {
+            DeliverySolution problem = JsonIO.read_json(path);
+            router.setDistanceTimeMap(problem);
+            problem.setVisitList(Generator.VisitGenerator.generateAll(problem));
+            DeliverySolution solution = solve(problem, SolverConfig.createFromXmlResource("solverConfig.xml")
+                    .withPhases(new CustomPhaseConfig()
+                            .withCustomPhaseCommandClassList(List.of(OrderInsertionPhaseCommand.class))))
+                    .solution();
+
+            SolutionCloner<DeliverySolution> reflectionCloner = new FieldAccessingSolutionCloner<>(SolutionDescriptor
+                    .buildSolutionDescriptor(DeliverySolution.class, CourierShift.class, Visit.class));
+            SolutionCloner<DeliverySolution> handWrittenCloner = new DeliverySolutionCloner();
+            String difference = cloneDifference(reflectionCloner.cloneSolution(solution),
+                    handWrittenCloner.cloneSolution(solution), solution);
+            log.info("{} couriers, {} visits, clones equal: {}", solution.getCourierShifts().size(),
+                    solution.getVisitList().size(), difference == null ? "yes" : "no, " + difference);
+
+            for (SolutionCloner<DeliverySolution> cloner : List.of(reflectionCloner, handWrittenCloner)) {
+                for (int i = 0; i < CLONE_ROUNDS / 10; i++) {
+                    cloner.cloneSolution(solution);
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < CLONE_ROUNDS; i++) {
+                    cloner.cloneSolution(solution);
+                }
+                log.info("{}: {} us per clone", cloner.getClass().getSimpleName(),
+                        (System.nanoTime() - start) / 1_000 / CLONE_ROUNDS);
+            }
+
+            DeliverySolution asserted = JsonIO.read_json(path);
+            router.setDistanceTimeMap(asserted);
+            asserted.setVisitList(Generator.VisitGenerator.generateAll(asserted));
+            SolverRun run = solve(asserted, benchmarkSolverConfig(Duration.ofSeconds(20))
+                    .withEnvironmentMode(EnvironmentMode.FULL_ASSERT));
+            log.info("FULL_ASSERT run finished with score {}", run.solution().getScore());
+        }
+    }
+
+    private static final int CLONE_ROUNDS = 10_000;
+
+    /**
+     * Null when both clones have the same planning state and share the facts of the original, else what differs.
+     */
+    private static String cloneDifference(DeliverySolution expected, DeliverySolution actual,
+                                          DeliverySolution original) {
+        if (actual.getOrders().size() != original.getOrders().size()
+                || actual.getOrders().get(0) != original.getOrders().get(0)) {
+            return "orders are not shared";
+        }
+        if (!Objects.equals(expected.getScore(), actual.getScore())) {
+            return "score";
+        }
+        for (int i = 0; i < expected.getCourierShifts().size(); i++) {
+            CourierShift e = expected.getCourierShifts().get(i);
+            CourierShift a = actual.getCourierShifts().get(i);
+            if (a == original.getCourierShifts().get(i) || !e.getId().equals(a.getId())
+                    || e.getHotCapacity() != a.getHotCapacity() || e.getColdCapacity() != a.getColdCapacity()
+                    || !visitIds(e.getVisits()).equals(visitIds(a.getVisits()))) {
+                return "courier " + e.getId();
+            }
+        }
+        for (int i = 0; i < expected.getVisitList().size(); i++) {
+            Visit e = expected.getVisitList().get(i);
+            Visit a = actual.getVisitList().get(i);
+            if (a == original.getVisitList().get(i) || !e.getId().equals(a.getId())
+                    || e.getLocation() != a.getLocation() || e.getOrder() != a.getOrder()
+                    || (a.getCourier() != null && !actual.getCourierShifts().contains(a.getCourier()))
+                    || !Objects.equals(courierId(e), courierId(a))
+                    || !Objects.equals(visitId(e.getPreviousVisit()), visitId(a.getPreviousVisit()))
+                    || !Objects.equals(visitId(e.getNextVisit()), visitId(a.getNextVisit()))
+                    || !Objects.equals(e.getMinuteTime(), a.getMinuteTime())
+                    || !Objects.equals(e.getRoadTime(), a.getRoadTime())
+                    || !Objects.equals(e.getHotLoad(), a.getHotLoad())
+                    || !Objects.equals(e.getColdLoad(), a.getColdLoad())) {
+                return "visit " + e.getId();
+            }
+        }
+        return null;
+    }
+
+    private static List<Long> visitIds(List<Visit> visits) {
+        return visits.stream().map(Visit::getId).toList();
+    }
+
+    private static Long visitId(Visit visit) {
+        return visit == null ? null : visit.getId();
+    }
+
+    private static String courierId(Visit visit) {
+        return visit.getCourier() == null ? null : visit.getCourier().getId();
+    }
+
+    /**
+     * Moves evaluated per second against move thread count, at 50, 100 and 200 orders. There is no 200 order
+     * problem in JsonIO format, so it is DeliveryProblem100 with every order twice.
+     * Move threads need Timefold Solver Enterprise Edition, the enterprise build profile, without it only NONE runs.
+     */
+    private static void runMoveThreadBenchmark() {
+        try (Router router = Router.getDefaultRouterInstance()) {
+            Map<String, Supplier<DeliverySolution>> problems = new LinkedHashMap<>();
+            problems.put("50 orders", () -> JsonIO.read_json("src/main/resources/DeliveryProblem50.json"));
+            problems.put("100 orders", () -> JsonIO.read_json("src/main/resources/DeliveryProblem100.json"));
+            problems.put("200 orders", () -> scaledProblem("src/main/resources/DeliveryProblem100.json", 2));
+
+            List<String> moveThreadCounts = List.of(SolverConfig.MOVE_THREAD_COUNT_NONE, "2", "4",
+                    SolverConfig.MOVE_THREAD_COUNT_AUTO);
+            // the Community Edition refuses to build a solver with move threads at all
+            try {
+                SolverFactory.<DeliverySolution>create(benchmarkSolverConfig(BENCHMARK_SPENT_LIMIT)
+                        .withMoveThreadCount("1")).buildSolver();
+            } catch (RuntimeException e) {
+                log.info("Move threads not available, running NONE only ({})", e.getMessage());
+                moveThreadCounts = List.of(SolverConfig.MOVE_THREAD_COUNT_NONE);
+            }
+
+            for (Map.Entry<String, Supplier<DeliverySolution>> entry : problems.entrySet()) {
+                for (String moveThreadCount : moveThreadCounts) {
+                    DeliverySolution problem = entry.getValue().get();
+                    router.setDistanceTimeMap(problem);
+                    problem.setVisitList(Generator.VisitGenerator.generateAll(problem));
+                    SolverRun run = solve(problem, benchmarkSolverConfig(BENCHMARK_SPENT_LIMIT)
+                            .withMoveThreadCount(moveThreadCount));
+                    log.info("{}, move threads {}: {} moves/s, score {}", entry.getKey(), moveThreadCount,
+                            run.moveEvaluationSpeed(), run.solution().getScore());
+                }
+            }
+        }
+    }
+
+    /**
+     * Generated problem of {@code orderCount} orders, solved as a whole and partitioned into one part per core,
+     * for the same wall time: the partitions for most of it, then the merged result as a whole.
+     */
+    private static void runPartitionedBenchmark(int orderCount) {
+        try (Router router = Router.getDefaultRouterInstance()) {
+            DeliverySolution base = JsonIO.read_json("src/main/resources/DeliveryProblem100.json");
+            Duration total = PartitionedSolver.DEFAULT_PARTITION_SPENT_LIMIT
+                    .plus(PartitionedSolver.DEFAULT_REFINEMENT_SPENT_LIMIT);
+
+            DeliverySolution monolithic = ProblemGenerator.generate(base, orderCount, PROBLEM_SEED);
+            router.setDistanceTimeMap(monolithic);
+            monolithic.setVisitList(Generator.VisitGenerator.generateAll(monolithic));
+            SolverRun whole = solve(monolithic, benchmarkSolverConfig(total));
+            log.info("{} orders as a whole for {}: score {}", orderCount, total, whole.solution().getScore());
+
+            DeliverySolution problem = ProblemGenerator.generate(base, orderCount, PROBLEM_SEED);
+            router.setDistanceTimeMap(problem);
+            problem.setVisitList(Generator.VisitGenerator.generateAll(problem));
+            int partitions = Runtime.getRuntime().availableProcessors();
+            long start = System.nanoTime();
+            SolverConfig solverConfig = SolverConfig.createFromXmlResource("solverConfig.xml");
+            DeliverySolution merged;
+            try (PartitionedSolver partitionedSolver = new PartitionedSolver(solverConfig)) {
+                merged = partitionedSolver.solvePartitions("benchmark", problem, partitions,
+                        PartitionedSolver.DEFAULT_PARTITION_SPENT_LIMIT);
+            }
+            SolverRun refined = solve(merged, benchmarkSolverConfig(PartitionedSolver.DEFAULT_REFINEMENT_SPENT_LIMIT));
+            log.info("{} orders in {} partitions: score {} in {} ms", orderCount, partitions,
+                    refined.solution().getScore(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private static final long PROBLEM_SEED = 42;
+
+    /**
+     * Each problem solved by the configured solver alone, then by a portfolio of one solver per member,
+     * both for {@link #BENCHMARK_SPENT_LIMIT}.
+     */
+    private static void runPortfolioBenchmark(String... paths) {
+        SolverConfig solverConfig = benchmarkSolverConfig(BENCHMARK_SPENT_LIMIT);
+        int cores = Math.min(PortfolioMember.DEFAULT_MEMBERS.size(), Runtime.getRuntime().availableProcessors());
+        try (Router router = Router.getDefaultRouterInstance();
+             PortfolioSolver portfolioSolver = new PortfolioSolver(solverConfig, PortfolioMember.DEFAULT_MEMBERS,
+                     cores, BENCHMARK_SPENT_LIMIT.dividedBy(3))) {
+            for (String path : paths) {
+                DeliverySolution single = JsonIO.read_json(path);
+                router.setDistanceTimeMap(single);
+                single.setVisitList(Generator.VisitGenerator.generateAll(single));
+                SolverRun run = solve(single, solverConfig);
+                log.info("{} single solver: score {}", path, run.solution().getScore());
+
+                DeliverySolution problem = JsonIO.read_json(path);
+                router.setDistanceTimeMap(problem);
+                problem.setVisitList(Generator.VisitGenerator.generateAll(problem));
+                try {
+                    DeliverySolution best = portfolioSolver.solve(path, problem, cores, solution -> {}).get();
+                    log.info("{} portfolio of {}: score {}", path, cores, best.getScore());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        }
+    }
+
+    /**
+     * Generated problems of the given sizes, solved for {@link #RECOMMENDATION_SPENT_LIMIT} without their last
+     * {@link #RECOMMENDATION_PROBES} orders, then the latency of recommending each of those as a new order.
+     */
+    private static void runRecommendationBenchmark(int... orderCounts) {
+        try (Router router = Router.getDefaultRouterInstance()) {
+            DeliverySolution base = JsonIO.read_json("src/main/resources/DeliveryProblem100.json");
+            InsertionRecommender recommender = new InsertionRecommender(
+                    SolverFactory.create(SolverConfig.createFromXmlResource("solverConfig.xml")), router);
+
+            for (int orderCount : orderCounts) {
+                DeliverySolution problem = ProblemGenerator.generate(base, orderCount + RECOMMENDATION_PROBES,
+                        PROBLEM_SEED);
+                router.setDistanceTimeMap(problem);
+                List<Order> orders = problem.getOrders();
+                List<Order> probes = new ArrayList<>(orders.subList(orderCount, orders.size()));
+                problem.setOrders(new ArrayList<>(orders.subList(0, orderCount)));
+                problem.setVisitList(Generator.VisitGenerator.generateAll(problem));
+                DeliverySolution solution = solve(problem, RECOMMENDATION_SPENT_LIMIT).solution();
+
+                for (Order probe : probes) {
+                    recommender.recommend(solution, probe, InsertionRecommender.DEFAULT_TOP_K); // warm up
+                }
+                long[] micros = new long[probes.size()];
+                int options = 0;
+                for (int i = 0; i < probes.size(); i++) {
+                    long start = System.nanoTime();
+                    options += recommender.recommend(solution, probes.get(i), InsertionRecommender.DEFAULT_TOP_K)
+                            .size();
+                    micros[i] = (System.nanoTime() - start) / 1_000;
+                }
+                Arrays.sort(micros);
+                log.info("{} orders: recommendation median {} ms, p95 {} ms, max {} ms, {} options per order",
+                        orderCount, micros[micros.length / 2] / 1_000.0, micros[micros.length * 95 / 100] / 1_000.0,
+                        micros[micros.length - 1] / 1_000.0, options / probes.size());
+            }
+        }
+    }
+
+    private static final int RECOMMENDATION_PROBES = 40;
+    private static final Duration RECOMMENDATION_SPENT_LIMIT = Duration.ofSeconds(10);
+
+    /**
+     * The problem with each order {@code factor} times, copies get an id suffix and keep their windows.
+     */
+    private static DeliverySolution scaledProblem(String path, int factor) {
+        try {
+            JsonNode root = new ObjectMapper().readTree(new File(path));
+            ArrayNode orders = (ArrayNode) root.get("orders");
+            int originalCount = orders.size();
+            for (int copy = 1; copy < factor; copy++) {
+                for (int i = 0; i < originalCount; i++) {
+                    ObjectNode order = orders.get(i).deepCopy();
+                    order.put("id", order.get("id").asText() + "-" + copy);
+                    orders.add(order);
+                }
+            }
+            return JsonIO.parse_json(root);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read JSON: " + path, e);
+        }
+    }
+
+    private static final Duration BENCHMARK_SPENT_LIMIT = Duration.ofSeconds(30);
+
+    /**
+     * @param millisToBest time from the start until the final best solution was found
+     */
+    private record SolverRun(DeliverySolution solution, long scoreCalculationSpeed, long moveEvaluationSpeed,
+                             long millisToBest) {}
+
+    /**
+     * Solves with solverConfig.xml, but for a fixed time instead of until diminished returns,
+     * so runs of different variants do the same amount of work.
+     */
+    private static SolverRun solve(DeliverySolution problem, Duration spentLimit) {
+        return solve(problem, benchmarkSolverConfig(spentLimit));
+    }
+
+    private static SolverConfig benchmarkSolverConfig(Duration spentLimit) {
+        return SolverConfig.createFromXmlResource("solverConfig.xml")
+                .withTerminationConfig(new TerminationConfig().withSpentLimit(spentLimit));
+    }
+
+    private static SolverRun solve(DeliverySolution problem, SolverConfig solverConfig) {
+        try (SolverManager<DeliverySolution, String> solverManager = SolverManager.create(solverConfig)) {
+            long start = System.nanoTime();
+            AtomicLong lastBestNanos = new AtomicLong(start);
+            SolverJob<DeliverySolution, String> job = solverManager.solveBuilder()
+                    .withProblemId("benchmark")
+                    .withProblem(problem)
+                    .withBestSolutionConsumer(solution -> lastBestNanos.set(System.nanoTime()))
+                    .run();
+            DeliverySolution solution = job.getFinalBestSolution();
+            return new SolverRun(solution, job.getScoreCalculationSpeed(), job.getMoveEvaluationSpeed(),
+                    (lastBestNanos.get() - start) / 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while solving", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Solving failed", e.getCause());
+        }
+    }
+
+    /**
+     * Sets a custom property of every move iterator factory of the given class in the local search phases.
+     */
+    private static void setMoveIteratorFactoryProperty(SolverConfig solverConfig, Class<?> factoryClass,
+                                                       String name, String value) {
+        for (PhaseConfig<?> phaseConfig : solverConfig.getPhaseConfigList()) {
+            if (phaseConfig instanceof LocalSearchPhaseConfig localSearch
+                    && localSearch.getMoveSelectorConfig() instanceof UnionMoveSelectorConfig union) {
+                for (MoveSelectorConfig<?> moveSelector : union.getMoveSelectorList()) {
+                    if (moveSelector instanceof MoveIteratorFactoryConfig factory
+                            && factory.getMoveIteratorFactoryClass() == factoryClass) {
+                        Map<String, String> properties = factory.getMoveIteratorFactoryCustomProperties() == null
+                                ? new HashMap<>()
+                                : new HashMap<>(factory.getMoveIteratorFactoryCustomProperties());
+                        properties.put(name, value);
+                        factory.setMoveIteratorFactoryCustomProperties(properties);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the filterClass of every stock move selector in the local search phases.
+     */
+    private static void removeMoveFilters(SolverConfig solverConfig) {
+        for (PhaseConfig<?> phaseConfig : solverConfig.getPhaseConfigList()) {
+            if (phaseConfig instanceof LocalSearchPhaseConfig localSearch
+                    && localSearch.getMoveSelectorConfig() instanceof UnionMoveSelectorConfig union) {
+                for (MoveSelectorConfig<?> moveSelector : union.getMoveSelectorList()) {
+                    moveSelector.setFilterClass(null);
+                }
+            }
+        }
+    }
+
+    private static final int LOOKUP_COUNT = 20_000_000;
+
+    private static long usedHeap() {
+        System.gc();
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+
+    private static long timeMatrix(Router router, List<Location> locations) {
+        long start = System.nanoTime();
+        router.buildTravelMatrix(locations, (done, total) -> {});
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static boolean sameMatrix(List<Location> expected, List<Location> actual) {
+        for (int i = 0; i < expected.size(); i++) {
+            for (int j = 0; j < expected.size(); j++) {
+                Location expectedTo = expected.get(j);
+                Location actualTo = actual.get(j);
+                if (expected.get(i).timeTo(expectedTo) != actual.get(i).timeTo(actualTo)
+                        || expected.get(i).distanceTo(expectedTo) != actual.get(i).distanceTo(actualTo)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
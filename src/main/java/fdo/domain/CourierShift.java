@@ -1,13 +1,13 @@
 package fdo.domain;
 
 import ai.timefold.solver.core.api.domain.entity.PlanningEntity;
+import ai.timefold.solver.core.api.domain.entity.PlanningPinToIndex;
 import ai.timefold.solver.core.api.domain.lookup.PlanningId;
 import ai.timefold.solver.core.api.domain.variable.*;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 
 @PlanningEntity
@@ -24,6 +24,10 @@ public class CourierShift {
     @PlanningListVariable(valueRangeProviderRefs = "visitList", allowsUnassignedValues = true)
     List<Visit> visits = new ArrayList<>();
 
+    // visits before this index are dispatched, the solver neither moves them nor inserts anything before them
+    @PlanningPinToIndex
+    private int pinIndex;
+
     //public CourierShift(String c2, int i, int i1) {}
     public CourierShift() {
         // Required by Timefold
@@ -38,70 +42,47 @@ public class CourierShift {
         this.coldCapacity = coldCapacity;
     }
 
+    /**
+     * Copy for {@link DeliverySolutionCloner}, with an empty visit list of the given capacity to be filled with
+     * the cloned visits.
+     */
+    CourierShift(CourierShift original, int visitCapacity) {
+        this.id = original.id;
+        this.hotCapacity = original.hotCapacity;
+        this.coldCapacity = original.coldCapacity;
+        this.pinIndex = original.pinIndex;
+        this.visits = new ArrayList<>(visitCapacity);
+    }
+
     //public int getEndMinute() { return startMinute + durationMinutes; }
+    // Visit times are cascaded along the list and never decrease, so the shift starts at the first visit
+    // and ends at the last one, both kept up to date by the solver whenever the list changes
     public Integer getEndMinute() {
-        return visits.stream()
-                .map(Visit::getMinuteTime)
-                .filter(t -> t != null)
-                .max(Integer::compareTo)
-                .orElse(null);
+        return visits.isEmpty() ? null : visits.get(visits.size() - 1).getMinuteTime();
     }
 
     public Integer getStartMinute() {
-        return visits.stream()
-                .map(Visit::getMinuteTime)
-                .filter(t -> t != null)
-                .min(Integer::compareTo)
-                .orElse(null);
+        return visits.isEmpty() ? null : visits.get(0).getMinuteTime();
     }
 
     public int getDurationMinutes() {
-        Integer start = getStartMinute();
-        Integer end = getEndMinute();
-        if (start == null || end == null) return 0;
-        return end - start;
+        if (visits.isEmpty()) return 0;
+        Visit first = visits.get(0);
+        Visit last = visits.get(visits.size() - 1);
+        if (first.getMinuteTime() == null || last.getMinuteTime() == null) return 0;
+        return last.getMinuteTime() - first.getMinuteTime();
     }
 
+    /**
+     * Whether the load after any visit exceeds a compartment, see {@link Visit#isCapacityExceeded()}.
+     * Visit times never decrease along the list, so the list order is the chronological order.
+     */
     public boolean isAnyCapacityExceeded() {
-        int currentHotVolume = 0;
-        int currentColdVolume = 0;
-
-        int hotCap = this.getHotCapacity();
-        int coldCap = this.getColdCapacity();
-
-        // 1. Sort visits chronologically
-        List<Visit> sortedVisits = this.getVisits().stream()
-                .sorted(Comparator.comparingInt(Visit::getMinuteTime))
-                .toList();
-
-        // 2. Single-pass evaluation
-        for (Visit visit : sortedVisits) {
-            List<Food> foods = visit.getOrder().getFoods();
-
-            // Calculate volumes for this specific visit
-            int hotChange = foods.stream()
-                    .filter(f -> f.getTemperature() == Food.Temperature.HOT)
-                    .mapToInt(Food::getVolume).sum();
-
-            int coldChange = foods.stream()
-                    .filter(f -> f.getTemperature() == Food.Temperature.COLD)
-                    .mapToInt(Food::getVolume).sum();
-
-            // 3. Update load based on visit type
-            if (visit.getType() == Visit.VisitType.RESTAURANT) {
-                currentHotVolume += hotChange;
-                currentColdVolume += coldChange;
-            } else {
-                currentHotVolume -= hotChange;
-                currentColdVolume -= coldChange;
-            }
-
-            // 4. Check for violations in either compartment
-            if (currentHotVolume > hotCap || currentColdVolume > coldCap) {
+        for (Visit visit : visits) {
+            if (visit.isCapacityExceeded()) {
                 return true;
             }
         }
-
         return false;
     }
 }
\ No newline at end of file
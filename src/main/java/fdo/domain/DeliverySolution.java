@@ -4,13 +4,14 @@ import ai.timefold.solver.core.api.domain.solution.*;
 import ai.timefold.solver.core.api.domain.valuerange.ValueRangeProvider;
 import ai.timefold.solver.core.api.score.buildin.hardsoft.HardSoftScore;
 import ai.timefold.solver.core.api.solver.SolverStatus;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.util.List;
 import java.util.ArrayList;
 
-@PlanningSolution
+@PlanningSolution(solutionCloner = DeliverySolutionCloner.class)
 @Getter
 @Setter
 public class DeliverySolution {
@@ -42,6 +43,10 @@ public class DeliverySolution {
     @ProblemFactCollectionProperty
     List<Location> locationList = new ArrayList<>();
 
+    // shared by reference between planning clones, filled by Router
+    @JsonIgnore
+    private TravelMatrix travelMatrix;
+
     public DeliverySolution() {}
 
     public DeliverySolution(List<CourierShift> courierShifts, List<Order> orders) {
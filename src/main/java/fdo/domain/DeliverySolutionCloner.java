@@ -0,0 +1,82 @@
+package fdo.domain;
+
+import ai.timefold.solver.core.api.domain.solution.cloner.SolutionCloner;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Planning clone of a {@link DeliverySolution} without reflection: only courier shifts and visits are copied,
+ * with their shadow values, and everything else (orders, foods, restaurants, locations, the travel matrix) is shared
+ * with the original. The fact lists themselves are copied, so a problem change adding to the working solution's
+ * lists leaves the best solution alone.
+ * <p>
+ * Must be kept in line with the fields of DeliverySolution, CourierShift and Visit.
+ */
+public class DeliverySolutionCloner implements SolutionCloner<DeliverySolution> {
+
+    @Override
+    public DeliverySolution cloneSolution(DeliverySolution original) {
+        List<Visit> visits = original.getVisitList();
+        List<CourierShift> couriers = original.getCourierShifts();
+        Map<Object, Object> clones = new IdentityHashMap<>(size(visits) + size(couriers));
+
+        List<Visit> visitClones = null;
+        if (visits != null) {
+            visitClones = new ArrayList<>(visits.size());
+            for (Visit visit : visits) {
+                Visit clone = new Visit(visit);
+                clones.put(visit, clone);
+                visitClones.add(clone);
+            }
+        }
+
+        List<CourierShift> courierClones = null;
+        if (couriers != null) {
+            courierClones = new ArrayList<>(couriers.size());
+            for (CourierShift courier : couriers) {
+                CourierShift clone = new CourierShift(courier, courier.getVisits().size());
+                for (Visit visit : courier.getVisits()) {
+                    clone.getVisits().add((Visit) clones.get(visit));
+                }
+                clones.put(courier, clone);
+                courierClones.add(clone);
+            }
+        }
+
+        if (visitClones != null) {
+            for (Visit clone : visitClones) {
+                clone.setCourier((CourierShift) remap(clones, clone.getCourier()));
+                clone.setPreviousVisit((Visit) remap(clones, clone.getPreviousVisit()));
+                clone.setNextVisit((Visit) remap(clones, clone.getNextVisit()));
+            }
+        }
+
+        DeliverySolution clone = new DeliverySolution();
+        clone.setSolverStatus(original.getSolverStatus());
+        clone.setCourierShifts(courierClones);
+        clone.setVisitList(visitClones);
+        clone.setScore(original.getScore());
+        clone.setRestaurantList(copy(original.getRestaurantList()));
+        clone.setFoods(copy(original.getFoods()));
+        clone.setOrders(copy(original.getOrders()));
+        clone.setLocations(copy(original.getLocations()));
+        clone.setLocationList(copy(original.getLocationList()));
+        clone.setTravelMatrix(original.getTravelMatrix());
+        return clone;
+    }
+
+    private static Object remap(Map<Object, Object> clones, Object original) {
+        return original == null ? null : clones.get(original);
+    }
+
+    private static <T> List<T> copy(List<T> list) {
+        return list == null ? null : new ArrayList<>(list);
+    }
+
+    private static int size(List<?> list) {
+        return list == null ? 0 : list.size();
+    }
+}
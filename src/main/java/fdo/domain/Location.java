@@ -5,10 +5,14 @@ import com.graphhopper.util.shapes.GHPoint;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * Problem fact shared by every planning clone and move thread. Equality is identity, which is what the constraint
+ * streams group and join visits by, and nothing here changes while solving: the matrix and index are set by
+ * {@link Router} before. An order added while solving only rebinds the locations to a matrix extended by its
+ * location, which holds the same cells at the same indices, see {@link Router#extendTravelMatrix}.
+ */
 @Getter
 @Setter
 public class Location {
@@ -32,22 +36,31 @@ public class Location {
         return Math.round((this.distanceTo(location) / SPEED) * 3600);
     }
 
+    // row/column of this location in the travelMatrix, assigned by Router
     @JsonIgnore
-    private Map<Location, Double> distanceMap = new HashMap<>();
+    private int index = -1;
 
     @JsonIgnore
-    private Map<Location, Long> timeMap = new HashMap<>();
+    private TravelMatrix travelMatrix;
 
-    @JsonIgnore
-    private Map<Location, List<GHPoint>> pathMap = new HashMap<>();
-
-    public Double distanceTo(Location location) {
-        return this.distanceMap.get(location);
+    public double distanceTo(Location location) {
+        if (travelMatrix == null) {
+            return 0;
+        }
+        return travelMatrix.distance(index, location.index);
     }
 
-    public Long timeTo(Location location) {
-        return this.timeMap.get(location);
+    public long timeTo(Location location) {
+        if (travelMatrix == null) {
+            return 0;
+        }
+        return travelMatrix.time(index, location.index);
     }
 
-    public List<GHPoint> pathTo(Location location) { return this.pathMap.get(location); }
+    public List<GHPoint> pathTo(Location location) {
+        if (travelMatrix == null || travelMatrix.getGeometry() == null) {
+            return null;
+        }
+        return travelMatrix.getGeometry().path(this, location);
+    }
 }
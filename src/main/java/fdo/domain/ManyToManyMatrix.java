@@ -0,0 +1,260 @@
+package fdo.domain;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.ch.ShortcutUnpacker;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.RoutingCHEdgeExplorer;
+import com.graphhopper.storage.RoutingCHEdgeIterator;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.PMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Bucket based many-to-many search on the contraction hierarchy prepared by {@link Router}.
+ * <p>
+ * Every location is snapped once. One backward upward search per target fills buckets at the nodes it settles,
+ * then one forward upward search per source scans those buckets, so a full N x N matrix costs 2N small searches
+ * instead of N² point-to-point queries. Time and distance are summed along the best-weight path, and each
+ * {@link UpwardSearch} memoizes the shortcuts it unpacks: the backward search serves all targets with one memo, every
+ * forward search (one per source row) has its own.
+ */
+class ManyToManyMatrix {
+
+    /**
+     * Flat row-major matrix, {@code index = from * size + to}.
+     * Times in seconds and distances in kilometers, same units as {@link Location#timeTo}/{@link Location#distanceTo}.
+     */
+    record Result(int size, long[] times, double[] distances) {}
+
+    private record Label(int node, double weight, long millis, double meters) {}
+
+    private record BucketEntry(int target, double weight, long millis, double meters) {}
+
+    private final GraphHopper hopper;
+    private final String profileName;
+
+    ManyToManyMatrix(GraphHopper hopper, String profileName) {
+        this.hopper = hopper;
+        this.profileName = profileName;
+    }
+
+    Result calculate(List<Location> sources, List<Location> targets, ForkJoinPool pool,
+                     Router.ProgressListener progressListener) {
+        // a full square matrix only needs every location snapped once
+        boolean square = sources == targets;
+        List<Location> all = new ArrayList<>(sources);
+        if (!square) {
+            all.addAll(targets);
+        }
+        List<Snap> snaps = snap(all);
+
+        QueryGraph queryGraph = QueryGraph.create(hopper.getBaseGraph(), snaps);
+        RoutingCHGraph chGraph = new QueryRoutingCHGraph(hopper.getCHGraphs().get(profileName), queryGraph);
+        int baseNodeCount = hopper.getBaseGraph().getNodes();
+
+        // closest nodes have to be read after QueryGraph.create, which replaces them with the virtual nodes
+        int[] sourceNodes = new int[sources.size()];
+        int[] targetNodes = new int[targets.size()];
+        for (int i = 0; i < sourceNodes.length; i++) {
+            sourceNodes[i] = snaps.get(i).getClosestNode();
+        }
+        for (int i = 0; i < targetNodes.length; i++) {
+            targetNodes[i] = snaps.get(square ? i : sourceNodes.length + i).getClosestNode();
+        }
+
+        Map<Integer, List<BucketEntry>> buckets = new HashMap<>();
+        UpwardSearch backwardSearch = new UpwardSearch(chGraph, baseNodeCount, true);
+        for (int t = 0; t < targetNodes.length; t++) {
+            int target = t;
+            backwardSearch.run(targetNodes[t], label -> buckets
+                    .computeIfAbsent(label.node(), node -> new ArrayList<>())
+                    .add(new BucketEntry(target, label.weight(), label.millis(), label.meters())));
+        }
+
+        long[] times = new long[sources.size() * targets.size()];
+        double[] distances = new double[sources.size() * targets.size()];
+        AtomicInteger completedRows = new AtomicInteger();
+        // buckets are read-only from here on, so the forward searches can run in parallel
+        if (pool == null) {
+            for (int s = 0; s < sourceNodes.length; s++) {
+                calculateRow(chGraph, baseNodeCount, buckets, sources, targets, s, sourceNodes[s], times, distances);
+                progressListener.onProgress(completedRows.incrementAndGet(), sourceNodes.length);
+            }
+        } else {
+            try {
+                pool.submit(() -> IntStream.range(0, sourceNodes.length).parallel().forEach(s -> {
+                    calculateRow(chGraph, baseNodeCount, buckets, sources, targets, s, sourceNodes[s], times, distances);
+                    progressListener.onProgress(completedRows.incrementAndGet(), sourceNodes.length);
+                })).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while building the distance/time matrix", e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException runtimeException
+                        ? runtimeException
+                        : new RuntimeException(e.getCause());
+            }
+        }
+        return new Result(targets.size(), times, distances);
+    }
+
+    private static void calculateRow(RoutingCHGraph chGraph, int baseNodeCount, Map<Integer, List<BucketEntry>> buckets,
+                                     List<Location> sources, List<Location> targets, int s, int sourceNode,
+                                     long[] times, double[] distances) {
+        int columns = targets.size();
+        double[] bestWeights = new double[columns];
+        long[] bestMillis = new long[columns];
+        double[] bestMeters = new double[columns];
+        Arrays.fill(bestWeights, Double.POSITIVE_INFINITY);
+
+        new UpwardSearch(chGraph, baseNodeCount, false).run(sourceNode, label -> {
+            List<BucketEntry> bucket = buckets.get(label.node());
+            if (bucket == null) {
+                return;
+            }
+            for (BucketEntry entry : bucket) {
+                double weight = label.weight() + entry.weight();
+                if (weight < bestWeights[entry.target()]) {
+                    bestWeights[entry.target()] = weight;
+                    bestMillis[entry.target()] = label.millis() + entry.millis();
+                    bestMeters[entry.target()] = label.meters() + entry.meters();
+                }
+            }
+        });
+
+        for (int t = 0; t < columns; t++) {
+            if (Double.isInfinite(bestWeights[t])) {
+                throw new RuntimeException("Connection between locations " + sources.get(s).getId()
+                        + " and " + targets.get(t).getId() + " not found");
+            }
+            // distance in meters and time in millis, same conversion as for the point-to-point responses
+            times[s * columns + t] = bestMillis[t] / 1000;
+            distances[s * columns + t] = bestMeters[t] / 1000;
+        }
+    }
+
+    private List<Snap> snap(List<Location> locations) {
+        Weighting weighting = hopper.createWeighting(hopper.getProfile(profileName), new PMap());
+        EdgeFilter snapFilter = new DefaultSnapFilter(weighting,
+                hopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileName)));
+
+        List<Snap> snaps = new ArrayList<>(locations.size());
+        for (Location location : locations) {
+            Snap snap = hopper.getLocationIndex().findClosest(location.getLat(), location.getLon(), snapFilter);
+            if (!snap.isValid()) {
+                throw new RuntimeException("Location " + location.getId() + " cannot be snapped to the road network");
+            }
+            snaps.add(snap);
+        }
+        return snaps;
+    }
+
+    /**
+     * Dijkstra that only relaxes edges towards higher CH levels, settling every reachable node of the upward graph.
+     */
+    private static class UpwardSearch {
+        private final RoutingCHGraph chGraph;
+        private final int baseNodeCount;
+        private final boolean reverse;
+        private final RoutingCHEdgeExplorer explorer;
+        private final ShortcutUnpacker unpacker;
+        private final Map<Long, Label> edgeCosts = new HashMap<>();
+
+        private long unpackedMillis;
+        private double unpackedMeters;
+
+        UpwardSearch(RoutingCHGraph chGraph, int baseNodeCount, boolean reverse) {
+            this.chGraph = chGraph;
+            this.baseNodeCount = baseNodeCount;
+            this.reverse = reverse;
+            this.explorer = reverse ? chGraph.createInEdgeExplorer() : chGraph.createOutEdgeExplorer();
+            Weighting weighting = chGraph.getWeighting();
+            this.unpacker = new ShortcutUnpacker(chGraph, (edge, edgeReverse, prevOrNextEdgeId) -> {
+                unpackedMeters += edge.getDistance();
+                unpackedMillis += weighting.calcEdgeMillis(edge, edgeReverse);
+            }, false);
+        }
+
+        void run(int startNode, Consumer<Label> settledConsumer) {
+            Map<Integer, Double> settledWeights = new HashMap<>();
+            Map<Integer, Double> bestWeights = new HashMap<>();
+            PriorityQueue<Label> queue = new PriorityQueue<>((a, b) -> Double.compare(a.weight(), b.weight()));
+            queue.add(new Label(startNode, 0, 0, 0));
+            bestWeights.put(startNode, 0.0);
+
+            while (!queue.isEmpty()) {
+                Label current = queue.poll();
+                if (settledWeights.containsKey(current.node())) {
+                    continue;
+                }
+                settledWeights.put(current.node(), current.weight());
+                settledConsumer.accept(current);
+
+                RoutingCHEdgeIterator iter = explorer.setBaseNode(current.node());
+                while (iter.next()) {
+                    if (!isUpward(iter) || settledWeights.containsKey(iter.getAdjNode())) {
+                        continue;
+                    }
+                    double edgeWeight = iter.getWeight(reverse);
+                    if (Double.isInfinite(edgeWeight)) {
+                        continue;
+                    }
+                    double weight = current.weight() + edgeWeight;
+                    Double known = bestWeights.get(iter.getAdjNode());
+                    if (known != null && known <= weight) {
+                        continue;
+                    }
+                    bestWeights.put(iter.getAdjNode(), weight);
+                    Label edgeCost = edgeCost(iter.getEdge(), iter.getAdjNode());
+                    queue.add(new Label(iter.getAdjNode(), weight,
+                            current.millis() + edgeCost.millis(), current.meters() + edgeCost.meters()));
+                }
+            }
+        }
+
+        private boolean isUpward(RoutingCHEdgeIterator iter) {
+            int base = iter.getBaseNode();
+            int adj = iter.getAdjNode();
+            // virtual nodes of the query graph have no level, their edges are always accepted
+            if (base >= baseNodeCount || adj >= baseNodeCount || iter.isShortcut()) {
+                return true;
+            }
+            return chGraph.getLevel(base) <= chGraph.getLevel(adj);
+        }
+
+        private Label edgeCost(int edge, int adjNode) {
+            long key = ((long) edge << 32) | (adjNode & 0xFFFFFFFFL);
+            Label cost = edgeCosts.get(key);
+            if (cost == null) {
+                unpackedMillis = 0;
+                unpackedMeters = 0;
+                if (reverse) {
+                    unpacker.visitOriginalEdgesBwd(edge, adjNode, false, EdgeIterator.NO_EDGE);
+                } else {
+                    unpacker.visitOriginalEdgesFwd(edge, adjNode, false, EdgeIterator.NO_EDGE);
+                }
+                cost = new Label(adjNode, 0, unpackedMillis, unpackedMeters);
+                edgeCosts.put(key, cost);
+            }
+            return cost;
+        }
+    }
+}
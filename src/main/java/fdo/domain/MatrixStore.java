@@ -0,0 +1,300 @@
+package fdo.domain;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Disk backed travel matrix cells, reused across jobs and restarts.
+ * <p>
+ * The file is an open addressing hash table of fixed size slots, memory-mapped so the cells cost no heap.
+ * A slot is keyed by the coordinates of both locations (rounded to 1e-6 degrees) and holds travel seconds and
+ * kilometers. The header carries a fingerprint of the OSM file and the GraphHopper graph, when either of them
+ * changes the store is discarded on open.
+ * <p>
+ * Only one store at a time has the file open: it holds a lock on a file next to it until it is closed, because the
+ * app and the benchmarks share the same file.
+ */
+@Slf4j
+public class MatrixStore implements Closeable {
+
+    private static final int MAGIC = 0x46444D53; // "FDMS"
+    private static final int VERSION = 1;
+
+    // magic, version, fingerprint, capacity, count
+    private static final int HEADER_BYTES = 32;
+    // fromLat, fromLon, toLat, toLon, seconds + 1 (0 marks an empty slot), kilometers
+    private static final int SLOT_BYTES = 24;
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    // 2^26 slots are about 1.6 GB, the largest power of two that a single mapping can hold
+    private static final int MAX_CAPACITY = 1 << 26;
+    private static final double MAX_LOAD = 0.7;
+
+    private final Path file;
+    private final long fingerprint;
+
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int count;
+    private boolean closed;
+
+    private MatrixStore(Path file, long fingerprint, FileChannel lockChannel, FileLock lock) {
+        this.file = file;
+        this.fingerprint = fingerprint;
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+    }
+
+    /**
+     * Opens the store in {@code file}, or creates it when it is missing or was built for another map.
+     *
+     * @return null when another store, of this or another process, has the file open
+     */
+    public static MatrixStore open(Path file, String osmFile, String ghLocation) {
+        long fingerprint = fingerprint(osmFile, ghLocation);
+        MatrixStore store;
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            FileChannel lockChannel = FileChannel.open(file.resolveSibling(file.getFileName() + ".lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = tryLock(lockChannel);
+            if (lock == null) {
+                lockChannel.close();
+                log.info("Matrix store {} is in use, cells are not persisted", file);
+                return null;
+            }
+            store = new MatrixStore(file, fingerprint, lockChannel, lock);
+            if (!store.load()) {
+                store.create(file, INITIAL_CAPACITY);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open matrix store: " + file, e);
+        }
+        log.info("Matrix store {}: {} cells", file, store.count);
+        return store;
+    }
+
+    private static FileLock tryLock(FileChannel lockChannel) throws IOException {
+        try {
+            return lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null; // held by another store of this process
+        }
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public synchronized long getFileBytes() {
+        return HEADER_BYTES + (long) capacity * SLOT_BYTES;
+    }
+
+    /**
+     * @return the {@link TravelCell packed cell} or {@link TravelCell#MISSING}
+     */
+    public synchronized long get(Location from, Location to) {
+        if (closed) {
+            return TravelCell.MISSING;
+        }
+        int fromLat = TravelCell.microDegrees(from.getLat());
+        int fromLon = TravelCell.microDegrees(from.getLon());
+        int toLat = TravelCell.microDegrees(to.getLat());
+        int toLon = TravelCell.microDegrees(to.getLon());
+
+        int slot = find(fromLat, fromLon, toLat, toLon);
+        int offset = offset(slot);
+        int secondsPlusOne = buffer.getInt(offset + 16);
+        if (secondsPlusOne == 0) {
+            return TravelCell.MISSING;
+        }
+        return TravelCell.pack(secondsPlusOne - 1, buffer.getFloat(offset + 20));
+    }
+
+    public synchronized void put(Location from, Location to, int seconds, float kilometers) {
+        if (closed) {
+            return;
+        }
+        if (count + 1 > capacity * MAX_LOAD) {
+            if (capacity >= MAX_CAPACITY) {
+                return; // full, new cells are simply not persisted anymore
+            }
+            grow();
+        }
+        int fromLat = TravelCell.microDegrees(from.getLat());
+        int fromLon = TravelCell.microDegrees(from.getLon());
+        int toLat = TravelCell.microDegrees(to.getLat());
+        int toLon = TravelCell.microDegrees(to.getLon());
+
+        int offset = offset(find(fromLat, fromLon, toLat, toLon));
+        if (buffer.getInt(offset + 16) == 0) {
+            count++;
+            buffer.putInt(24, count);
+        }
+        writeSlot(buffer, offset, fromLat, fromLon, toLat, toLon, seconds + 1, kilometers);
+    }
+
+    /**
+     * Writes the cells back and releases the file. Cells are neither read nor persisted by a closed store.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (channel != null) {
+                buffer.force();
+                channel.close();
+            }
+            lock.release();
+            lockChannel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close matrix store: " + file, e);
+        }
+    }
+
+    private boolean load() throws IOException {
+        if (!Files.exists(file) || Files.size(file) < HEADER_BYTES) {
+            return false;
+        }
+        FileChannel existing = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer header = existing.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        int existingCapacity = header.getInt(16);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getLong(8) != fingerprint
+                || Files.size(file) != HEADER_BYTES + (long) existingCapacity * SLOT_BYTES) {
+            log.info("Matrix store {} was built for another map or format, discarding it", file);
+            existing.close();
+            return false;
+        }
+        channel = existing;
+        capacity = existingCapacity;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * SLOT_BYTES);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        count = buffer.getInt(24);
+        return true;
+    }
+
+    private void create(Path target, int newCapacity) throws IOException {
+        Files.deleteIfExists(target);
+        channel = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        capacity = newCapacity;
+        count = 0;
+        // a freshly mapped file region is zero filled, so every slot starts empty
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * SLOT_BYTES);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, fingerprint);
+        buffer.putInt(16, capacity);
+        buffer.putInt(24, count);
+    }
+
+    private void grow() {
+        MappedByteBuffer oldBuffer = buffer;
+        FileChannel oldChannel = channel;
+        int oldCapacity = capacity;
+        Path grown = file.resolveSibling(file.getFileName() + ".grow");
+        try {
+            create(grown, oldCapacity * 2);
+            for (int slot = 0; slot < oldCapacity; slot++) {
+                int offset = HEADER_BYTES + slot * SLOT_BYTES;
+                int secondsPlusOne = oldBuffer.getInt(offset + 16);
+                if (secondsPlusOne == 0) {
+                    continue;
+                }
+                int fromLat = oldBuffer.getInt(offset);
+                int fromLon = oldBuffer.getInt(offset + 4);
+                int toLat = oldBuffer.getInt(offset + 8);
+                int toLon = oldBuffer.getInt(offset + 12);
+                writeSlot(buffer, offset(find(fromLat, fromLon, toLat, toLon)),
+                        fromLat, fromLon, toLat, toLon, secondsPlusOne, oldBuffer.getFloat(offset + 20));
+                count++;
+            }
+            buffer.putInt(24, count);
+            buffer.force();
+            oldChannel.close();
+            Files.move(grown, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to grow matrix store: " + file, e);
+        }
+    }
+
+    // slot holding the key, or the empty slot where it belongs
+    private int find(int fromLat, int fromLon, int toLat, int toLon) {
+        int slot = hash(fromLat, fromLon, toLat, toLon) & (capacity - 1);
+        while (true) {
+            int offset = offset(slot);
+            if (buffer.getInt(offset + 16) == 0
+                    || (buffer.getInt(offset) == fromLat && buffer.getInt(offset + 4) == fromLon
+                    && buffer.getInt(offset + 8) == toLat && buffer.getInt(offset + 12) == toLon)) {
+                return slot;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+    }
+
+    private static int offset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private static void writeSlot(MappedByteBuffer buffer, int offset, int fromLat, int fromLon, int toLat, int toLon,
+                                  int secondsPlusOne, float kilometers) {
+        buffer.putInt(offset, fromLat);
+        buffer.putInt(offset + 4, fromLon);
+        buffer.putInt(offset + 8, toLat);
+        buffer.putInt(offset + 12, toLon);
+        buffer.putFloat(offset + 20, kilometers);
+        // written last, a slot only counts as filled once the rest of it is there
+        buffer.putInt(offset + 16, secondsPlusOne);
+    }
+
+    private static int hash(int fromLat, int fromLon, int toLat, int toLon) {
+        long h = fromLat * 0x9E3779B97F4A7C15L;
+        h = (h ^ fromLon) * 0x9E3779B97F4A7C15L;
+        h = (h ^ toLat) * 0x9E3779B97F4A7C15L;
+        h = (h ^ toLon) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Size and modification time of the OSM file plus the content of the graph's properties file,
+     * which GraphHopper rewrites on every import.
+     */
+    static long fingerprint(String osmFile, String ghLocation) {
+        try {
+            long fingerprint = 17;
+            Path osm = Path.of(osmFile);
+            if (Files.exists(osm)) {
+                fingerprint = 31 * fingerprint + Files.size(osm);
+                fingerprint = 31 * fingerprint + Files.getLastModifiedTime(osm).toMillis();
+            }
+            Path properties = Path.of(ghLocation, "properties");
+            if (Files.exists(properties)) {
+                fingerprint = 31 * fingerprint + Arrays.hashCode(Files.readAllBytes(properties));
+            }
+            return fingerprint;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to fingerprint the map files", e);
+        }
+    }
+}
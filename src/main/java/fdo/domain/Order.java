@@ -1,6 +1,6 @@
 package fdo.domain;
 
-import ai.timefold.solver.core.api.domain.variable.InverseRelationShadowVariable;
+import ai.timefold.solver.core.api.domain.lookup.PlanningId;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -10,21 +10,20 @@ import java.util.List;
 @Setter
 public class Order {
 
+    @PlanningId
     private String id;
     private List<Food> foods;
     private int earliestMinute;
     private int latestMinute;
     private Location deliveryLocation;
 
-    @InverseRelationShadowVariable(sourceVariableName = "order")
-    private Visit restaurantVisit;
-    @InverseRelationShadowVariable(sourceVariableName = "order")
-    private Visit customerVisit;
-
     private String chainId;
     private int minAllowedTimeToDeliver;
     private int totalCookTime;
     private double totalCost;
+    // volumes the order takes in the courier's compartments, from pickup until delivery
+    private int hotVolume;
+    private int coldVolume;
     public Order() {}
 
     public Order(String id, int earliestMinute, int latestMinute, List<Food> foods) {
@@ -42,6 +41,14 @@ public class Order {
         totalCost = foods.stream()
                 .mapToDouble(Food::getPrice)
                 .sum();
+        hotVolume = foods.stream()
+                .filter(f -> f.getTemperature() == Food.Temperature.HOT)
+                .mapToInt(Food::getVolume)
+                .sum();
+        coldVolume = foods.stream()
+                .filter(f -> f.getTemperature() == Food.Temperature.COLD)
+                .mapToInt(Food::getVolume)
+                .sum();
         chainId = foods.get(0).getChainId();
     }
 }
\ No newline at end of file
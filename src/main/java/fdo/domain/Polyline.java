@@ -0,0 +1,72 @@
+package fdo.domain;
+
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.GHPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encoded polyline format (5 decimals, the one used by Google maps and GraphHopper's points_encoded),
+ * about 6 bytes per point instead of a GHPoint object per point.
+ */
+public final class Polyline {
+
+    private static final double PRECISION = 1e5;
+
+    private Polyline() {}
+
+    public static String encode(PointList points) {
+        StringBuilder encoded = new StringBuilder(points.size() * 6);
+        long prevLat = 0;
+        long prevLon = 0;
+        for (int i = 0; i < points.size(); i++) {
+            long lat = Math.round(points.getLat(i) * PRECISION);
+            long lon = Math.round(points.getLon(i) * PRECISION);
+            encodeValue(lat - prevLat, encoded);
+            encodeValue(lon - prevLon, encoded);
+            prevLat = lat;
+            prevLon = lon;
+        }
+        return encoded.toString();
+    }
+
+    public static List<GHPoint> decode(String encoded) {
+        List<GHPoint> points = new ArrayList<>(encoded.length() / 6 + 1);
+        int index = 0;
+        long lat = 0;
+        long lon = 0;
+        while (index < encoded.length()) {
+            long[] result = decodeValue(encoded, index);
+            lat += result[0];
+            index = (int) result[1];
+            result = decodeValue(encoded, index);
+            lon += result[0];
+            index = (int) result[1];
+            points.add(new GHPoint(lat / PRECISION, lon / PRECISION));
+        }
+        return points;
+    }
+
+    private static void encodeValue(long value, StringBuilder encoded) {
+        long shifted = value < 0 ? ~(value << 1) : value << 1;
+        while (shifted >= 0x20) {
+            encoded.append((char) ((0x20 | (shifted & 0x1f)) + 63));
+            shifted >>= 5;
+        }
+        encoded.append((char) (shifted + 63));
+    }
+
+    // returns the decoded value and the index after it
+    private static long[] decodeValue(String encoded, int index) {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = encoded.charAt(index++) - 63;
+            result |= (long) (b & 0x1f) << shift;
+            shift += 5;
+        } while (b >= 0x20);
+        return new long[] {(result & 1) != 0 ? ~(result >> 1) : result >> 1, index};
+    }
+}
@@ -0,0 +1,93 @@
+package fdo.domain;
+
+import com.graphhopper.util.shapes.GHPoint;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Route geometry of single legs, fetched on demand.
+ * <p>
+ * The travel matrix is built without any points, geometry is only routed for legs that are actually read
+ * (consecutive visits, see {@link Visit#getPathToNext()}). Legs are kept as encoded polylines in an LRU cache
+ * bounded by the total encoded length, keyed by coordinates so equal legs of different jobs share one entry.
+ */
+public class RouteGeometry {
+
+    public static final long DEFAULT_MAX_CACHED_CHARS = 32_000_000;
+
+    private record LegKey(double fromLat, double fromLon, double toLat, double toLon) {}
+
+    private final BiFunction<Location, Location, String> legRouter;
+    private final long maxCachedChars;
+
+    private final LinkedHashMap<LegKey, String> cache = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedChars;
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * @param legRouter routes one leg and returns it as {@link Polyline encoded polyline}
+     */
+    public RouteGeometry(BiFunction<Location, Location, String> legRouter, long maxCachedChars) {
+        this.legRouter = legRouter;
+        this.maxCachedChars = maxCachedChars;
+    }
+
+    public List<GHPoint> path(Location from, Location to) {
+        if (from.getLat().equals(to.getLat()) && from.getLon().equals(to.getLon())) {
+            return List.of(new GHPoint(from.getLat(), from.getLon()));
+        }
+        LegKey key = new LegKey(from.getLat(), from.getLon(), to.getLat(), to.getLon());
+
+        String encoded;
+        synchronized (this) {
+            encoded = cache.get(key);
+            if (encoded != null) {
+                hitCount++;
+            } else {
+                missCount++;
+            }
+        }
+        if (encoded == null) {
+            // routed outside the lock, two threads may route the same leg but will store the same polyline
+            encoded = legRouter.apply(from, to);
+            put(key, encoded);
+        }
+        return Polyline.decode(encoded);
+    }
+
+    private synchronized void put(LegKey key, String encoded) {
+        String previous = cache.put(key, encoded);
+        cachedChars += encoded.length() - (previous != null ? previous.length() : 0);
+
+        Iterator<Map.Entry<LegKey, String>> eldest = cache.entrySet().iterator();
+        while (cachedChars > maxCachedChars && eldest.hasNext()) {
+            Map.Entry<LegKey, String> entry = eldest.next();
+            if (entry.getKey().equals(key)) {
+                break;
+            }
+            cachedChars -= entry.getValue().length();
+            eldest.remove();
+        }
+    }
+
+    public synchronized int getCachedLegCount() {
+        return cache.size();
+    }
+
+    public synchronized long getCachedChars() {
+        return cachedChars;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+}
@@ -7,24 +7,82 @@ import com.graphhopper.ResponsePath;
 import com.graphhopper.config.CHProfile;
 import com.graphhopper.config.Profile;
 import com.graphhopper.util.CustomModel;
-import com.graphhopper.util.shapes.GHPoint;
+import com.graphhopper.util.Parameters;
+import lombok.extern.slf4j.Slf4j;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import static com.graphhopper.json.Statement.If;
 import static com.graphhopper.json.Statement.Op.LIMIT;
 import static com.graphhopper.json.Statement.Op.MULTIPLY;
 
-public class Router {
+@Slf4j
+public class Router implements AutoCloseable {
     static public Router getDefaultRouterInstance() {
-        return new Router("data/latvia-251227.osm.pbf", ".ghtemp");
+        Router router = new Router("data/latvia-251227.osm.pbf", ".ghtemp");
+        router.setMatrixStore(MatrixStore.open(Path.of(".ghtemp-matrix", "cells.bin"),
+                "data/latvia-251227.osm.pbf", ".ghtemp"));
+        return router;
+    }
+
+    /**
+     * Receives the number of finished matrix rows while {@link #buildTravelMatrix} is running.
+     * Called from the worker threads, so implementations must be thread-safe.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(int completedRows, int totalRows);
+    }
+
+    public enum MatrixMode {
+        /** One GraphHopper route (snap, bidirectional CH) per cell. */
+        POINT_TO_POINT,
+        /** Bucket based many-to-many search on the CH graph, about 2N searches per matrix. */
+        MANY_TO_MANY
     }
 
     public GraphHopper router;
 
+    private final int parallelism;
+    private final ForkJoinPool matrixPool;
+    // made by withParallelism, the graph belongs to the router it came from
+    private final boolean derived;
+
+    private final RouteGeometry geometry;
+
+    private MatrixMode matrixMode = MatrixMode.MANY_TO_MANY;
+
+    // optional, cells computed once are reused by later jobs and restarts, closed with the router
+    private MatrixStore matrixStore;
+
+    // optional, shared by all routers on the same map so overlapping jobs reuse each other's cells
+    private TravelTimeCache travelTimeCache;
+
+    // where a matrix cell came from while the matrix is built
+    private static final byte UNKNOWN = 0;
+    private static final byte SAME_LOCATION = 1;
+    private static final byte CACHED = 2;
+    private static final byte STORED = 3;
+    // taken over from the matrix being extended
+    private static final byte COPIED = 4;
+
     public Router(String osmFile, String ghLocation) {
+        this(osmFile, ghLocation, Runtime.getRuntime().availableProcessors());
+    }
+
+    public Router(String osmFile, String ghLocation, int parallelism) {
         router = new GraphHopper();
         router.setOSMFile(osmFile);
         router.setGraphHopperLocation(ghLocation);
@@ -35,29 +93,398 @@ public class Router {
                         addToPriority(If("!car_access", MULTIPLY, "0"))));
         router.getCHPreparationHandler().setCHProfiles(new CHProfile("car"));
         router.importOrLoad();
+        // after the import, which rewrites the graph properties the cache is keyed by
+        this.travelTimeCache = TravelTimeCache.forMap(osmFile, ghLocation);
+
+        this.parallelism = Math.max(1, parallelism);
+        // GraphHopper.route() is thread-safe, so the rows can be shared by a bounded pool
+        this.matrixPool = this.parallelism > 1 ? new ForkJoinPool(this.parallelism) : null;
+        this.derived = false;
+        this.geometry = new RouteGeometry(this::routeLeg, RouteGeometry.DEFAULT_MAX_CACHED_CHARS);
+    }
+
+    private Router(Router other, int parallelism) {
+        this.router = other.router;
+        this.parallelism = Math.max(1, parallelism);
+        this.matrixPool = this.parallelism > 1 ? new ForkJoinPool(this.parallelism) : null;
+        this.derived = true;
+        this.geometry = other.geometry;
+        this.matrixMode = other.matrixMode;
+        this.matrixStore = other.matrixStore;
+        this.travelTimeCache = other.travelTimeCache;
     }
 
-    public void setDistanceTimeMap(List<Location> locationList) {
-        for (Location location: locationList) {
-            for (Location toLocation: locationList) {
-                GHRequest req = new GHRequest(location.getLat(), location.getLon(), toLocation.getLat(), toLocation.getLon()).
-                        setProfile("car").
-                        setLocale(Locale.US);
-                GHResponse rsp = router.route(req);
-                if (rsp.hasErrors())
-                    throw new RuntimeException(rsp.getErrors().toString());
-                ResponsePath path = rsp.getBest();
+    /**
+     * Router sharing the already loaded graph, geometry cache and cell caches,
+     * but building matrices with another number of threads. It has a thread pool of its own, so close it when done.
+     */
+    public Router withParallelism(int parallelism) {
+        return new Router(this, parallelism);
+    }
+
+    /**
+     * Shuts down the matrix threads and, unless this router was made by {@link #withParallelism}, the graph and the
+     * matrix store. Routers made from this one must not be used anymore afterwards.
+     */
+    @Override
+    public void close() {
+        if (matrixPool != null) {
+            matrixPool.shutdown();
+        }
+        if (!derived) {
+            if (matrixStore != null) {
+                matrixStore.close();
+            }
+            router.close();
+        }
+    }
+
+    public RouteGeometry getGeometry() {
+        return geometry;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public MatrixMode getMatrixMode() {
+        return matrixMode;
+    }
+
+    public void setMatrixMode(MatrixMode matrixMode) {
+        this.matrixMode = matrixMode;
+    }
+
+    public MatrixStore getMatrixStore() {
+        return matrixStore;
+    }
+
+    /**
+     * The router takes over the store and closes it, a replaced store is closed right away. Routers made by
+     * {@link #withParallelism} leave both to the router they came from.
+     */
+    public void setMatrixStore(MatrixStore matrixStore) {
+        if (!derived && this.matrixStore != null && this.matrixStore != matrixStore) {
+            this.matrixStore.close();
+        }
+        this.matrixStore = matrixStore;
+    }
+
+    public TravelTimeCache getTravelTimeCache() {
+        return travelTimeCache;
+    }
+
+    public void setTravelTimeCache(TravelTimeCache travelTimeCache) {
+        this.travelTimeCache = travelTimeCache;
+    }
+
+    public void setDistanceTimeMap(DeliverySolution solution) {
+        solution.setTravelMatrix(buildTravelMatrix(solution.getLocationList(), loggingProgressListener()));
+    }
+
+    /**
+     * Assigns every location its matrix index, fills a new {@link TravelMatrix} and binds the locations to it.
+     * Locations at the same coordinates share one row of routing work. Cells found in the {@link TravelTimeCache}
+     * or the {@link MatrixStore} are not routed again, routed ones are added to both.
+     */
+    public TravelMatrix buildTravelMatrix(List<Location> locationList, ProgressListener progressListener) {
+        int size = locationList.size();
+        long start = System.currentTimeMillis();
+
+        List<Location> uniqueList = new ArrayList<>();
+        int[] uniqueIndex = new int[size];
+        Map<Long, Integer> indexByCoordinates = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Location location = locationList.get(i);
+            Integer index = indexByCoordinates.putIfAbsent(TravelTimeCache.coordinates(location), uniqueList.size());
+            if (index == null) {
+                index = uniqueList.size();
+                uniqueList.add(location);
+            }
+            uniqueIndex[i] = index;
+        }
+
+        int uniqueSize = uniqueList.size();
+        TravelMatrix uniqueMatrix = new TravelMatrix(uniqueSize);
+        byte[] origin = new byte[uniqueSize * uniqueSize];
+        for (int i = 0; i < uniqueSize; i++) {
+            origin[i * uniqueSize + i] = SAME_LOCATION;
+        }
+        int cachedCount = fillFromCache(uniqueMatrix, uniqueList, origin);
+        int storedCount = fillFromStore(uniqueMatrix, uniqueList, origin);
+
+        if (matrixMode == MatrixMode.MANY_TO_MANY) {
+            fillManyToMany(uniqueMatrix, uniqueList, origin, progressListener);
+        } else {
+            fillPointToPoint(uniqueMatrix, uniqueList, origin, progressListener);
+        }
+        int routedCount = saveCells(uniqueMatrix, uniqueList, origin);
+
+        TravelMatrix matrix = uniqueSize == size ? uniqueMatrix : expand(uniqueMatrix, uniqueIndex);
+
+        log.info("Built {}x{} distance/time matrix ({} distinct locations; {} cells cached, {} stored, {} routed) "
+                        + "in {} ms using {} thread(s), {}",
+                size, size, uniqueSize, cachedCount, storedCount, routedCount, System.currentTimeMillis() - start,
+                matrixPool == null ? 1 : parallelism, matrixMode);
+
+        matrix.setGeometry(geometry);
+        for (int i = 0; i < size; i++) {
+            locationList.get(i).setIndex(i);
+            locationList.get(i).setTravelMatrix(matrix);
+        }
+        return matrix;
+    }
+
+    /**
+     * A copy of the matrix grown by the rows and columns of {@code addedLocations}, for a problem that is being solved.
+     * Only the cells from and to the added locations are looked up or routed, the others are copied.
+     * <p>
+     * The added locations get the next indices and are bound to the new matrix. The existing ones stay bound to
+     * {@code matrix} until whoever takes the new matrix into use rebinds them, which changes no travel time.
+     *
+     * @param locationList the locations of {@code matrix}, in index order
+     */
+    public TravelMatrix extendTravelMatrix(TravelMatrix matrix, List<Location> locationList,
+                                           List<Location> addedLocations) {
+        int existingSize = locationList.size();
+        int size = existingSize + addedLocations.size();
+        long start = System.currentTimeMillis();
+
+        List<Location> extendedList = new ArrayList<>(size);
+        extendedList.addAll(locationList);
+        extendedList.addAll(addedLocations);
+        TravelMatrix extended = matrix.extend(addedLocations.size());
+        byte[] origin = new byte[size * size];
+        for (int i = 0; i < existingSize; i++) {
+            Arrays.fill(origin, i * size, i * size + existingSize, COPIED);
+        }
+        for (int i = 0; i < size; i++) {
+            origin[i * size + i] = SAME_LOCATION;
+        }
+        int cachedCount = fillFromCache(extended, extendedList, origin);
+        int storedCount = fillFromStore(extended, extendedList, origin);
 
-                List<GHPoint> pointList = new ArrayList<>();
-                for (GHPoint point : path.getPoints()) {
-                    pointList.add(point);
+        if (matrixMode == MatrixMode.MANY_TO_MANY) {
+            // the added rows, then the added columns of the existing rows, the copied block is not searched
+            ProgressListener noProgress = (completedRows, totalRows) -> {};
+            fillManyToMany(extended, extendedList, origin, existingSize, size, 0, size, noProgress);
+            fillManyToMany(extended, extendedList, origin, 0, existingSize, existingSize, size, noProgress);
+        } else {
+            fillPointToPoint(extended, extendedList, origin, (completedRows, totalRows) -> {});
+        }
+        int routedCount = saveCells(extended, extendedList, origin);
+
+        log.info("Extended {}x{} distance/time matrix by {} locations ({} cells cached, {} stored, {} routed) in {} ms",
+                existingSize, existingSize, addedLocations.size(), cachedCount, storedCount, routedCount,
+                System.currentTimeMillis() - start);
+
+        for (int i = existingSize; i < size; i++) {
+            extendedList.get(i).setIndex(i);
+            extendedList.get(i).setTravelMatrix(extended);
+        }
+        return extended;
+    }
+
+    private int fillFromCache(TravelMatrix matrix, List<Location> locationList, byte[] origin) {
+        if (travelTimeCache == null) {
+            return 0;
+        }
+        int size = locationList.size();
+        int cachedCount = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (origin[i * size + j] != UNKNOWN) {
+                    continue;
+                }
+                long cell = travelTimeCache.get(locationList.get(i), locationList.get(j));
+                if (cell != TravelCell.MISSING) {
+                    matrix.set(i, j, TravelCell.seconds(cell), TravelCell.kilometers(cell));
+                    origin[i * size + j] = CACHED;
+                    cachedCount++;
+                }
+            }
+        }
+        return cachedCount;
+    }
+
+    private int fillFromStore(TravelMatrix matrix, List<Location> locationList, byte[] origin) {
+        if (matrixStore == null) {
+            return 0;
+        }
+        int size = locationList.size();
+        int storedCount = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (origin[i * size + j] != UNKNOWN) {
+                    continue;
+                }
+                long cell = matrixStore.get(locationList.get(i), locationList.get(j));
+                if (cell != TravelCell.MISSING) {
+                    matrix.set(i, j, TravelCell.seconds(cell), TravelCell.kilometers(cell));
+                    origin[i * size + j] = STORED;
+                    storedCount++;
+                }
+            }
+        }
+        return storedCount;
+    }
+
+    /**
+     * Adds routed cells to the cache and the store, and cells read from the store to the cache.
+     * @return number of routed cells
+     */
+    private int saveCells(TravelMatrix matrix, List<Location> locationList, byte[] origin) {
+        int size = locationList.size();
+        int routedCount = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                byte cellOrigin = origin[i * size + j];
+                if (cellOrigin != UNKNOWN && cellOrigin != STORED) {
+                    continue;
+                }
+                Location from = locationList.get(i);
+                Location to = locationList.get(j);
+                if (travelTimeCache != null) {
+                    travelTimeCache.put(from, to, matrix.time(i, j), matrix.distance(i, j));
+                }
+                if (cellOrigin == UNKNOWN) {
+                    routedCount++;
+                    if (matrixStore != null) {
+                        matrixStore.put(from, to, matrix.time(i, j), matrix.distance(i, j));
+                    }
+                }
+            }
+        }
+        return routedCount;
+    }
+
+    private static TravelMatrix expand(TravelMatrix uniqueMatrix, int[] uniqueIndex) {
+        int size = uniqueIndex.length;
+        TravelMatrix matrix = new TravelMatrix(size);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                matrix.set(i, j, uniqueMatrix.time(uniqueIndex[i], uniqueIndex[j]),
+                        uniqueMatrix.distance(uniqueIndex[i], uniqueIndex[j]));
+            }
+        }
+        return matrix;
+    }
+
+    private void fillPointToPoint(TravelMatrix matrix, List<Location> locationList, byte[] origin,
+                                  ProgressListener progressListener) {
+        int rowCount = locationList.size();
+        AtomicInteger completedRows = new AtomicInteger();
+
+        // Each row only writes its own slice of the matrix, so rows never contend
+        if (matrixPool == null || rowCount < 2) {
+            for (int i = 0; i < rowCount; i++) {
+                fillPointToPointRow(matrix, i, locationList, origin);
+                progressListener.onProgress(completedRows.incrementAndGet(), rowCount);
+            }
+            return;
+        }
+        try {
+            matrixPool.submit(() -> IntStream.range(0, rowCount).parallel().forEach(i -> {
+                fillPointToPointRow(matrix, i, locationList, origin);
+                progressListener.onProgress(completedRows.incrementAndGet(), rowCount);
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while building the distance/time matrix", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new RuntimeException(e.getCause());
+        }
+    }
+
+    private void fillManyToMany(TravelMatrix matrix, List<Location> locationList, byte[] origin,
+                                ProgressListener progressListener) {
+        int size = locationList.size();
+        fillManyToMany(matrix, locationList, origin, 0, size, 0, size, progressListener);
+    }
+
+    /**
+     * Runs the many-to-many search only for the rows and columns that still have unknown cells,
+     * within rows {@code rowFrom} to {@code rowTo} and columns {@code columnFrom} to {@code columnTo}, exclusive.
+     */
+    private void fillManyToMany(TravelMatrix matrix, List<Location> locationList, byte[] origin,
+                                int rowFrom, int rowTo, int columnFrom, int columnTo,
+                                ProgressListener progressListener) {
+        int size = locationList.size();
+        List<Integer> rows = new ArrayList<>();
+        Set<Integer> columnSet = new TreeSet<>();
+        for (int i = rowFrom; i < rowTo; i++) {
+            for (int j = columnFrom; j < columnTo; j++) {
+                if (origin[i * size + j] == UNKNOWN) {
+                    if (rows.isEmpty() || rows.get(rows.size() - 1) != i) {
+                        rows.add(i);
+                    }
+                    columnSet.add(j);
+                }
+            }
+        }
+        if (rows.isEmpty()) {
+            progressListener.onProgress(size, size);
+            return;
+        }
+        List<Integer> columns = new ArrayList<>(columnSet);
+
+        List<Location> sources = rows.size() == size ? locationList : rows.stream().map(locationList::get).toList();
+        List<Location> targets = columns.size() == size ? locationList : columns.stream().map(locationList::get).toList();
+        ManyToManyMatrix.Result result = new ManyToManyMatrix(router, "car")
+                .calculate(sources, targets, matrixPool, progressListener);
+
+        for (int r = 0; r < rows.size(); r++) {
+            for (int c = 0; c < columns.size(); c++) {
+                int i = rows.get(r);
+                int j = columns.get(c);
+                if (origin[i * size + j] == UNKNOWN) {
+                    matrix.set(i, j, result.times()[r * columns.size() + c], result.distances()[r * columns.size() + c]);
                 }
+            }
+        }
+    }
 
-                location.getPathMap().put(toLocation, pointList);
-                // distance in meters and time in millis in the response path
-                location.getDistanceMap().put(toLocation, path.getDistance() / 1000);
-                location.getTimeMap().put(toLocation,path.getTime() / 1000);
+    private void fillPointToPointRow(TravelMatrix matrix, int row, List<Location> locationList, byte[] origin) {
+        int size = locationList.size();
+        Location location = locationList.get(row);
+        for (int column = 0; column < size; column++) {
+            if (origin[row * size + column] != UNKNOWN) {
+                continue;
             }
+
+            ResponsePath path = route(location, locationList.get(column), false);
+            // distance in meters and time in millis in the response path
+            matrix.set(row, column, path.getTime() / 1000, path.getDistance() / 1000);
         }
     }
+
+    /**
+     * Routes a single leg with its points, used by {@link RouteGeometry} when a leg is first displayed.
+     */
+    private String routeLeg(Location from, Location to) {
+        return Polyline.encode(route(from, to, true).getPoints());
+    }
+
+    private ResponsePath route(Location from, Location to, boolean calcPoints) {
+        GHRequest req = new GHRequest(from.getLat(), from.getLon(), to.getLat(), to.getLon()).
+                setProfile("car").
+                setLocale(Locale.US);
+        req.putHint(Parameters.Routing.CALC_POINTS, calcPoints);
+        req.putHint(Parameters.Routing.INSTRUCTIONS, false);
+        GHResponse rsp = router.route(req);
+        if (rsp.hasErrors())
+            throw new RuntimeException(rsp.getErrors().toString());
+        return rsp.getBest();
+    }
+
+    private static ProgressListener loggingProgressListener() {
+        return (completedRows, totalRows) -> {
+            int step = Math.max(1, totalRows / 10);
+            if (completedRows % step == 0 || completedRows == totalRows) {
+                log.info("Distance/time matrix: {}/{} rows", completedRows, totalRows);
+            }
+        };
+    }
 }
@@ -0,0 +1,32 @@
+package fdo.domain;
+
+/**
+ * One matrix cell (travel seconds and kilometers) packed into a primitive long,
+ * so stores and caches of cells do not need an object per cell.
+ */
+public final class TravelCell {
+
+    /** Returned by lookups when the cell is not known. No real cell packs to this value. */
+    public static final long MISSING = -1L;
+
+    private TravelCell() {}
+
+    public static long pack(int seconds, float kilometers) {
+        return ((long) seconds << 32) | (Float.floatToRawIntBits(kilometers) & 0xFFFFFFFFL);
+    }
+
+    public static int seconds(long cell) {
+        return (int) (cell >>> 32);
+    }
+
+    public static float kilometers(long cell) {
+        return Float.intBitsToFloat((int) cell);
+    }
+
+    /**
+     * Coordinate rounded to 1e-6 degrees (about 10 cm), the precision cells are keyed by.
+     */
+    public static int microDegrees(double degrees) {
+        return (int) Math.round(degrees * 1e6);
+    }
+}
@@ -0,0 +1,69 @@
+package fdo.domain;
+
+/**
+ * Dense travel time/distance matrix of one {@link DeliverySolution}.
+ * <p>
+ * Cells are addressed by {@link Location#getIndex()} and stored row-major in two flat primitive arrays,
+ * so lookups from the cascading shadow variable updates neither hash nor box.
+ */
+public class TravelMatrix {
+
+    private final int size;
+    private final int[] times;        // seconds
+    private final float[] distances;  // kilometers
+
+    // geometry is not part of the matrix, legs are routed lazily when read
+    private RouteGeometry geometry;
+
+    public TravelMatrix(int size) {
+        this.size = size;
+        this.times = new int[size * size];
+        this.distances = new float[size * size];
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int time(int from, int to) {
+        return times[from * size + to];
+    }
+
+    public float distance(int from, int to) {
+        return distances[from * size + to];
+    }
+
+    public void set(int from, int to, long seconds, double kilometers) {
+        times[from * size + to] = (int) seconds;
+        distances[from * size + to] = (float) kilometers;
+    }
+
+    /**
+     * A larger matrix with this one's cells and geometry, the rows and columns of {@code addedCount} more locations
+     * still to be filled. Indices stay the same, so a location bound to either matrix reads the same cells.
+     */
+    public TravelMatrix extend(int addedCount) {
+        TravelMatrix extended = new TravelMatrix(size + addedCount);
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(times, i * size, extended.times, i * extended.size, size);
+            System.arraycopy(distances, i * size, extended.distances, i * extended.size, size);
+        }
+        extended.geometry = geometry;
+        return extended;
+    }
+
+    public RouteGeometry getGeometry() {
+        return geometry;
+    }
+
+    public void setGeometry(RouteGeometry geometry) {
+        this.geometry = geometry;
+    }
+
+    /**
+     * Bytes held by the cell arrays, without the object headers.
+     */
+    public long getMemoryBytes() {
+        return (long) size * size * (Integer.BYTES + Float.BYTES);
+    }
+}
@@ -0,0 +1,149 @@
+package fdo.domain;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of travel matrix cells, shared by all jobs routed on the same map.
+ * <p>
+ * Cells are keyed by the coordinates of both locations (rounded to 1e-6 degrees), so two jobs with their own
+ * {@link Location} objects at the same addresses hit the same entries. Coordinates only identify a cell together
+ * with the map, so there is one cache per map fingerprint (see {@link MatrixStore}), taken with {@link #forMap}.
+ * The cache is split into segments, each an LRU map behind its own lock, which bounds the size without a global
+ * lock on every lookup.
+ */
+public class TravelTimeCache {
+
+    public static final int DEFAULT_MAX_CELLS = 2_000_000;
+    private static final int SEGMENT_COUNT = 16;
+
+    private static final Map<Long, TravelTimeCache> INSTANCE_BY_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * @return the cache of all routers on this OSM file and graph, a new map import gets a new cache
+     */
+    public static TravelTimeCache forMap(String osmFile, String ghLocation) {
+        return INSTANCE_BY_MAP.computeIfAbsent(MatrixStore.fingerprint(osmFile, ghLocation),
+                fingerprint -> new TravelTimeCache(DEFAULT_MAX_CELLS));
+    }
+
+    private record CellKey(long from, long to) {}
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    public TravelTimeCache(int maxCells) {
+        int maxCellsPerSegment = Math.max(1, maxCells / SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(maxCellsPerSegment);
+        }
+    }
+
+    /**
+     * @return the {@link TravelCell packed cell} or {@link TravelCell#MISSING}
+     */
+    public long get(Location from, Location to) {
+        CellKey key = key(from, to);
+        Segment segment = segment(key);
+        Long cell;
+        synchronized (segment) {
+            cell = segment.get(key);
+        }
+        if (cell == null) {
+            missCount.increment();
+            return TravelCell.MISSING;
+        }
+        hitCount.increment();
+        return cell;
+    }
+
+    public void put(Location from, Location to, int seconds, float kilometers) {
+        CellKey key = key(from, to);
+        Segment segment = segment(key);
+        synchronized (segment) {
+            if (segment.put(key, TravelCell.pack(seconds, kilometers))) {
+                evictionCount.increment();
+            }
+        }
+    }
+
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public double getHitRatio() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private Segment segment(CellKey key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENT_COUNT - 1)];
+    }
+
+    private static CellKey key(Location from, Location to) {
+        return new CellKey(coordinates(from), coordinates(to));
+    }
+
+    static long coordinates(Location location) {
+        return ((long) TravelCell.microDegrees(location.getLat()) << 32)
+                | (TravelCell.microDegrees(location.getLon()) & 0xFFFFFFFFL);
+    }
+
+    private static class Segment {
+        // access order, so the first entry is the least recently used one
+        private final Map<CellKey, Long> cells = new LinkedHashMap<>(1024, 0.75f, true);
+        private final int maxCells;
+
+        Segment(int maxCells) {
+            this.maxCells = maxCells;
+        }
+
+        Long get(CellKey key) {
+            return cells.get(key);
+        }
+
+        /**
+         * @return whether the least recently used cell was evicted to make room
+         */
+        boolean put(CellKey key, long cell) {
+            cells.put(key, cell);
+            if (cells.size() <= maxCells) {
+                return false;
+            }
+            Iterator<Long> eldest = cells.values().iterator();
+            eldest.next();
+            eldest.remove();
+            return true;
+        }
+
+        int size() {
+            return cells.size();
+        }
+    }
+}
@@ -17,8 +17,14 @@ import java.util.concurrent.atomic.AtomicLong;
 @Getter
 @Setter
 public class Visit {
+    // unique across threads and jobs; generated problems renumber their visits per solution, see Generator
     private static final AtomicLong ID_GENERATOR = new AtomicLong(0);
 
+    /** Minutes the courier stays at a restaurant to pick the food up. */
+    public static final int PICKUP_SERVICE_MINUTES = 5;
+    /** Minutes the courier stays at a customer to hand the food over. */
+    public static final int DELIVERY_SERVICE_MINUTES = 3;
+
     @PlanningId
     private Long id;
 
@@ -44,6 +50,12 @@ public class Visit {
     @CascadingUpdateShadowVariable(targetMethodName = "updateData")
     private Integer roadTime;
 
+    // food volumes in the courier's compartments after this visit
+    @CascadingUpdateShadowVariable(targetMethodName = "updateData")
+    private Integer hotLoad;
+    @CascadingUpdateShadowVariable(targetMethodName = "updateData")
+    private Integer coldLoad;
+
     public enum VisitType {
         RESTAURANT,
         CUSTOMER
@@ -67,6 +79,26 @@ public class Visit {
         this.type = type;
         this.restaurant = restaurant;
     }
+
+    /**
+     * Copy for {@link DeliverySolutionCloner}: same id and problem facts, same shadow values. Courier and the
+     * previous and next visits still point into the original solution and are remapped by the cloner.
+     */
+    Visit(Visit original) {
+        this.id = original.id;
+        this.location = original.location;
+        this.order = original.order;
+        this.type = original.type;
+        this.restaurant = original.restaurant;
+        this.courier = original.courier;
+        this.previousVisit = original.previousVisit;
+        this.nextVisit = original.nextVisit;
+        this.minuteTime = original.minuteTime;
+        this.roadTime = original.roadTime;
+        this.hotLoad = original.hotLoad;
+        this.coldLoad = original.coldLoad;
+    }
+
     public void setVisitType(VisitType visitType) {
         this.type = visitType;
     }
@@ -79,6 +111,7 @@ public class Visit {
 
         updateDeliveryTime();
         updateRoadTime();
+        updateLoad();
     }
     private void updateDeliveryTime() {
         if (this.getCourier() == null) {
@@ -96,8 +129,8 @@ public class Visit {
                 this.setMinuteTime(null);
                 return;
             }
-            int travelTime = calculateTravelTime(this.getPreviousVisit().getLocation(), this.getLocation());
-            int serviceTime = getServiceTime(this.getPreviousVisit());
+            int travelTime = travelMinutes(this.getPreviousVisit().getLocation(), this.getLocation());
+            int serviceTime = serviceMinutes(this.getPreviousVisit().getType());
             arrivalTime = prevTime + travelTime + serviceTime;
         }
 
@@ -113,36 +146,58 @@ public class Visit {
             this.setRoadTime(0);
             return;
         }
-        Location from = previousVisit.getLocation();
-        Location to = getLocation();
-        if (from == null || to == null) {
-            this.setRoadTime(0);
+        this.setRoadTime(roadMinutes(previousVisit.getLocation(), getLocation()));
+    }
+
+    private void updateLoad() {
+        if (this.getCourier() == null) {
+            this.setHotLoad(null);
+            this.setColdLoad(null);
             return;
         }
-        Long seconds = from.timeTo(to);
-        this.setRoadTime(seconds != null ? seconds.intValue() / 60 : 0);
+        int hot = 0;
+        int cold = 0;
+        if (previousVisit != null && previousVisit.getHotLoad() != null) {
+            hot = previousVisit.getHotLoad();
+            cold = previousVisit.getColdLoad();
+        }
+        // food is loaded at the restaurant and unloaded at the customer
+        int sign = type == VisitType.RESTAURANT ? 1 : -1;
+        this.setHotLoad(hot + sign * order.getHotVolume());
+        this.setColdLoad(cold + sign * order.getColdVolume());
     }
 
-    private int calculateTravelTime(Location from, Location to) {
+    public boolean isCapacityExceeded() {
+        if (courier == null || hotLoad == null) {
+            return false;
+        }
+        return hotLoad > courier.getHotCapacity() || coldLoad > courier.getColdCapacity();
+    }
+
+    /**
+     * Driving minutes between two locations as the arrival times count them, rounded up.
+     */
+    public static int travelMinutes(Location from, Location to) {
         if (from == null || to == null) return 0;
 
-        Long seconds = from.timeTo(to);
-        if (seconds == null) {
-            return 0;
-        }
+        // round up to whole minutes without going through double
+        return ((int) from.timeTo(to) + 59) / 60;
+    }
+
+    /**
+     * Driving minutes between two locations as the road time counts them, rounded down.
+     */
+    public static int roadMinutes(Location from, Location to) {
+        if (from == null || to == null) return 0;
 
-        return (int) Math.ceil(seconds / 60.0);
+        return (int) from.timeTo(to) / 60;
     }
 
-    private int getServiceTime(Visit visit) {
-        // Time spent at the location (pickup or delivery)
-        if (visit.getType() == VisitType.RESTAURANT) {
-            // Pickup time at restaurant
-            return 5; // minutes
-        } else {
-            // Delivery time at customer
-            return 3; // minutes
-        }
+    /**
+     * Time spent at the location (pickup or delivery) before driving on.
+     */
+    public static int serviceMinutes(VisitType type) {
+        return type == VisitType.RESTAURANT ? PICKUP_SERVICE_MINUTES : DELIVERY_SERVICE_MINUTES;
     }
 
     @JsonProperty(access = JsonProperty.Access.READ_ONLY)
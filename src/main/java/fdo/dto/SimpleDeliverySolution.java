@@ -3,6 +3,7 @@ package fdo.dto;
 import ai.timefold.solver.core.api.score.buildin.hardsoft.HardSoftScore;
 import ai.timefold.solver.core.api.solver.SolverStatus;
 import fdo.domain.DeliverySolution;
+import fdo.job.JobStage;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -14,6 +15,7 @@ public class SimpleDeliverySolution {
     private SolverStatus solverStatus;
     private HardSoftScore score;
     private List<SimpleCourierShift> courierShifts;
+    private JobStage stage = JobStage.SOLVING;
 
     public SimpleDeliverySolution(
             SolverStatus solverStatus,
@@ -49,4 +51,13 @@ public class SimpleDeliverySolution {
                         .toList()
         );
     }
+
+    /**
+     * A job that is not handed to a solver yet, without a score or courier shifts.
+     */
+    public static SimpleDeliverySolution preparing(JobStage stage) {
+        SimpleDeliverySolution solution = new SimpleDeliverySolution(SolverStatus.SOLVING_SCHEDULED, null, List.of());
+        solution.setStage(stage);
+        return solution;
+    }
 }
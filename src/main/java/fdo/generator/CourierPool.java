@@ -0,0 +1,129 @@
+package fdo.generator;
+
+import fdo.domain.CourierShift;
+import fdo.domain.DeliverySolution;
+import fdo.domain.Order;
+import fdo.solver.DeliveryConstraintProvider;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * How many courier shifts a problem gets. Every shift is a planning entity, and empty ones still cost move
+ * selection, cloning and constraint stream time, so the pool is sized from the orders instead of a fixed
+ * multiple of them, and grown while solving when it runs out, see {@link fdo.solver.CourierPoolGrowth}.
+ */
+public class CourierPool {
+
+    public static final int DEFAULT_HOT_CAPACITY = 20;
+    public static final int DEFAULT_COLD_CAPACITY = 20;
+
+    // couriers created on top of the estimate, so local search has free ones to move orders to
+    private static final int POOL_SLACK = 2;
+
+    /**
+     * Couriers no solution without shift violations can do with: every order is delivered inside its window,
+     * by a shift of at most 6 hours, so the shifts have to hit all order windows.
+     * Counted greedily by latest minute, which gives the minimum.
+     */
+    public static int lowerBound(List<Order> orders) {
+        List<Order> byLatest = new ArrayList<>(orders);
+        byLatest.sort(Comparator.comparingInt(Order::getLatestMinute));
+        int count = 0;
+        long coveredUntil = Long.MIN_VALUE;
+        for (Order order : byLatest) {
+            if (order.getEarliestMinute() > coveredUntil) {
+                count++;
+                coveredUntil = (long) order.getLatestMinute() + DeliveryConstraintProvider.MAX_SHIFT_MINUTES;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * One courier per order is always enough.
+     */
+    public static int upperBound(List<Order> orders) {
+        return orders.size();
+    }
+
+    /**
+     * Couriers needed to carry, at the busiest minute, the food of all orders whose windows are open then.
+     */
+    public static int volumeEstimate(List<Order> orders, int hotCapacity, int coldCapacity) {
+        List<int[]> events = new ArrayList<>();
+        for (Order order : orders) {
+            events.add(new int[] {order.getEarliestMinute(), order.getHotVolume(), order.getColdVolume()});
+            events.add(new int[] {order.getLatestMinute(), -order.getHotVolume(), -order.getColdVolume()});
+        }
+        // windows closing at a minute are removed before the ones opening at it are added
+        events.sort(Comparator.<int[]>comparingInt(e -> e[0]).thenComparingInt(e -> e[1] + e[2]));
+        int hot = 0;
+        int cold = 0;
+        int peak = 0;
+        for (int[] event : events) {
+            hot += event[1];
+            cold += event[2];
+            peak = Math.max(peak, Math.max(divideUp(hot, hotCapacity), divideUp(cold, coldCapacity)));
+        }
+        return peak;
+    }
+
+    /**
+     * The estimate with some slack, kept between the bounds.
+     */
+    public static int size(List<Order> orders, int hotCapacity, int coldCapacity) {
+        if (orders.isEmpty()) {
+            return 0;
+        }
+        int lower = Math.max(1, lowerBound(orders));
+        long estimate = (long) Math.max(lower, volumeEstimate(orders, hotCapacity, coldCapacity)) * POOL_SLACK;
+        return Math.max(lower, (int) Math.min(upperBound(orders), estimate));
+    }
+
+    /**
+     * Empty courier shifts with ids C1, C2, ..., skipping ids already taken.
+     */
+    public static List<CourierShift> create(int count, int hotCapacity, int coldCapacity, Set<String> takenIds) {
+        List<CourierShift> couriers = new ArrayList<>(count);
+        Set<String> ids = new HashSet<>(takenIds);
+        for (int i = 1; couriers.size() < count; i++) {
+            String id = "C" + i;
+            if (ids.add(id)) {
+                CourierShift courier = new CourierShift(id, hotCapacity, coldCapacity);
+                courier.setVisits(new ArrayList<>());
+                couriers.add(courier);
+            }
+        }
+        return couriers;
+    }
+
+    /**
+     * Whether every courier of the solution has visits, so no order can move to a courier of its own.
+     */
+    public static boolean isExhausted(DeliverySolution solution) {
+        for (CourierShift courier : solution.getCourierShifts()) {
+            if (!courier.isUsed()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Couriers to add to an exhausted pool: half of its size, at least one.
+     */
+    public static int growth(int size) {
+        return Math.max(1, size / 2);
+    }
+
+    private static int divideUp(int volume, int capacity) {
+        if (volume <= 0) {
+            return 0;
+        }
+        return capacity <= 0 ? Integer.MAX_VALUE : (volume + capacity - 1) / capacity;
+    }
+}
@@ -5,43 +5,177 @@ import fdo.domain.Order;
 import fdo.domain.Restaurant;
 import fdo.domain.Visit;
 import fdo.domain.*;
+import lombok.extern.slf4j.Slf4j;
+
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
+@Slf4j
 public class Generator {
     public final class VisitGenerator {
 
+        /** Pickup candidates kept per order by {@link #generateAll(DeliverySolution)}. */
+        public static final int DEFAULT_MAX_PICKUP_CANDIDATES = 3;
+        /** Keeps every restaurant of the chain that can serve the order, only infeasible ones are dropped. */
+        public static final int ALL_PICKUP_CANDIDATES = Integer.MAX_VALUE;
+
         private VisitGenerator() {}
 
         public static List<Visit> generateAll(DeliverySolution solution) {
+            return generateAll(solution, DEFAULT_MAX_PICKUP_CANDIDATES);
+        }
+
+        /**
+         * Creates the CUSTOMER visit of every order and RESTAURANT visits for at most {@code maxPickupCandidates}
+         * restaurants of its chain, the fastest ones to the customer among those that can meet the order window.
+         * Travel times come from the travel matrix, so it should be built before; without it restaurants
+         * are ranked by straight line distance and only the opening hours are checked.
+         */
+        public static List<Visit> generateAll(DeliverySolution solution, int maxPickupCandidates) {
 
             List<Visit> visits = new ArrayList<>();
 
+            // HashMap, orders and restaurants without a chain still match each other
+            Map<String, List<Restaurant>> restaurantsByChain = new HashMap<>();
+            for (Restaurant restaurant : solution.getRestaurantList()) {
+                restaurantsByChain.computeIfAbsent(restaurant.getChainId(), chainId -> new ArrayList<>()).add(restaurant);
+            }
+
+            int chainRestaurantCount = 0;
+            int pickupCount = 0;
             for (Order order : solution.getOrders()) {
 
+                List<Restaurant> chainRestaurants = restaurantsByChain.getOrDefault(order.getChainId(), List.of());
+                chainRestaurantCount += chainRestaurants.size();
 
-                Visit delivery = new Visit();
-                //delivery.setId("DELIVERY-" + order.getId());
-                delivery.setVisitType(Visit.VisitType.CUSTOMER);
-                delivery.setOrder(order);
-                delivery.setLocation(order.getDeliveryLocation());
-                visits.add(delivery);
+                List<Visit> orderVisits = orderVisits(order, chainRestaurants, maxPickupCandidates);
+                visits.addAll(orderVisits);
+                pickupCount += orderVisits.size() - 1;
+            }
 
+            // ids per solution instead of the JVM wide Visit.ID_GENERATOR values, so a problem gets the same ids
+            // however many jobs ran before it, which keeps move threads and repeated runs reproducible
+            for (int i = 0; i < visits.size(); i++) {
+                visits.get(i).setId((long) i + 1);
+            }
 
-                for (Restaurant restaurant : solution.getRestaurantList().stream().filter(r -> Objects.equals(order.getChainId(), r.getChainId())).toList()) {
-                    Visit pickup = new Visit();
-                    //pickup.setId("PICKUP-" + order.getId() + "-" + restaurant.getId());
-                    pickup.setVisitType(Visit.VisitType.RESTAURANT);
-                    pickup.setOrder(order);
-                    pickup.setRestaurant(restaurant);
-                    pickup.setLocation(restaurant.getLocation());
+            log.info("Generated {} visits for {} orders, {} of {} chain restaurants kept as pickup candidates",
+                    visits.size(), solution.getOrders().size(), pickupCount, chainRestaurantCount);
+            return visits;
+        }
 
-                    visits.add(pickup);
+        /**
+         * The visits of an order added to a problem that is being solved, see {@link #generateAll}, with ids
+         * from {@code firstId} on. The travel times come from the matrix the order's location is bound to.
+         */
+        public static List<Visit> generateForOrder(List<Restaurant> restaurants, Order order, int maxPickupCandidates,
+                                                   long firstId) {
+            List<Restaurant> chainRestaurants = new ArrayList<>();
+            for (Restaurant restaurant : restaurants) {
+                if (Objects.equals(restaurant.getChainId(), order.getChainId())) {
+                    chainRestaurants.add(restaurant);
                 }
             }
+            List<Visit> visits = orderVisits(order, chainRestaurants, maxPickupCandidates);
+            for (int i = 0; i < visits.size(); i++) {
+                visits.get(i).setId(firstId + i);
+            }
+            return visits;
+        }
 
+        // the CUSTOMER visit first, then a RESTAURANT visit per pickup candidate
+        private static List<Visit> orderVisits(Order order, List<Restaurant> chainRestaurants,
+                                               int maxPickupCandidates) {
+            List<Visit> visits = new ArrayList<>();
+
+            Visit delivery = new Visit();
+            //delivery.setId("DELIVERY-" + order.getId());
+            delivery.setVisitType(Visit.VisitType.CUSTOMER);
+            delivery.setOrder(order);
+            delivery.setLocation(order.getDeliveryLocation());
+            visits.add(delivery);
+
+            for (Restaurant restaurant : pickupCandidates(order, chainRestaurants, maxPickupCandidates)) {
+                Visit pickup = new Visit();
+                //pickup.setId("PICKUP-" + order.getId() + "-" + restaurant.getId());
+                pickup.setVisitType(Visit.VisitType.RESTAURANT);
+                pickup.setOrder(order);
+                pickup.setRestaurant(restaurant);
+                pickup.setLocation(restaurant.getLocation());
+                visits.add(pickup);
+            }
             return visits;
         }
+
+        /**
+         * The feasible restaurants ordered by travel time to the customer, cut to {@code maxPickupCandidates}.
+         * When none is feasible the fastest one is kept anyway, so the order can still be planned and the
+         * constraints report what is violated.
+         */
+        private static List<Restaurant> pickupCandidates(Order order, List<Restaurant> chainRestaurants,
+                                                         int maxPickupCandidates) {
+            if (chainRestaurants.isEmpty()) {
+                return chainRestaurants;
+            }
+            Location customer = order.getDeliveryLocation();
+            List<Restaurant> ranked = new ArrayList<>(chainRestaurants);
+            ranked.sort(Comparator.comparingDouble((Restaurant r) -> travelCost(r.getLocation(), customer))
+                    .thenComparing(Restaurant::getId, Comparator.nullsFirst(Comparator.naturalOrder())));
+
+            List<Restaurant> candidates = new ArrayList<>();
+            for (Restaurant restaurant : ranked) {
+                if (candidates.size() >= Math.max(1, maxPickupCandidates)) {
+                    break;
+                }
+                if (canServe(order, restaurant)) {
+                    candidates.add(restaurant);
+                }
+            }
+            if (candidates.isEmpty()) {
+                candidates.add(ranked.get(0));
+            }
+            return candidates;
+        }
+
+        /**
+         * Whether a pickup at the restaurant can lie in its opening hours with the food cooked from the opening,
+         * and still reach the customer before the order's latest minute and within its max delivery time.
+         */
+        private static boolean canServe(Order order, Restaurant restaurant) {
+            int earliestPickup = Math.max(order.getEarliestMinute(),
+                    restaurant.getStartMinute() + order.getTotalCookTime());
+            int latestPickup = restaurant.getEndMinute();
+
+            Location customer = order.getDeliveryLocation();
+            if (restaurant.getLocation() != null && customer != null && customer.getTravelMatrix() != null) {
+                int travelMinutes = travelMinutes(restaurant.getLocation(), customer) + Visit.PICKUP_SERVICE_MINUTES;
+                if (travelMinutes > order.getMinAllowedTimeToDeliver()) {
+                    return false;
+                }
+                latestPickup = Math.min(latestPickup, order.getLatestMinute() - travelMinutes);
+            }
+            return earliestPickup <= latestPickup;
+        }
+
+        // read from the customer's matrix: for an order added while solving it is the extended one, see
+        // Router.extendTravelMatrix, while the restaurants are still bound to the matrix before
+        private static double travelCost(Location from, Location to) {
+            if (from == null || to == null) {
+                return Double.MAX_VALUE;
+            }
+            if (to.getTravelMatrix() == null) {
+                return from.simpleDistanceTo(to);
+            }
+            return to.getTravelMatrix().time(from.getIndex(), to.getIndex());
+        }
+
+        // rounded up like Visit.travelMinutes, from the matrix of the customer
+        private static int travelMinutes(Location from, Location to) {
+            return (to.getTravelMatrix().time(from.getIndex(), to.getIndex()) + 59) / 60;
+        }
     }
 }
\ No newline at end of file
@@ -11,6 +11,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class JsonIO {
 
@@ -27,6 +28,43 @@ public class JsonIO {
         }
     }
 
+    /**
+     * Customer addresses of a problem in the vehicle routing format of data/real_slots_problem_200.json:
+     * the locations of its {@code domain.Customer} visits, in visit order. Its other content has no counterpart here.
+     */
+    public static List<Location> read_customer_locations(String jsonPath) {
+        try {
+            JsonNode root = mapper.readTree(new File(jsonPath));
+
+            Map<Long, Location> locationMap = new HashMap<>();
+            for (JsonNode locNode : root.path("locationList")) {
+                Location location = new Location(
+                        locNode.get("id").asLong(),
+                        locNode.get("lat").asDouble(),
+                        locNode.get("lon").asDouble()
+                );
+                locationMap.put(location.getId(), location);
+            }
+
+            List<Location> customers = new ArrayList<>();
+            for (JsonNode visitNode : root.path("visitList")) {
+                if (!"domain.Customer".equals(visitNode.path("@class").asText())) {
+                    continue;
+                }
+                Long locationId = extractLocationId(visitNode.get("location"));
+                Location location = locationMap.get(locationId);
+                if (location == null) {
+                    throw new RuntimeException("Location with id " + locationId + " not found for visit "
+                            + visitNode.path("name").asText());
+                }
+                customers.add(location);
+            }
+            return customers;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read JSON: " + jsonPath, e);
+        }
+    }
+
     public static DeliverySolution parse_json(JsonNode root) {
         // Locations
         Map<Long, Location> locationMap = new HashMap<>();
@@ -91,51 +129,20 @@ public class JsonIO {
         JsonNode orderList = root.get("orders");
         if (orderList != null) {
             for (JsonNode orderNode : orderList) {
-                // Delivery
-                Long deliveryLocationId = extractLocationId(orderNode.get("deliveryLocation"));
-                Location deliveryLocation = locationMap.get(deliveryLocationId);
-
-                if (deliveryLocation == null) {
-                    throw new RuntimeException("Location with id " + deliveryLocationId + " not found for order " + orderNode.get("id").asText());
-                }
-
-                // Check "foods"
-                List<Food> orderFoods = new ArrayList<>();
-                JsonNode foodsNode = orderNode.get("foods");
-
-                if (foodsNode != null) {
-                    for (JsonNode foodIdNode : foodsNode) {
-                        String foodId = foodIdNode.asText();
-                        Food food = foodMap.get(foodId);
-                        if (food == null) {
-                            throw new RuntimeException("Food with id " + foodId + " not found for order " + orderNode.get("id").asText());
-                        }
-                        orderFoods.add(food);
-                    }
-                }
-
-                Order order = new Order(
-                        orderNode.get("id").asText(),
-                        orderNode.get("earliestMinute").asInt(),
-                        orderNode.get("latestMinute").asInt(),
-                        orderFoods
-                );
-                order.setDeliveryLocation(deliveryLocation);
-                orders.add(order);
+                orders.add(parse_order(orderNode, foodMap, locationMap));
             }
         }
 
-        // CourierShift
-        List<CourierShift> couriers = new ArrayList<>();
-        for (int i = 1; i <= orders.size() * 10; i++) {
-            CourierShift courier = new CourierShift(
-                    "C" + i,
-                    20,      // hotCapacity
-                    20                  // coldCapacity
-            );
-            courier.setVisits(new ArrayList<>());
-            couriers.add(courier);
+        // CourierShift: capacities from "courierCapacity" if given, pool sized from the orders (grown while solving)
+        int hotCapacity = CourierPool.DEFAULT_HOT_CAPACITY;
+        int coldCapacity = CourierPool.DEFAULT_COLD_CAPACITY;
+        JsonNode capacityNode = root.get("courierCapacity");
+        if (capacityNode != null) {
+            hotCapacity = capacityNode.path("hotCapacity").asInt(hotCapacity);
+            coldCapacity = capacityNode.path("coldCapacity").asInt(coldCapacity);
         }
+        List<CourierShift> couriers = CourierPool.create(
+                CourierPool.size(orders, hotCapacity, coldCapacity), hotCapacity, coldCapacity, Set.of());
 
         // Create solution
         DeliverySolution solution = new DeliverySolution();
@@ -148,9 +155,67 @@ public class JsonIO {
         return solution;
     }
 
+    /**
+     * An order of the "orders" list. Its "deliveryLocation" is the id of a location of the map, or a location object
+     * with "lat" and "lon" that is added to the map when its id is not there yet.
+     *
+     * @throws IllegalArgumentException when a field is missing, or a location or food is not found
+     */
+    public static Order parse_order(JsonNode orderNode, Map<String, Food> foodMap, Map<Long, Location> locationMap) {
+        for (String field : List.of("id", "deliveryLocation", "earliestMinute", "latestMinute")) {
+            if (!orderNode.hasNonNull(field)) {
+                throw new IllegalArgumentException("Order has no " + field + ": " + orderNode);
+            }
+        }
+
+        // Delivery
+        JsonNode locationNode = orderNode.get("deliveryLocation");
+        Long deliveryLocationId = extractLocationId(locationNode);
+        Location deliveryLocation = locationMap.get(deliveryLocationId);
+
+        if (deliveryLocation == null && locationNode.has("lat") && locationNode.has("lon")) {
+            deliveryLocation = new Location(
+                    deliveryLocationId,
+                    locationNode.get("lat").asDouble(),
+                    locationNode.get("lon").asDouble()
+            );
+        }
+        if (deliveryLocation == null) {
+            throw new IllegalArgumentException("Location with id " + deliveryLocationId + " not found for order " + orderNode.get("id").asText());
+        }
+
+        // Check "foods"
+        List<Food> orderFoods = new ArrayList<>();
+        JsonNode foodsNode = orderNode.get("foods");
+
+        if (foodsNode != null) {
+            for (JsonNode foodIdNode : foodsNode) {
+                String foodId = foodIdNode.asText();
+                Food food = foodMap.get(foodId);
+                if (food == null) {
+                    throw new IllegalArgumentException("Food with id " + foodId + " not found for order " + orderNode.get("id").asText());
+                }
+                orderFoods.add(food);
+            }
+        }
+        if (orderFoods.isEmpty()) {
+            throw new IllegalArgumentException("Order " + orderNode.get("id").asText() + " has no foods");
+        }
+
+        Order order = new Order(
+                orderNode.get("id").asText(),
+                orderNode.get("earliestMinute").asInt(),
+                orderNode.get("latestMinute").asInt(),
+                orderFoods
+        );
+        order.setDeliveryLocation(deliveryLocation);
+        locationMap.putIfAbsent(deliveryLocationId, deliveryLocation);
+        return order;
+    }
+
     private static Long extractLocationId(JsonNode locationNode) {
         if (locationNode == null) {
-            throw new RuntimeException("Location node is null");
+            throw new IllegalArgumentException("Location node is null");
         }
 
         if (locationNode.isTextual()) {
@@ -171,6 +236,6 @@ public class JsonIO {
             }
         }
 
-        throw new RuntimeException("Cannot extract location ID from node: " + locationNode);
+        throw new IllegalArgumentException("Cannot extract location ID from node: " + locationNode);
     }
 }
@@ -0,0 +1,116 @@
+package fdo.generator;
+
+import fdo.domain.CourierShift;
+import fdo.domain.DeliverySolution;
+import fdo.domain.Food;
+import fdo.domain.Location;
+import fdo.domain.Order;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Larger problems made from a real one: same foods and restaurants, many more orders.
+ * <p>
+ * Each generated order takes the window length and delivery area of a random order of the base problem, at a random
+ * time of the base evening, with one to three foods of a random chain. Its customer is placed a few hundred metres
+ * from the base customer, close enough to stay on the road network of the base city, unless real customer
+ * addresses are given.
+ */
+@Slf4j
+public class ProblemGenerator {
+
+    // about 200 m in latitude
+    private static final double CUSTOMER_JITTER_DEGREES = 0.002;
+    private static final int MAX_FOODS_PER_ORDER = 3;
+
+    private ProblemGenerator() {}
+
+    public static DeliverySolution generate(DeliverySolution base, int orderCount, long seed) {
+        return generate(base, orderCount, null, seed);
+    }
+
+    /**
+     * One order at each of the given addresses, e.g. those of {@link JsonIO#read_customer_locations}, which must be
+     * in the base city.
+     */
+    public static DeliverySolution generate(DeliverySolution base, List<Location> customers, long seed) {
+        return generate(base, customers.size(), customers, seed);
+    }
+
+    private static DeliverySolution generate(DeliverySolution base, int orderCount, List<Location> customers,
+                                             long seed) {
+        Random random = new Random(seed);
+        List<Order> baseOrders = base.getOrders();
+        if (baseOrders.isEmpty()) {
+            throw new RuntimeException("Base problem has no orders to generate from");
+        }
+
+        Map<String, List<Food>> foodsByChain = new LinkedHashMap<>();
+        for (Food food : base.getFoods()) {
+            foodsByChain.computeIfAbsent(food.getChainId(), chainId -> new ArrayList<>()).add(food);
+        }
+        List<List<Food>> chains = new ArrayList<>(foodsByChain.values());
+
+        int eveningStart = Integer.MAX_VALUE;
+        int eveningEnd = Integer.MIN_VALUE;
+        long nextLocationId = 0;
+        for (Order order : baseOrders) {
+            eveningStart = Math.min(eveningStart, order.getEarliestMinute());
+            eveningEnd = Math.max(eveningEnd, order.getLatestMinute());
+        }
+        for (Location location : base.getLocationList()) {
+            nextLocationId = Math.max(nextLocationId, location.getId() + 1);
+        }
+
+        List<Location> locations = new ArrayList<>(base.getLocationList());
+        List<Order> orders = new ArrayList<>(orderCount);
+        for (int i = 0; i < orderCount; i++) {
+            Order template = baseOrders.get(random.nextInt(baseOrders.size()));
+            int window = template.getLatestMinute() - template.getEarliestMinute();
+            int earliest = eveningStart + random.nextInt(Math.max(1, eveningEnd - window - eveningStart + 1));
+
+            List<Food> chain = chains.get(random.nextInt(chains.size()));
+            List<Food> foods = new ArrayList<>();
+            int foodCount = 1 + random.nextInt(MAX_FOODS_PER_ORDER);
+            for (int f = 0; f < foodCount; f++) {
+                foods.add(chain.get(random.nextInt(chain.size())));
+            }
+
+            Location customer;
+            if (customers != null) {
+                // a copy with an id of this problem
+                customer = new Location(nextLocationId++, customers.get(i).getLat(), customers.get(i).getLon());
+            } else {
+                Location near = template.getDeliveryLocation();
+                customer = new Location(nextLocationId++,
+                        near.getLat() + (random.nextDouble() * 2 - 1) * CUSTOMER_JITTER_DEGREES,
+                        near.getLon() + (random.nextDouble() * 2 - 1) * CUSTOMER_JITTER_DEGREES);
+            }
+            locations.add(customer);
+
+            Order order = new Order("G" + (i + 1), earliest, earliest + window, foods);
+            order.setDeliveryLocation(customer);
+            orders.add(order);
+        }
+
+        List<CourierShift> couriers = CourierPool.create(
+                CourierPool.size(orders, CourierPool.DEFAULT_HOT_CAPACITY, CourierPool.DEFAULT_COLD_CAPACITY),
+                CourierPool.DEFAULT_HOT_CAPACITY, CourierPool.DEFAULT_COLD_CAPACITY, Set.of());
+
+        DeliverySolution solution = new DeliverySolution();
+        solution.setCourierShifts(couriers);
+        solution.setOrders(orders);
+        solution.setRestaurantList(new ArrayList<>(base.getRestaurantList()));
+        solution.setFoods(new ArrayList<>(base.getFoods()));
+        solution.setLocationList(locations);
+        log.info("Generated {} orders from {} base orders, {} couriers", orders.size(), baseOrders.size(),
+                couriers.size());
+        return solution;
+    }
+}
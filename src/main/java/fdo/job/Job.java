@@ -0,0 +1,26 @@
+package fdo.job;
+
+import fdo.domain.DeliverySolution;
+
+/**
+ * A submitted job as the {@link JobStore} holds it: its best solution so far, the exception it failed with, the
+ * stage it is in while prepared, or only a mark that its finished solution was spilled to disk.
+ */
+public record Job(DeliverySolution deliverySolution, Throwable exception, JobStage stage, boolean spilled) {
+
+    public static Job ofDeliverySolution(DeliverySolution deliverySolution) {
+        return new Job(deliverySolution, null, JobStage.SOLVING, false);
+    }
+
+    public static Job ofStage(JobStage stage) {
+        return new Job(null, null, stage, false);
+    }
+
+    public static Job ofException(Throwable error) {
+        return new Job(null, error, null, false);
+    }
+
+    public static Job ofSpilled() {
+        return new Job(null, null, JobStage.SOLVING, true);
+    }
+}
@@ -0,0 +1,151 @@
+package fdo.job;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import fdo.domain.DeliverySolution;
+import fdo.domain.Router;
+import fdo.generator.Generator;
+import fdo.generator.JsonIO;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prepares submitted jobs off the request thread, in stages with their own threads: parsing, the travel matrix and
+ * visit generation, see {@link JobStage}. A prepared problem is handed to {@link Listener#onPrepared}, which starts
+ * solving it.
+ * <p>
+ * At most {@code maxPreparingJobs} jobs are between submission and solving, further submissions are rejected. As every
+ * stage queue holds that many jobs, a job admitted once is never rejected by a later stage.
+ */
+public class JobPipeline implements AutoCloseable {
+
+    /**
+     * Called from the stage threads, one call at a time per job.
+     */
+    public interface Listener {
+
+        void onStage(String jobId, JobStage stage);
+
+        void onPrepared(String jobId, DeliverySolution problem);
+
+        void onFailure(String jobId, Throwable exception);
+    }
+
+    private final Router router;
+    private final int maxPreparingJobs;
+    private final Semaphore admissions;
+    private final ThreadPoolExecutor parseExecutor;
+    private final ThreadPoolExecutor routeExecutor;
+    private final ThreadPoolExecutor visitExecutor;
+
+    /**
+     * @param maxPreparingJobs jobs admitted and not handed to a solver yet
+     * @param threadsPerStage jobs each stage works on at once
+     */
+    public JobPipeline(Router router, int maxPreparingJobs, int threadsPerStage) {
+        this.router = router;
+        this.maxPreparingJobs = maxPreparingJobs;
+        this.admissions = new Semaphore(maxPreparingJobs);
+        this.parseExecutor = stageExecutor("fdo-parse", threadsPerStage, maxPreparingJobs);
+        this.routeExecutor = stageExecutor("fdo-route", threadsPerStage, maxPreparingJobs);
+        this.visitExecutor = stageExecutor("fdo-visits", threadsPerStage, maxPreparingJobs);
+    }
+
+    /**
+     * A problem in our custom JSON template: parsed, routed and given its visits.
+     *
+     * @throws RejectedExecutionException when {@code maxPreparingJobs} jobs are being prepared already
+     */
+    public void submitCustom(String jobId, JsonNode root, Listener listener) {
+        admit(jobId, JobStage.PARSING, listener);
+        execute(parseExecutor, jobId, listener, () -> route(jobId, JsonIO.parse_json(root), listener));
+    }
+
+    /**
+     * A problem that comes with its visits: only routed.
+     *
+     * @throws RejectedExecutionException when {@code maxPreparingJobs} jobs are being prepared already
+     */
+    public void submit(String jobId, DeliverySolution problem, Listener listener) {
+        admit(jobId, JobStage.ROUTING, listener);
+        execute(routeExecutor, jobId, listener, () -> {
+            router.setDistanceTimeMap(problem);
+            prepared(jobId, problem, listener);
+        });
+    }
+
+    public int getPreparingJobCount() {
+        return maxPreparingJobs - admissions.availablePermits();
+    }
+
+    private void admit(String jobId, JobStage firstStage, Listener listener) {
+        if (!admissions.tryAcquire()) {
+            throw new RejectedExecutionException("Already preparing " + maxPreparingJobs + " jobs, try again later");
+        }
+        listener.onStage(jobId, firstStage);
+    }
+
+    private void route(String jobId, DeliverySolution problem, Listener listener) {
+        listener.onStage(jobId, JobStage.ROUTING);
+        execute(routeExecutor, jobId, listener, () -> {
+            router.setDistanceTimeMap(problem);
+            generateVisits(jobId, problem, listener);
+        });
+    }
+
+    private void generateVisits(String jobId, DeliverySolution problem, Listener listener) {
+        listener.onStage(jobId, JobStage.GENERATING_VISITS);
+        execute(visitExecutor, jobId, listener, () -> {
+            problem.setVisitList(Generator.VisitGenerator.generateAll(problem));
+            prepared(jobId, problem, listener);
+        });
+    }
+
+    private void prepared(String jobId, DeliverySolution problem, Listener listener) {
+        admissions.release();
+        try {
+            listener.onStage(jobId, JobStage.SOLVING);
+            listener.onPrepared(jobId, problem);
+        } catch (RuntimeException e) {
+            listener.onFailure(jobId, e);
+        }
+    }
+
+    /**
+     * Runs a stage, giving the job's admission back when it fails before the job is prepared.
+     */
+    private void execute(ThreadPoolExecutor executor, String jobId, Listener listener, Runnable stage) {
+        try {
+            executor.execute(() -> {
+                try {
+                    stage.run();
+                } catch (RuntimeException e) {
+                    admissions.release();
+                    listener.onFailure(jobId, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // only when shutting down, the queues have room for every admitted job
+            admissions.release();
+            listener.onFailure(jobId, e);
+        }
+    }
+
+    private static ThreadPoolExecutor stageExecutor(String name, int threads, int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, name + "-" + threadNumber.incrementAndGet()));
+    }
+
+    @Override
+    public void close() {
+        parseExecutor.shutdownNow();
+        routeExecutor.shutdownNow();
+        visitExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,15 @@
+package fdo.job;
+
+/**
+ * Where a submitted job is: one of the preparation stages of {@link JobPipeline}, or handed to a solver.
+ */
+public enum JobStage {
+    /** Waiting for or in JsonIO.parse_json. */
+    PARSING,
+    /** Waiting for or in Router.setDistanceTimeMap, the travel matrix. */
+    ROUTING,
+    /** Waiting for or in the generation of pickup and delivery visits. */
+    GENERATING_VISITS,
+    /** Handed to a solver, see the solver status for whether it is scheduled or running. */
+    SOLVING
+}
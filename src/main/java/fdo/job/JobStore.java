@@ -0,0 +1,305 @@
+package fdo.job;
+
+import fdo.domain.DeliverySolution;
+import fdo.domain.TravelMatrix;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The submitted jobs, with bounded retention: a job is evicted when it was not touched (submitted, improved or
+ * requested) for {@code ttl}, or as least recently used when there are more than {@code maxJobs}. The eviction
+ * listener terminates the solver of an evicted job.
+ * <p>
+ * A finished solution keeps its problem facts and travel matrix alive, so it is {@link #spill spilled} to disk as a
+ * {@link SpilledSolution} and only a mark stays in memory. Spilled solutions are read back on request, the last
+ * {@code loadedCacheSize} of them are kept.
+ */
+@Slf4j
+public class JobStore implements AutoCloseable {
+
+    private static final String SPILL_SUFFIX = ".job.gz";
+    private static final Duration EVICTION_INTERVAL = Duration.ofMinutes(1);
+
+    private final Path spillDirectory;
+    private final long ttlNanos;
+    private final int maxJobs;
+    private final int loadedCacheSize;
+    private final Consumer<String> evictionListener;
+    // access ordered, the least recently used job first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, SpilledSolution> loaded = new LinkedHashMap<>(16, 0.75f, true);
+    private final ScheduledExecutorService evictionExecutor = Executors.newSingleThreadScheduledExecutor();
+    private long spilledBytes;
+    private long evictedCount;
+
+    /**
+     * @param evictionListener called with the id of each evicted job, outside of the store's lock
+     */
+    public JobStore(Path spillDirectory, Duration ttl, int maxJobs, int loadedCacheSize,
+                    Consumer<String> evictionListener) {
+        this.spillDirectory = spillDirectory;
+        this.ttlNanos = ttl.toNanos();
+        this.maxJobs = maxJobs;
+        this.loadedCacheSize = loadedCacheSize;
+        this.evictionListener = evictionListener;
+        try {
+            Files.createDirectories(spillDirectory);
+            // jobs do not survive a restart, neither do their spills
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(spillDirectory, "*" + SPILL_SUFFIX)) {
+                for (Path file : stale) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to prepare job spill directory: " + spillDirectory, e);
+        }
+        long intervalMillis = EVICTION_INTERVAL.toMillis();
+        evictionExecutor.scheduleWithFixedDelay(this::evictExpired, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a new job, evicting the least recently used ones beyond {@code maxJobs}.
+     */
+    public void put(String jobId, Job job) {
+        List<String> evicted = new ArrayList<>();
+        synchronized (this) {
+            entries.put(jobId, new Entry(job, System.nanoTime()));
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maxJobs && eldest.hasNext()) {
+                Map.Entry<String, Entry> entry = eldest.next();
+                if (!entry.getKey().equals(jobId)) {
+                    eldest.remove();
+                    discard(entry.getKey(), entry.getValue());
+                    evicted.add(entry.getKey());
+                }
+            }
+        }
+        notifyEvicted(evicted, "job limit");
+    }
+
+    /**
+     * Replaces the job, unless it was evicted or spilled already.
+     *
+     * @return whether the job was replaced, false tells a solver its job is gone
+     */
+    public synchronized boolean update(String jobId, Job job) {
+        Entry entry = entries.get(jobId);
+        if (entry == null || entry.spillFile != null) {
+            return false;
+        }
+        entry.job = job;
+        entry.touchedNanos = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * @return the job, {@link Job#spilled()} when its solution is on disk, or null when unknown or evicted
+     */
+    public synchronized Job get(String jobId) {
+        Entry entry = entries.get(jobId);
+        if (entry == null) {
+            return null;
+        }
+        entry.touchedNanos = System.nanoTime();
+        return entry.job;
+    }
+
+    public synchronized boolean contains(String jobId) {
+        return entries.containsKey(jobId);
+    }
+
+    public synchronized List<String> getJobIds() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * Writes the finished job's solution to disk and drops it from memory.
+     */
+    public void spill(String jobId, SpilledSolution solution) {
+        Path file = spillDirectory.resolve(jobId + SPILL_SUFFIX);
+        solution.write(file);
+        long bytes = size(file);
+        synchronized (this) {
+            Entry entry = entries.get(jobId);
+            if (entry != null) {
+                entry.job = Job.ofSpilled();
+                entry.spillFile = file;
+                entry.spillBytes = bytes;
+                spilledBytes += bytes;
+                return;
+            }
+        }
+        // evicted while writing
+        delete(file);
+    }
+
+    /**
+     * The spilled solution of the job, read from disk unless one of the last few read.
+     *
+     * @return null when the job is unknown, evicted or not spilled
+     */
+    public SpilledSolution getSpilled(String jobId) {
+        Path file;
+        synchronized (this) {
+            SpilledSolution solution = loaded.get(jobId);
+            if (solution != null) {
+                return solution;
+            }
+            Entry entry = entries.get(jobId);
+            if (entry == null || entry.spillFile == null) {
+                return null;
+            }
+            file = entry.spillFile;
+        }
+        SpilledSolution solution = SpilledSolution.read(file);
+        synchronized (this) {
+            if (entries.containsKey(jobId)) {
+                loaded.put(jobId, solution);
+                Iterator<String> eldest = loaded.keySet().iterator();
+                while (loaded.size() > loadedCacheSize && eldest.hasNext()) {
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+        }
+        return solution;
+    }
+
+    public synchronized JobStoreStats getStats() {
+        int inMemorySolutionCount = 0;
+        int spilledCount = 0;
+        long visitCount = 0;
+        Set<TravelMatrix> matrices = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Entry entry : entries.values()) {
+            if (entry.spillFile != null) {
+                spilledCount++;
+            }
+            DeliverySolution solution = entry.job.deliverySolution();
+            if (solution != null) {
+                inMemorySolutionCount++;
+                visitCount += solution.getVisitList() == null ? 0 : solution.getVisitList().size();
+                if (solution.getTravelMatrix() != null) {
+                    matrices.add(solution.getTravelMatrix());
+                }
+            }
+        }
+        long matrixBytes = 0;
+        for (TravelMatrix matrix : matrices) {
+            matrixBytes += matrix.getMemoryBytes();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return new JobStoreStats(entries.size(), inMemorySolutionCount, spilledCount, spilledBytes, loaded.size(),
+                matrixBytes, visitCount, evictedCount, runtime.totalMemory() - runtime.freeMemory(),
+                runtime.maxMemory());
+    }
+
+    /**
+     * Evicts the jobs not touched for the TTL, runs every {@link #EVICTION_INTERVAL}.
+     */
+    public void evictExpired() {
+        List<String> evicted = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Entry> entry = iterator.next();
+                if (now - entry.getValue().touchedNanos > ttlNanos) {
+                    iterator.remove();
+                    discard(entry.getKey(), entry.getValue());
+                    evicted.add(entry.getKey());
+                }
+            }
+        }
+        notifyEvicted(evicted, "TTL");
+    }
+
+    /**
+     * Removes the job without notifying the eviction listener.
+     */
+    public void remove(String jobId) {
+        synchronized (this) {
+            Entry entry = entries.remove(jobId);
+            if (entry != null) {
+                discard(jobId, entry);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        evictionExecutor.shutdownNow();
+    }
+
+    // under the lock, the entry is already out of entries
+    private void discard(String jobId, Entry entry) {
+        loaded.remove(jobId);
+        if (entry.spillFile != null) {
+            spilledBytes -= entry.spillBytes;
+            delete(entry.spillFile);
+        }
+    }
+
+    private void notifyEvicted(List<String> evicted, String reason) {
+        if (evicted.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            evictedCount += evicted.size();
+        }
+        log.info("Evicted {} jobs by {}", evicted.size(), reason);
+        for (String jobId : evicted) {
+            try {
+                evictionListener.accept(jobId);
+            } catch (RuntimeException e) {
+                log.warn("Eviction listener failed for jobId ({}).", jobId, e);
+            }
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete spilled job {}", file, e);
+        }
+    }
+
+    private static final class Entry {
+        private Job job;
+        private long touchedNanos;
+        private Path spillFile;
+        private long spillBytes;
+
+        private Entry(Job job, long touchedNanos) {
+            this.job = job;
+            this.touchedNanos = touchedNanos;
+        }
+    }
+}
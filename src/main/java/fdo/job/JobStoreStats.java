@@ -0,0 +1,14 @@
+package fdo.job;
+
+/**
+ * What the {@link JobStore} holds, and the heap it is taken from.
+ *
+ * @param matrixBytes travel matrices of the solutions in memory, a matrix shared by several solutions counted once
+ * @param visitCount visits of the solutions in memory
+ * @param loadedCount spilled solutions read back and cached for repeated requests
+ * @param evictedCount jobs removed by TTL or by the job limit since start
+ */
+public record JobStoreStats(int jobCount, int inMemorySolutionCount, int spilledCount, long spilledBytes,
+                            int loadedCount, long matrixBytes, long visitCount, long evictedCount,
+                            long heapUsedBytes, long heapMaxBytes) {
+}
@@ -0,0 +1,240 @@
+package fdo.job;
+
+import ai.timefold.solver.core.api.score.buildin.hardsoft.HardSoftScore;
+import ai.timefold.solver.core.api.solver.SolverStatus;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.GHPoint;
+import fdo.domain.Location;
+import fdo.domain.Polyline;
+import fdo.dto.SimpleCourierShift;
+import fdo.dto.SimpleDeliverySolution;
+import fdo.dto.SimpleVisit;
+import fdo.solver.SimpleConstraintMatch;
+import fdo.solver.SimpleConstraintScore;
+import fdo.solver.SimpleIndictmentObject;
+import fdo.solver.SimpleScoreAnalysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * What is left of a finished job once its solution leaves the heap: the answers of the three GET endpoints,
+ * without the problem facts and the travel matrix they were computed from.
+ * <p>
+ * On disk it is a gzipped binary file, paths between visits as encoded polylines, see {@link Polyline}.
+ */
+public record SpilledSolution(SimpleDeliverySolution solution, SimpleScoreAnalysis analysis,
+                              List<SimpleIndictmentObject> indictments) {
+
+    private static final int MAGIC = 0x46444A53; // "FDJS"
+    private static final int VERSION = 1;
+
+    public void write(Path file) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(file))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            writeString(out, solution.getSolverStatus() == null ? null : solution.getSolverStatus().name());
+            writeString(out, solution.getStage() == null ? null : solution.getStage().name());
+            writeScore(out, solution.getScore());
+            out.writeInt(solution.getCourierShifts().size());
+            for (SimpleCourierShift courier : solution.getCourierShifts()) {
+                writeString(out, courier.getId());
+                out.writeInt(courier.getHotCapacity());
+                out.writeInt(courier.getColdCapacity());
+                out.writeInt(courier.getVisits().size());
+                for (SimpleVisit visit : courier.getVisits()) {
+                    writeVisit(out, visit);
+                }
+            }
+
+            writeScore(out, analysis.getScore());
+            out.writeInt(analysis.getConstraints().size());
+            for (SimpleConstraintScore constraint : analysis.getConstraints()) {
+                writeString(out, constraint.getName());
+                writeScore(out, constraint.getScore());
+            }
+
+            out.writeInt(indictments.size());
+            for (SimpleIndictmentObject indictment : indictments) {
+                writeString(out, indictment.getIndictedObjectID());
+                writeString(out, indictment.getIndictedObjectClass());
+                writeScore(out, indictment.getScore());
+                out.writeInt(indictment.getMatchCount());
+                out.writeInt(indictment.getConstraintMatches().size());
+                for (SimpleConstraintMatch match : indictment.getConstraintMatches()) {
+                    writeString(out, match.getConstraintName());
+                    writeScore(out, match.getScore());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to spill solution: " + file, e);
+        }
+    }
+
+    public static SpilledSolution read(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a spilled solution of this version");
+            }
+
+            String solverStatus = readString(in);
+            String stage = readString(in);
+            HardSoftScore score = readScore(in);
+            int courierCount = in.readInt();
+            List<SimpleCourierShift> couriers = new ArrayList<>(courierCount);
+            for (int c = 0; c < courierCount; c++) {
+                String id = readString(in);
+                int hotCapacity = in.readInt();
+                int coldCapacity = in.readInt();
+                int visitCount = in.readInt();
+                List<SimpleVisit> visits = new ArrayList<>(visitCount);
+                for (int v = 0; v < visitCount; v++) {
+                    visits.add(readVisit(in));
+                }
+                couriers.add(new SimpleCourierShift(id, hotCapacity, coldCapacity, visits));
+            }
+            SimpleDeliverySolution solution = new SimpleDeliverySolution(
+                    solverStatus == null ? null : SolverStatus.valueOf(solverStatus), score, couriers);
+            solution.setStage(stage == null ? null : JobStage.valueOf(stage));
+
+            HardSoftScore analysisScore = readScore(in);
+            int constraintCount = in.readInt();
+            List<SimpleConstraintScore> constraints = new ArrayList<>(constraintCount);
+            for (int i = 0; i < constraintCount; i++) {
+                constraints.add(new SimpleConstraintScore(readString(in), readScore(in)));
+            }
+
+            int indictmentCount = in.readInt();
+            List<SimpleIndictmentObject> indictments = new ArrayList<>(indictmentCount);
+            for (int i = 0; i < indictmentCount; i++) {
+                String id = readString(in);
+                String indictedClass = readString(in);
+                HardSoftScore indictmentScore = readScore(in);
+                int matchCount = in.readInt();
+                int storedMatchCount = in.readInt();
+                List<SimpleConstraintMatch> matches = new ArrayList<>(storedMatchCount);
+                for (int m = 0; m < storedMatchCount; m++) {
+                    matches.add(new SimpleConstraintMatch(readString(in), readScore(in)));
+                }
+                indictments.add(new SimpleIndictmentObject(id, indictedClass, indictmentScore, matchCount, matches));
+            }
+            return new SpilledSolution(solution, new SimpleScoreAnalysis(analysisScore, constraints), indictments);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read spilled solution: " + file, e);
+        }
+    }
+
+    private static void writeVisit(DataOutputStream out, SimpleVisit visit) throws IOException {
+        writeLong(out, visit.getId());
+        writeString(out, visit.getType());
+        writeInt(out, visit.getMinuteTime());
+        writeInt(out, visit.getRoadTime());
+        writeString(out, visit.getOrderId());
+        writeString(out, visit.getRestaurantId());
+        writeString(out, visit.getRestaurantChainId());
+        Location location = visit.getLocation();
+        out.writeBoolean(location != null);
+        if (location != null) {
+            writeLong(out, location.getId());
+            out.writeDouble(location.getLat());
+            out.writeDouble(location.getLon());
+        }
+        List<GHPoint> path = visit.getPathToNext();
+        String encodedPath = null;
+        if (path != null) {
+            PointList points = new PointList(path.size(), false);
+            for (GHPoint point : path) {
+                points.add(point.getLat(), point.getLon());
+            }
+            encodedPath = Polyline.encode(points);
+        }
+        writeString(out, encodedPath);
+    }
+
+    private static SimpleVisit readVisit(DataInputStream in) throws IOException {
+        Long id = readLong(in);
+        String type = readString(in);
+        Integer minuteTime = readInt(in);
+        Integer roadTime = readInt(in);
+        String orderId = readString(in);
+        String restaurantId = readString(in);
+        String restaurantChainId = readString(in);
+        Location location = null;
+        if (in.readBoolean()) {
+            location = new Location(readLong(in), in.readDouble(), in.readDouble());
+        }
+        String encodedPath = readString(in);
+        List<GHPoint> path = encodedPath == null ? null : Polyline.decode(encodedPath);
+        return new SimpleVisit(id, type, minuteTime, roadTime, orderId, restaurantId, restaurantChainId, location,
+                path);
+    }
+
+    private static void writeScore(DataOutputStream out, HardSoftScore score) throws IOException {
+        out.writeBoolean(score != null);
+        if (score != null) {
+            out.writeInt(score.hardScore());
+            out.writeInt(score.softScore());
+        }
+    }
+
+    private static HardSoftScore readScore(DataInputStream in) throws IOException {
+        return in.readBoolean() ? HardSoftScore.of(in.readInt(), in.readInt()) : null;
+    }
+
+    // strings as length and UTF-8 bytes, -1 for null, as writeUTF is limited to 64 KB and long paths exceed it
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInt(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readInt(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+}
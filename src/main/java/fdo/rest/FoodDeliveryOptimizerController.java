@@ -4,15 +4,30 @@ import ai.timefold.solver.core.api.score.analysis.ScoreAnalysis;
 import ai.timefold.solver.core.api.score.buildin.hardsoft.HardSoftScore;
 import ai.timefold.solver.core.api.score.constraint.Indictment;
 import ai.timefold.solver.core.api.solver.SolutionManager;
+import ai.timefold.solver.core.api.solver.SolverConfigOverride;
+import ai.timefold.solver.core.api.solver.SolverFactory;
+import ai.timefold.solver.core.api.solver.SolverJobBuilder;
 import ai.timefold.solver.core.api.solver.SolverManager;
 import ai.timefold.solver.core.api.solver.SolverStatus;
+import ai.timefold.solver.core.api.solver.change.ProblemChange;
+import ai.timefold.solver.core.config.solver.SolverConfig;
 import com.fasterxml.jackson.databind.JsonNode;
 import fdo.domain.DeliverySolution;
 import fdo.domain.Router;
 import fdo.domain.Visit;
 import fdo.dto.SimpleDeliverySolution;
-import fdo.generator.Generator;
-import fdo.generator.JsonIO;
+import fdo.job.Job;
+import fdo.job.JobPipeline;
+import fdo.job.JobStage;
+import fdo.job.JobStore;
+import fdo.job.JobStoreStats;
+import fdo.job.SpilledSolution;
+import fdo.solver.CourierPoolGrowth;
+import fdo.solver.live.InsertionOption;
+import fdo.solver.live.InsertionRecommender;
+import fdo.solver.live.LiveProblem;
+import fdo.solver.partition.PartitionedSolver;
+import fdo.solver.portfolio.PortfolioSolver;
 import fdo.solver.SimpleIndictmentObject;
 import fdo.solver.SimpleScoreAnalysis;
 import io.swagger.v3.oas.annotations.Operation;
@@ -22,16 +37,29 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Tag(name = "FDO", description = "Service to optimize FDO routes")
@@ -41,14 +69,59 @@ import java.util.stream.Collectors;
 public class FoodDeliveryOptimizerController {
     private final SolverManager<DeliverySolution, String> solverManager;
     private final SolutionManager<DeliverySolution, HardSoftScore> solutionManager;
-    private final ConcurrentMap<String, Job> jobIdToJob = new ConcurrentHashMap<>();
+    private final SolverConfig solverConfig;
+    private final String defaultMoveThreadCount;
+    // why move threads cannot run, null when Enterprise Edition is on the classpath
+    private final String moveThreadsUnavailable;
+    private final JobStore jobStore;
+    // solver managers with move threads, one per supported moveThreadCount value, and the one each job runs on
+    private final ConcurrentMap<String, SolverManager<DeliverySolution, String>> moveThreadSolverManagers =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, SolverManager<DeliverySolution, String>> jobIdToSolverManager =
+            new ConcurrentHashMap<>();
+
+    private final PartitionedSolver partitionedSolver;
+    private final int maxPartitionedJobs;
+    private final Semaphore partitionAdmissions;
+    private final ThreadPoolExecutor partitionExecutor;
+    // the partitioned jobs holding an admission, from submission until their partitions are merged
+    private final Set<String> partitionJobIds = ConcurrentHashMap.newKeySet();
+    private final PortfolioSolver portfolioSolver;
+    private final Set<String> portfolioJobIds = ConcurrentHashMap.newKeySet();
+    private final JobPipeline jobPipeline;
+    // the jobs taking orders while they are solved, only those solved by a solver manager
+    private final ConcurrentMap<String, LiveProblem> jobIdToLiveProblem = new ConcurrentHashMap<>();
+    private final InsertionRecommender insertionRecommender;
 
     private Router ghRouter = Router.getDefaultRouterInstance();
 
     public FoodDeliveryOptimizerController(SolverManager<DeliverySolution, String> solverManager,
-                                           SolutionManager<DeliverySolution, HardSoftScore> solutionManager) {
+                                           SolutionManager<DeliverySolution, HardSoftScore> solutionManager,
+                                           SolverConfig solverConfig,
+                                           @Value("${fdo.solver.move-thread-count:NONE}") String defaultMoveThreadCount,
+                                           @Value("${fdo.solver.portfolio-core-count:0}") int portfolioCoreCount,
+                                           @Value("${fdo.solver.max-partitioned-jobs:4}") int maxPartitionedJobs,
+                                           @Value("${fdo.pipeline.max-preparing-jobs:16}") int maxPreparingJobs,
+                                           @Value("${fdo.pipeline.threads-per-stage:2}") int threadsPerStage,
+                                           @Value("${fdo.store.spill-directory:.ghtemp-jobs}") String spillDirectory,
+                                           @Value("${fdo.store.ttl:24h}") Duration jobTtl,
+                                           @Value("${fdo.store.max-jobs:1000}") int maxJobs,
+                                           @Value("${fdo.store.loaded-cache-size:8}") int loadedCacheSize) {
         this.solverManager = solverManager;
         this.solutionManager = solutionManager;
+        this.solverConfig = solverConfig;
+        this.defaultMoveThreadCount = defaultMoveThreadCount;
+        this.moveThreadsUnavailable = checkMoveThreads(solverConfig);
+        this.partitionedSolver = new PartitionedSolver(solverConfig);
+        this.maxPartitionedJobs = maxPartitionedJobs;
+        this.partitionAdmissions = new Semaphore(maxPartitionedJobs);
+        // partitions use every core, so partitioned jobs take turns; the queue has room for every admitted job
+        this.partitionExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxPartitionedJobs), runnable -> new Thread(runnable, "fdo-partitions"));
+        this.portfolioSolver = new PortfolioSolver(solverConfig, portfolioCoreCount);
+        this.jobPipeline = new JobPipeline(ghRouter, maxPreparingJobs, threadsPerStage);
+        this.insertionRecommender = new InsertionRecommender(SolverFactory.create(solverConfig), ghRouter);
+        this.jobStore = new JobStore(Path.of(spillDirectory), jobTtl, maxJobs, loadedCacheSize, this::onJobEvicted);
     }
 
     @Operation(summary = "List the job IDs of all submitted FDOs.")
@@ -58,7 +131,7 @@ public class FoodDeliveryOptimizerController {
                             schema = @Schema(type = "array", implementation = String.class))) })
     @GetMapping
     public Collection<String> list() {
-        return jobIdToJob.keySet();
+        return jobStore.getJobIds();
     }
 
     @Operation(summary = "Submit an FDO to start solving as soon as CPU resources are available.")
@@ -68,19 +141,24 @@ public class FoodDeliveryOptimizerController {
                     content = @Content(mediaType = MediaType.TEXT_PLAIN_VALUE,
                             schema = @Schema(implementation = String.class))) })
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.TEXT_PLAIN_VALUE)
-    public String solve(@RequestBody DeliverySolution problem) {
-        ghRouter.setDistanceTimeMap(problem.getLocationList());
+    public String solve(@RequestBody DeliverySolution problem, @Parameter(description = MOVE_THREAD_COUNT_DESCRIPTION)
+            @RequestParam(value = "moveThreadCount", required = false) String moveThreadCount,
+            @Parameter(description = PARTITIONS_DESCRIPTION)
+            @RequestParam(value = "partitions", required = false) Integer partitions,
+            @Parameter(description = PORTFOLIO_CORES_DESCRIPTION)
+            @RequestParam(value = "portfolioCores", required = false) Integer portfolioCores) {
+        SolverManager<DeliverySolution, String> jobSolverManager = solverManagerFor(moveThreadCount);
+        checkSolveOptions(partitions, portfolioCores);
         String jobId = UUID.randomUUID().toString();
-        jobIdToJob.put(jobId, Job.ofDeliverySolution(problem));
-        solverManager.solveBuilder()
-                .withProblemId(jobId)
-                .withProblemFinder(jobId_ -> jobIdToJob.get(jobId).deliverySolution)
-                .withBestSolutionConsumer(solution -> jobIdToJob.put(jobId, Job.ofDeliverySolution(solution)))
-                .withExceptionHandler((jobId_, exception) -> {
-                    jobIdToJob.put(jobId, Job.ofException(exception));
-                    log.error("Failed solving jobId ({}).", jobId, exception);
-                })
-                .run();
+        admitPartitionedJob(jobId, partitions);
+        jobStore.put(jobId, Job.ofStage(JobStage.ROUTING));
+        try {
+            jobPipeline.submit(jobId, problem, jobListener(jobSolverManager, partitions, portfolioCores));
+        } catch (RejectedExecutionException e) {
+            jobStore.remove(jobId);
+            releasePartitionAdmission(jobId);
+            throw new FoodDeliveryOptimizerSolverException(null, HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
         return jobId;
     }
 
@@ -95,29 +173,285 @@ public class FoodDeliveryOptimizerController {
             consumes = MediaType.APPLICATION_JSON_VALUE,
             produces = MediaType.TEXT_PLAIN_VALUE
     )
-    public String solveCustom(@RequestBody JsonNode root) {
-        DeliverySolution problem = JsonIO.parse_json(root);
+    public String solveCustom(@RequestBody JsonNode root, @Parameter(description = MOVE_THREAD_COUNT_DESCRIPTION)
+            @RequestParam(value = "moveThreadCount", required = false) String moveThreadCount,
+            @Parameter(description = PARTITIONS_DESCRIPTION)
+            @RequestParam(value = "partitions", required = false) Integer partitions,
+            @Parameter(description = PORTFOLIO_CORES_DESCRIPTION)
+            @RequestParam(value = "portfolioCores", required = false) Integer portfolioCores) {
+        SolverManager<DeliverySolution, String> jobSolverManager = solverManagerFor(moveThreadCount);
+        checkSolveOptions(partitions, portfolioCores);
+        String jobId = UUID.randomUUID().toString();
+        admitPartitionedJob(jobId, partitions);
+        jobStore.put(jobId, Job.ofStage(JobStage.PARSING));
+        try {
+            jobPipeline.submitCustom(jobId, root, jobListener(jobSolverManager, partitions, portfolioCores));
+        } catch (RejectedExecutionException e) {
+            jobStore.remove(jobId);
+            releasePartitionAdmission(jobId);
+            throw new FoodDeliveryOptimizerSolverException(null, HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+        return jobId;
+    }
 
-        ghRouter.setDistanceTimeMap(problem.getLocationList());
+    /**
+     * Records each stage of the job while the pipeline prepares it, and starts solving it once prepared.
+     */
+    private JobPipeline.Listener jobListener(SolverManager<DeliverySolution, String> jobSolverManager,
+                                             Integer partitions, Integer portfolioCores) {
+        return new JobPipeline.Listener() {
+            @Override
+            public void onStage(String jobId, JobStage stage) {
+                jobStore.update(jobId, Job.ofStage(stage));
+            }
 
-        List<Visit> visits = Generator.VisitGenerator.generateAll(problem);
-        problem.setVisitList(visits);
+            @Override
+            public void onPrepared(String jobId, DeliverySolution problem) {
+                startJob(jobId, problem, jobSolverManager, partitions, portfolioCores);
+            }
 
-        String jobId = UUID.randomUUID().toString();
-        jobIdToJob.put(jobId, Job.ofDeliverySolution(problem));
+            @Override
+            public void onFailure(String jobId, Throwable exception) {
+                releasePartitionAdmission(jobId);
+                jobStore.update(jobId, Job.ofException(exception));
+                log.error("Failed preparing jobId ({}).", jobId, exception);
+            }
+        };
+    }
+
+    private void checkSolveOptions(Integer partitions, Integer portfolioCores) {
+        // each partition is solved on a thread of its own, more of them than cores only compete for the same ones
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (partitions != null && (partitions < 1 || partitions > cores)) {
+            throw new FoodDeliveryOptimizerSolverException(null, HttpStatus.BAD_REQUEST,
+                    "partitions must be between 1 and " + cores + ", got " + partitions);
+        }
+        if (portfolioCores != null) {
+            if (portfolioCores < 1 || portfolioCores > portfolioSolver.getCoreCount()) {
+                throw new FoodDeliveryOptimizerSolverException(null, HttpStatus.BAD_REQUEST,
+                        "portfolioCores must be between 1 and " + portfolioSolver.getCoreCount() + ", got "
+                                + portfolioCores);
+            }
+            if (partitions != null && partitions > 1) {
+                throw new FoodDeliveryOptimizerSolverException(null, HttpStatus.BAD_REQUEST,
+                        "portfolioCores and partitions cannot be combined");
+            }
+        }
+    }
+
+    /**
+     * Takes one of the {@code fdo.solver.max-partitioned-jobs} admissions for a job to be partitioned, held until
+     * its partitions are merged, so a partitioned job is rejected on submission instead of waiting without bound.
+     */
+    private void admitPartitionedJob(String jobId, Integer partitions) {
+        if (partitions == null || partitions <= 1) {
+            return;
+        }
+        if (!partitionAdmissions.tryAcquire()) {
+            throw new FoodDeliveryOptimizerSolverException(null, HttpStatus.SERVICE_UNAVAILABLE,
+                    "Already " + maxPartitionedJobs + " partitioned jobs waiting or solving partitions, "
+                            + "try again later");
+        }
+        partitionJobIds.add(jobId);
+    }
+
+    private void releasePartitionAdmission(String jobId) {
+        if (partitionJobIds.remove(jobId)) {
+            partitionAdmissions.release();
+        }
+    }
+
+    private void startJob(String jobId, DeliverySolution problem,
+                          SolverManager<DeliverySolution, String> jobSolverManager, Integer partitions,
+                          Integer portfolioCores) {
+        if (!jobStore.update(jobId, Job.ofDeliverySolution(problem))) {
+            releasePartitionAdmission(jobId);
+            log.info("JobId ({}) was evicted before solving.", jobId);
+            return;
+        }
+        jobIdToSolverManager.put(jobId, jobSolverManager);
 
-        solverManager.solveBuilder()
-                .withProblemId(jobId)
-                .withProblemFinder(jobId_ -> jobIdToJob.get(jobId_).deliverySolution)
-                .withBestSolutionConsumer(solution ->
-                        jobIdToJob.put(jobId, Job.ofDeliverySolution(solution)))
+        if (portfolioCores != null) {
+            runPortfolioJob(jobId, problem, portfolioCores);
+            return;
+        }
+        if (partitions == null || partitions <= 1) {
+            runJob(jobId, problem, jobSolverManager, null);
+            return;
+        }
+        // the merged result is refined as a whole
+        CompletableFuture<DeliverySolution> partitioned;
+        try {
+            partitioned = CompletableFuture.supplyAsync(() -> {
+                if (!jobStore.contains(jobId)) {
+                    throw new CancellationException("JobId (" + jobId + ") was evicted before partitioning");
+                }
+                return partitionedSolver.solvePartitions(jobId, problem, partitions,
+                        PartitionedSolver.DEFAULT_PARTITION_SPENT_LIMIT);
+            }, partitionExecutor);
+        } catch (RejectedExecutionException e) {
+            // only when shutting down, the queue has room for every admitted job
+            releasePartitionAdmission(jobId);
+            jobStore.update(jobId, Job.ofException(e));
+            return;
+        }
+        partitioned.whenComplete((merged, exception) -> releasePartitionAdmission(jobId))
+                .thenAccept(merged -> {
+                    if (jobStore.update(jobId, Job.ofDeliverySolution(merged))) {
+                        runJob(jobId, merged, jobSolverManager,
+                                PartitionedSolver.refinement(PartitionedSolver.DEFAULT_REFINEMENT_SPENT_LIMIT));
+                    }
+                })
+                .exceptionally(exception -> {
+                    if (jobStore.update(jobId, Job.ofException(exception))) {
+                        log.error("Failed solving partitions of jobId ({}).", jobId, exception);
+                    }
+                    return null;
+                });
+    }
+
+    private void runJob(String jobId, DeliverySolution problem,
+                        SolverManager<DeliverySolution, String> jobSolverManager,
+                        SolverConfigOverride<DeliverySolution> configOverride) {
+        // the pool from parse_json is sized to the orders, add couriers if the solver runs out of them
+        CourierPoolGrowth poolGrowth = new CourierPoolGrowth(change -> jobSolverManager.addProblemChange(jobId, change));
+        jobIdToLiveProblem.put(jobId, new LiveProblem(problem, ghRouter,
+                change -> addLiveProblemChange(jobSolverManager, jobId, change)));
+        SolverJobBuilder<DeliverySolution, String> builder = jobSolverManager.solveBuilder();
+        if (configOverride != null) {
+            builder = builder.withConfigOverride(configOverride);
+        }
+        builder.withProblemId(jobId)
+                .withProblem(problem)
+                .withBestSolutionConsumer(solution -> {
+                    jobStore.update(jobId, Job.ofDeliverySolution(solution));
+                    poolGrowth.onBestSolution(solution);
+                })
+                .withFinalBestSolutionConsumer(solution -> spill(jobId, solution))
                 .withExceptionHandler((jobId_, exception) -> {
-                    jobIdToJob.put(jobId_, Job.ofException(exception));
+                    jobIdToLiveProblem.remove(jobId_);
+                    jobStore.update(jobId_, Job.ofException(exception));
                     log.error("Failed solving jobId ({}).", jobId_, exception);
                 })
                 .run();
+    }
 
-        return jobId;
+    private void runPortfolioJob(String jobId, DeliverySolution problem, int cores) {
+        portfolioJobIds.add(jobId);
+        portfolioSolver.solve(jobId, problem, cores,
+                        solution -> jobStore.update(jobId, Job.ofDeliverySolution(solution)))
+                .thenAccept(best -> spill(jobId, best))
+                .exceptionally(exception -> {
+                    jobStore.update(jobId, Job.ofException(exception));
+                    log.error("Failed solving portfolio of jobId ({}).", jobId, exception);
+                    return null;
+                });
+    }
+
+    /**
+     * Moves the finished solution of the job out of the heap, with its score analysis and indictments, as only
+     * they can still be asked for.
+     */
+    private void spill(String jobId, DeliverySolution solution) {
+        jobIdToLiveProblem.remove(jobId);
+        if (!jobStore.contains(jobId)) {
+            return;
+        }
+        try {
+            jobStore.spill(jobId, new SpilledSolution(SimpleDeliverySolution.from(solution, SolverStatus.NOT_SOLVING),
+                    SimpleScoreAnalysis.from(solutionManager.analyze(solution)), indictmentsOf(solution)));
+        } catch (RuntimeException e) {
+            log.warn("Keeping finished jobId ({}) in memory, spilling it failed.", jobId, e);
+            return;
+        }
+        jobIdToSolverManager.remove(jobId);
+        portfolioJobIds.remove(jobId);
+    }
+
+    private void onJobEvicted(String jobId) {
+        jobIdToLiveProblem.remove(jobId);
+        SolverManager<DeliverySolution, String> jobSolverManager = jobIdToSolverManager.remove(jobId);
+        // the admission is given back once the partition solve ends, which terminating it makes happen
+        partitionedSolver.terminateEarly(jobId);
+        if (portfolioJobIds.remove(jobId)) {
+            portfolioSolver.terminateEarly(jobId);
+        } else if (jobSolverManager != null) {
+            jobSolverManager.terminateEarly(jobId);
+        }
+    }
+
+    private static final String PORTFOLIO_CORES_DESCRIPTION = "Race this many differently configured solvers on "
+            + "the job, one per core, keeping the best solution across them and stopping the ones behind. "
+            + "At most fdo.solver.portfolio-core-count. Omit to solve with one solver.";
+
+    private static final String PARTITIONS_DESCRIPTION = "Solve the job as this many parts by time slot and area, "
+            + "in parallel with a courier pool each, then refine the merged result. Omit or 1 to solve as a whole, "
+            + "at most the number of cores.";
+
+    private static final String MOVE_THREAD_COUNT_DESCRIPTION = "Threads evaluating moves for this job: NONE, AUTO "
+            + "or a number from 1 to the number of cores, rounded down to a power of two. Defaults to "
+            + "fdo.solver.move-thread-count. Anything but NONE needs the enterprise build profile.";
+
+    /**
+     * Builds a solver with one move thread, which the Community Edition refuses, to answer move thread requests
+     * with a bad request up front instead of failing in the solver thread.
+     */
+    private static String checkMoveThreads(SolverConfig solverConfig) {
+        try {
+            SolverFactory.<DeliverySolution>create(solverConfig.copyConfig().withMoveThreadCount("1")).buildSolver();
+            return null;
+        } catch (RuntimeException e) {
+            log.info("Solving with move threads is not available: {}", e.getMessage());
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * The solver manager for the given move thread count, or for the configured default when null.
+     * A count is rounded down to a power of two, so at most a handful of managers are ever created, each once and
+     * shared by all jobs asking for that count.
+     */
+    private SolverManager<DeliverySolution, String> solverManagerFor(String moveThreadCount) {
+        String count = moveThreadCount == null || moveThreadCount.isBlank()
+                ? defaultMoveThreadCount.trim().toUpperCase()
+                : moveThreadCount.trim().toUpperCase();
+        if (count.equals(SolverConfig.MOVE_THREAD_COUNT_NONE)) {
+            return solverManager;
+        }
+        if (!count.equals(SolverConfig.MOVE_THREAD_COUNT_AUTO)) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            int threads;
+            try {
+                threads = Integer.parseInt(count);
+            } catch (NumberFormatException e) {
+                threads = 0;
+            }
+            if (threads < 1 || threads > cores) {
+                throw new FoodDeliveryOptimizerSolverException(null, HttpStatus.BAD_REQUEST,
+                        "moveThreadCount must be NONE, AUTO or a number from 1 to " + cores + ", got "
+                                + moveThreadCount);
+            }
+            count = Integer.toString(Integer.highestOneBit(threads));
+        }
+        if (moveThreadsUnavailable != null) {
+            throw new FoodDeliveryOptimizerSolverException(null, HttpStatus.BAD_REQUEST,
+                    "Multi-threaded solving is not available: " + moveThreadsUnavailable);
+        }
+        return moveThreadSolverManagers.computeIfAbsent(count, c -> {
+            log.info("Created a solver manager with moveThreadCount {}", c);
+            return SolverManager.create(solverConfig.copyConfig().withMoveThreadCount(c));
+        });
+    }
+
+    @PreDestroy
+    public void closeSolverManagers() {
+        jobPipeline.close();
+        moveThreadSolverManagers.values().forEach(SolverManager::close);
+        partitionExecutor.shutdownNow();
+        partitionedSolver.close();
+        portfolioSolver.close();
+        jobStore.close();
+        ghRouter.close();
     }
 
     @Operation(
@@ -137,8 +471,17 @@ public class FoodDeliveryOptimizerController {
     public SimpleDeliverySolution getDeliverySolution(
             @Parameter(description = "The job ID returned by the POST method.") @PathVariable("jobId") String jobId
     ) {
-        DeliverySolution solution = getDeliverySolutionAndCheckForExceptions(jobId);
-        SolverStatus solverStatus = solverManager.getSolverStatus(jobId);
+        Job job = getJobAndCheckForExceptions(jobId);
+        if (job.spilled()) {
+            return getSpilled(jobId).solution();
+        }
+        if (job.deliverySolution() == null) {
+            return SimpleDeliverySolution.preparing(job.stage());
+        }
+        DeliverySolution solution = job.deliverySolution();
+        SolverStatus solverStatus = portfolioJobIds.contains(jobId)
+                ? portfolioSolver.getSolverStatus(jobId)
+                : jobIdToSolverManager.getOrDefault(jobId, solverManager).getSolverStatus(jobId);
 
         return SimpleDeliverySolution.from(solution, solverStatus);
     }
@@ -160,6 +503,9 @@ public class FoodDeliveryOptimizerController {
     public SimpleScoreAnalysis analyze(
             @Parameter(description = "The job ID returned by the POST method.") @PathVariable("jobId") String jobId
     ) {
+        if (getJobAndCheckForExceptions(jobId).spilled()) {
+            return getSpilled(jobId).analysis();
+        }
         DeliverySolution deliverySolution = getDeliverySolutionAndCheckForExceptions(jobId);
         ScoreAnalysis<HardSoftScore> analysis = solutionManager.analyze(deliverySolution);
 
@@ -182,7 +528,134 @@ public class FoodDeliveryOptimizerController {
     @GetMapping(value = "/indictments/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
     public List<SimpleIndictmentObject> indictments(
             @Parameter(description = "The job ID returned by the POST method.") @PathVariable("jobId") String jobId) {
-        DeliverySolution deliverySolution= getDeliverySolutionAndCheckForExceptions(jobId);
+        if (getJobAndCheckForExceptions(jobId).spilled()) {
+            return getSpilled(jobId).indictments();
+        }
+        return indictmentsOf(getDeliverySolutionAndCheckForExceptions(jobId));
+    }
+
+    @Operation(summary = "Add an order (with our custom JSON template) to a job that is being solved. The solver keeps "
+            + "its best solution and plans the order into it.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The IDs of the order's new visits.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(type = "array", implementation = Long.class))),
+            @ApiResponse(responseCode = "400", description = "The order is not valid or already in the FDO.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorInfo.class))),
+            @ApiResponse(responseCode = "404", description = "No FDO found.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorInfo.class))),
+            @ApiResponse(responseCode = "409", description = "The FDO is not being solved by a single solver.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorInfo.class)))
+    })
+    @PostMapping(value = "/orders/{jobId}", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<Long> addOrder(
+            @Parameter(description = "The job ID returned by the POST method.") @PathVariable("jobId") String jobId,
+            @Parameter(description = ORDER_DESCRIPTION) @RequestBody JsonNode order) {
+        return changeLiveProblem(jobId, liveProblem -> liveProblem.addOrder(order)).getVisits().stream()
+                .map(Visit::getId)
+                .toList();
+    }
+
+    @Operation(summary = "Cancel an order of a job that is being solved, removing its visits from the routes.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The order is cancelled."),
+            @ApiResponse(responseCode = "400", description = "The order is not in the FDO.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorInfo.class))),
+            @ApiResponse(responseCode = "404", description = "No FDO found.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorInfo.class))),
+            @ApiResponse(responseCode = "409", description = "The FDO is not being solved by a single solver.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorInfo.class)))
+    })
+    @DeleteMapping(value = "/orders/{jobId}/{orderId}")
+    public void cancelOrder(
+            @Parameter(description = "The job ID returned by the POST method.") @PathVariable("jobId") String jobId,
+            @Parameter(description = "The ID of the order.") @PathVariable("orderId") String orderId) {
+        changeLiveProblem(jobId, liveProblem -> {
+            liveProblem.cancelOrder(orderId);
+            return null;
+        });
+    }
+
+    @Operation(summary = "Pin dispatched visits of a job that is being solved: the solver no longer moves them, nor "
+            + "anything before them on their courier's route.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The visits are pinned."),
+            @ApiResponse(responseCode = "404", description = "No FDO found.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorInfo.class))),
+            @ApiResponse(responseCode = "409", description = "The FDO is not being solved by a single solver.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorInfo.class)))
+    })
+    @PostMapping(value = "/pin/{jobId}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void pinVisits(
+            @Parameter(description = "The job ID returned by the POST method.") @PathVariable("jobId") String jobId,
+            @Parameter(description = "The IDs of the dispatched visits.") @RequestBody Set<Long> visitIds) {
+        changeLiveProblem(jobId, liveProblem -> {
+            liveProblem.pinVisits(visitIds);
+            return null;
+        });
+    }
+
+    @Operation(summary = "Recommend where a new order (with our custom JSON template) would best go in the best "
+            + "solution of a job so far, without adding it.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The best insertion options, best score impact first.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(type = "array", implementation = InsertionOption.class))),
+            @ApiResponse(responseCode = "400", description = "The order is not valid or already in the FDO.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorInfo.class))),
+            @ApiResponse(responseCode = "404", description = "No FDO found.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorInfo.class))),
+            @ApiResponse(responseCode = "409", description = "The FDO is still being prepared or solved already.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorInfo.class)))
+    })
+    @PostMapping(value = "/recommend/{jobId}", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<InsertionOption> recommendInsertion(
+            @Parameter(description = "The job ID returned by the POST method.") @PathVariable("jobId") String jobId,
+            @Parameter(description = "How many options to return, " + InsertionRecommender.DEFAULT_TOP_K
+                    + " by default.") @RequestParam(value = "topK", required = false) Integer topK,
+            @Parameter(description = ORDER_DESCRIPTION) @RequestBody JsonNode order) {
+        if (getJobAndCheckForExceptions(jobId).spilled()) {
+            throw new FoodDeliveryOptimizerSolverException(jobId, HttpStatus.CONFLICT, "FDO is solved already");
+        }
+        DeliverySolution deliverySolution = getDeliverySolutionAndCheckForExceptions(jobId);
+        if (topK != null && topK < 1) {
+            throw new FoodDeliveryOptimizerSolverException(jobId, HttpStatus.BAD_REQUEST, "topK must be positive");
+        }
+        try {
+            return insertionRecommender.recommend(deliverySolution, order,
+                    topK == null ? InsertionRecommender.DEFAULT_TOP_K : topK);
+        } catch (IllegalArgumentException e) {
+            throw new FoodDeliveryOptimizerSolverException(jobId, HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private static final String ORDER_DESCRIPTION = "An order of the \"orders\" list of the custom JSON template. "
+            + "Its \"deliveryLocation\" is the id of a location of the FDO, or a new location with id, lat and lon.";
+
+    @Operation(summary = "Get memory usage statistics of the job store.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Jobs held in memory and on disk, and the heap.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = JobStoreStats.class))) })
+    @GetMapping(value = "/store/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public JobStoreStats storeStats() {
+        return jobStore.getStats();
+    }
+
+    private List<SimpleIndictmentObject> indictmentsOf(DeliverySolution deliverySolution) {
         return solutionManager.explain(deliverySolution).getIndictmentMap().entrySet().stream()
                 .map(entry -> {
                     Indictment<HardSoftScore> indictment = entry.getValue();
@@ -194,25 +667,63 @@ public class FoodDeliveryOptimizerController {
                 }).collect(Collectors.toList());
     }
 
-    private DeliverySolution getDeliverySolutionAndCheckForExceptions(String jobId) {
-        Job job = jobIdToJob.get(jobId);
+    /**
+     * Applies a change to the job's live problem, which submits it to the job's solver.
+     */
+    private <T> T changeLiveProblem(String jobId, Function<LiveProblem, T> change) {
+        Job job = getJobAndCheckForExceptions(jobId);
+        LiveProblem liveProblem = jobIdToLiveProblem.get(jobId);
+        if (liveProblem == null) {
+            throw new FoodDeliveryOptimizerSolverException(jobId, HttpStatus.CONFLICT, job.spilled()
+                    ? "FDO is solved already"
+                    : "FDO takes changes only while solved by a single solver, not while prepared, partitioned or "
+                            + "raced by a portfolio");
+        }
+        try {
+            return change.apply(liveProblem);
+        } catch (IllegalArgumentException e) {
+            throw new FoodDeliveryOptimizerSolverException(jobId, HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Submits a change made by the job's {@link LiveProblem}, a conflict when the job has just finished solving.
+     */
+    private static void addLiveProblemChange(SolverManager<DeliverySolution, String> jobSolverManager, String jobId,
+                                             ProblemChange<DeliverySolution> change) {
+        try {
+            jobSolverManager.addProblemChange(jobId, change);
+        } catch (IllegalStateException e) {
+            // the solver manager no longer solves the job
+            throw new FoodDeliveryOptimizerSolverException(jobId, HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    private Job getJobAndCheckForExceptions(String jobId) {
+        Job job = jobStore.get(jobId);
         if (job == null) {
             throw new FoodDeliveryOptimizerSolverException(jobId, HttpStatus.NOT_FOUND, "No FDO found.");
         }
-        if (job.exception != null) {
-            throw new FoodDeliveryOptimizerSolverException(jobId, job.exception);
+        if (job.exception() != null) {
+            throw new FoodDeliveryOptimizerSolverException(jobId, job.exception());
         }
-        return job.deliverySolution;
+        return job;
     }
 
-    private record Job(DeliverySolution deliverySolution, Throwable exception) {
-
-        static Job ofDeliverySolution(DeliverySolution deliverySolution) {
-            return new Job(deliverySolution, null);
+    private DeliverySolution getDeliverySolutionAndCheckForExceptions(String jobId) {
+        Job job = getJobAndCheckForExceptions(jobId);
+        if (job.deliverySolution() == null) {
+            throw new FoodDeliveryOptimizerSolverException(jobId, HttpStatus.CONFLICT,
+                    "FDO is still being prepared: " + job.stage());
         }
+        return job.deliverySolution();
+    }
 
-        static Job ofException(Throwable error) {
-            return new Job(null, error);
+    private SpilledSolution getSpilled(String jobId) {
+        SpilledSolution spilled = jobStore.getSpilled(jobId);
+        if (spilled == null) {
+            throw new FoodDeliveryOptimizerSolverException(jobId, HttpStatus.NOT_FOUND, "No FDO found.");
         }
+        return spilled;
     }
 }
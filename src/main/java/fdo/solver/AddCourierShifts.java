@@ -0,0 +1,41 @@
+package fdo.solver;
+
+import ai.timefold.solver.core.api.solver.change.ProblemChange;
+import ai.timefold.solver.core.api.solver.change.ProblemChangeDirector;
+import fdo.domain.CourierShift;
+import fdo.domain.DeliverySolution;
+import fdo.generator.CourierPool;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Adds empty courier shifts to a solution that is being solved.
+ */
+public class AddCourierShifts implements ProblemChange<DeliverySolution> {
+
+    private final int count;
+    private final int hotCapacity;
+    private final int coldCapacity;
+
+    public AddCourierShifts(int count, int hotCapacity, int coldCapacity) {
+        this.count = count;
+        this.hotCapacity = hotCapacity;
+        this.coldCapacity = coldCapacity;
+    }
+
+    @Override
+    public void doChange(DeliverySolution workingSolution, ProblemChangeDirector problemChangeDirector) {
+        Set<String> takenIds = new HashSet<>();
+        for (CourierShift courier : workingSolution.getCourierShifts()) {
+            takenIds.add(courier.getId());
+        }
+        for (CourierShift courier : CourierPool.create(count, hotCapacity, coldCapacity, takenIds)) {
+            problemChangeDirector.addEntity(courier, workingSolution.getCourierShifts()::add);
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,128 @@
+package fdo.solver;
+
+import fdo.domain.CourierShift;
+import fdo.domain.Order;
+import fdo.domain.Visit;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+
+/**
+ * Finds where an order's pickup and delivery are best put: every pickup candidate at every position of every
+ * courier, with the delivery at every position after it, priced by {@link RouteCost}.
+ * Empty couriers with the same capacities are interchangeable, so only the first of them is tried.
+ * Nothing is inserted before a courier's pinned visits, see {@link CourierShift#getPinIndex()}.
+ * <p>
+ * Each route is simulated once and the insertions are priced from it. Couriers whose shift is so far from the
+ * order's window that the order can only break it are priced last, and only while they could still beat the
+ * insertions found, see {@link RouteCost#insertionLowerBound}.
+ */
+public final class CheapestInsertion {
+
+    /**
+     * The pickup goes to {@code pickupIndex} of the courier's route, then the delivery to {@code deliveryIndex}
+     * of the resulting route.
+     *
+     * @param costIncrease {@link RouteCost} of the courier's route after the insertion minus before it
+     */
+    public record Insertion(CourierShift courier, Visit pickup, int pickupIndex, int deliveryIndex,
+                            long costIncrease) {}
+
+    private CheapestInsertion() {}
+
+    /**
+     * @param routes the current route of a courier, which may differ from its visits while a move is built
+     * @param fitsRoute whether the order may go on a route at all, routes failing it are not priced
+     * @return the cheapest insertion, or null when no courier accepts the order
+     */
+    public static Insertion find(Visit delivery, List<Visit> pickups, List<CourierShift> couriers,
+                                 Function<CourierShift, List<Visit>> routes,
+                                 BiPredicate<Order, List<Visit>> fitsRoute) {
+        Insertion[] best = new Insertion[1];
+        forEachInsertion(delivery, pickups, couriers, routes, fitsRoute,
+                lowerBound -> best[0] == null || lowerBound < best[0].costIncrease(),
+                (courier, pickup, pickupIndex, deliveryIndex, costIncrease) -> {
+                    if (best[0] == null || costIncrease < best[0].costIncrease()) {
+                        best[0] = new Insertion(courier, pickup, pickupIndex, deliveryIndex, costIncrease);
+                    }
+                });
+        return best[0];
+    }
+
+    /**
+     * The {@code limit} cheapest insertions, the cheapest first, see {@link #find}.
+     */
+    public static List<Insertion> cheapest(Visit delivery, List<Visit> pickups, List<CourierShift> couriers,
+                                           Function<CourierShift, List<Visit>> routes,
+                                           BiPredicate<Order, List<Visit>> fitsRoute, int limit) {
+        // the most expensive kept insertion on top, replaced by any cheaper one
+        PriorityQueue<Insertion> kept = new PriorityQueue<>(
+                Comparator.comparingLong(Insertion::costIncrease).reversed());
+        forEachInsertion(delivery, pickups, couriers, routes, fitsRoute,
+                lowerBound -> kept.size() < limit || lowerBound < kept.peek().costIncrease(),
+                (courier, pickup, pickupIndex, deliveryIndex, costIncrease) -> {
+                    if (kept.size() < limit || costIncrease < kept.peek().costIncrease()) {
+                        kept.add(new Insertion(courier, pickup, pickupIndex, deliveryIndex, costIncrease));
+                        if (kept.size() > limit) {
+                            kept.poll();
+                        }
+                    }
+                });
+        List<Insertion> insertions = new ArrayList<>(kept);
+        insertions.sort(Comparator.comparingLong(Insertion::costIncrease));
+        return insertions;
+    }
+
+    @FunctionalInterface
+    private interface InsertionConsumer {
+        void accept(CourierShift courier, Visit pickup, int pickupIndex, int deliveryIndex, long costIncrease);
+    }
+
+    /**
+     * @param wanted whether an insertion costing at least the given increase could still be taken
+     */
+    private static void forEachInsertion(Visit delivery, List<Visit> pickups, List<CourierShift> couriers,
+                                         Function<CourierShift, List<Visit>> routes,
+                                         BiPredicate<Order, List<Visit>> fitsRoute, LongPredicate wanted,
+                                         InsertionConsumer consumer) {
+        Order order = delivery.getOrder();
+        Set<Long> emptyCapacities = new HashSet<>();
+        List<RouteCost> outOfWindow = new ArrayList<>();
+
+        for (CourierShift courier : couriers) {
+            List<Visit> route = routes.apply(courier);
+            if (route.isEmpty()
+                    && !emptyCapacities.add((long) courier.getHotCapacity() << 32 | courier.getColdCapacity())) {
+                continue;
+            }
+            if (!fitsRoute.test(order, route)) {
+                continue;
+            }
+            RouteCost cost = RouteCost.simulate(courier, route);
+            if (cost.insertionLowerBound(order) > 0) {
+                outOfWindow.add(cost);
+                continue;
+            }
+            price(cost, delivery, pickups, consumer);
+        }
+        for (RouteCost cost : outOfWindow) {
+            if (wanted.test(cost.insertionLowerBound(order))) {
+                price(cost, delivery, pickups, consumer);
+            }
+        }
+    }
+
+    private static void price(RouteCost cost, Visit delivery, List<Visit> pickups, InsertionConsumer consumer) {
+        for (Visit pickup : pickups) {
+            cost.forEachInsertion(pickup, delivery, (pickupIndex, deliveryIndex, costIncrease) ->
+                    consumer.accept(cost.getCourier(), pickup, pickupIndex, deliveryIndex, costIncrease));
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package fdo.solver;
+
+import ai.timefold.solver.core.api.score.stream.uni.UniConstraintCollector;
+import fdo.domain.Visit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cooking intervals of the visits at one location, kept sorted by start so that adding or removing a visit only
+ * visits the intervals overlapping it, instead of a pairwise join.
+ * <p>
+ * A visit cooks during {@code [minuteTime - totalCookTime, minuteTime)}. A pickup is overloaded when it overlaps
+ * at least one visit with a higher id, and it plus those overlapping visits exceed the restaurant's parallel
+ * cooking capacity. This is the rule {@code restaurantMaxParallelCapacity} used to evaluate by joining every pair
+ * of visits, which is also why a pickup without any overlap is never overloaded.
+ * <p>
+ * Every pickup keeps its number of overlapping visits with a higher id, and the timeline the number of overloaded
+ * pickups, so a change costs O(log n) plus the intervals it overlaps, which the cooking capacity keeps small.
+ */
+public final class CookingTimeline {
+
+    /**
+     * Snapshot of a visit when it entered the group, so it can be removed again after its shadow variables changed.
+     * Cook times are never negative, so {@code start <= end}.
+     */
+    public record Entry(long id, int start, int end, boolean pickup, int capacity) {
+
+        public static Entry of(Visit visit) {
+            int end = visit.getMinuteTime();
+            boolean pickup = visit.getType() == Visit.VisitType.RESTAURANT;
+            return new Entry(visit.getId(), end - visit.getOrder().getTotalCookTime(), end, pickup,
+                    pickup ? visit.getRestaurant().getParallelCookingCapacity() : 0);
+        }
+
+        boolean overlaps(Entry other) {
+            return start < other.end && other.start < end;
+        }
+
+        boolean overloadedWith(int higherOverlapCount) {
+            return pickup && higherOverlapCount > 0 && higherOverlapCount + 1 > capacity;
+        }
+    }
+
+    private static final Comparator<Entry> BY_START = Comparator.comparingInt(Entry::start)
+            .thenComparingLong(Entry::id);
+
+    private final NavigableSet<Entry> byStart = new TreeSet<>(BY_START);
+    // how many entries have each cook time, the longest bounds how early an overlapping entry can start
+    private final TreeMap<Integer, Integer> durationCounts = new TreeMap<>();
+    // overlapping entries with a higher id, per pickup
+    private final Map<Entry, Integer> higherOverlapCounts = new HashMap<>();
+    private int overloadedCount;
+
+    private CookingTimeline() {}
+
+    /**
+     * Number of overloaded pickups among the grouped visits, which must all have a minute time.
+     */
+    public static UniConstraintCollector<Visit, CookingTimeline, Integer> overloadedPickupCount() {
+        return new UniConstraintCollector<>() {
+            @Override
+            public Supplier<CookingTimeline> supplier() {
+                return CookingTimeline::new;
+            }
+
+            @Override
+            public BiFunction<CookingTimeline, Visit, Runnable> accumulator() {
+                return (timeline, visit) -> {
+                    Entry entry = Entry.of(visit);
+                    timeline.add(entry);
+                    return () -> timeline.remove(entry);
+                };
+            }
+
+            @Override
+            public Function<CookingTimeline, Integer> finisher() {
+                return CookingTimeline::getOverloadedCount;
+            }
+        };
+    }
+
+    /**
+     * Number of overloaded pickups among the entries, by adding them to a timeline one by one.
+     */
+    public static int overloadedPickupCount(Collection<Entry> entries) {
+        CookingTimeline timeline = new CookingTimeline();
+        for (Entry entry : entries) {
+            timeline.add(entry);
+        }
+        return timeline.getOverloadedCount();
+    }
+
+    public int getOverloadedCount() {
+        return overloadedCount;
+    }
+
+    void add(Entry entry) {
+        int higherOverlapCount = 0;
+        for (Entry other : overlapping(entry)) {
+            if (other.id() > entry.id()) {
+                higherOverlapCount++;
+            } else if (other.pickup()) {
+                changeHigherOverlapCount(other, 1);
+            }
+        }
+        byStart.add(entry);
+        durationCounts.merge(entry.end() - entry.start(), 1, Integer::sum);
+        if (entry.pickup()) {
+            higherOverlapCounts.put(entry, higherOverlapCount);
+            if (entry.overloadedWith(higherOverlapCount)) {
+                overloadedCount++;
+            }
+        }
+    }
+
+    void remove(Entry entry) {
+        byStart.remove(entry);
+        durationCounts.compute(entry.end() - entry.start(), (duration, count) -> count == 1 ? null : count - 1);
+        if (entry.pickup() && entry.overloadedWith(higherOverlapCounts.remove(entry))) {
+            overloadedCount--;
+        }
+        for (Entry other : overlapping(entry)) {
+            if (other.id() < entry.id() && other.pickup()) {
+                changeHigherOverlapCount(other, -1);
+            }
+        }
+    }
+
+    private void changeHigherOverlapCount(Entry pickup, int change) {
+        int before = higherOverlapCounts.get(pickup);
+        int after = before + change;
+        higherOverlapCounts.put(pickup, after);
+        if (pickup.overloadedWith(before) != pickup.overloadedWith(after)) {
+            overloadedCount += pickup.overloadedWith(after) ? 1 : -1;
+        }
+    }
+
+    /**
+     * The entries of the timeline overlapping the given one, which is not part of it. Only the entries starting
+     * less than the longest cook time before it are looked at.
+     */
+    private List<Entry> overlapping(Entry entry) {
+        if (byStart.isEmpty()) {
+            return List.of();
+        }
+        int earliestStart = entry.start() - durationCounts.lastKey();
+        List<Entry> overlapping = new ArrayList<>();
+        for (Entry other : byStart.tailSet(new Entry(Long.MIN_VALUE, earliestStart, earliestStart, false, 0), true)) {
+            if (other.start() >= entry.end()) {
+                break;
+            }
+            if (entry.overlaps(other)) {
+                overlapping.add(other);
+            }
+        }
+        return overlapping;
+    }
+
+    /**
+     * The former pairwise rule, quadratic. Kept as the reference the timeline is checked against.
+     */
+    public static int overloadedPickupCountPairwise(Collection<Entry> entries) {
+        int overloadedCount = 0;
+        for (Entry entry : entries) {
+            if (!entry.pickup()) {
+                continue;
+            }
+            int overlapping = 0;
+            for (Entry other : entries) {
+                if (entry.id() < other.id() && entry.overlaps(other)) {
+                    overlapping++;
+                }
+            }
+            if (overlapping > 0 && overlapping + 1 > entry.capacity()) {
+                overloadedCount++;
+            }
+        }
+        return overloadedCount;
+    }
+}
@@ -0,0 +1,66 @@
+package fdo.solver;
+
+import ai.timefold.solver.core.api.solver.change.ProblemChange;
+import fdo.domain.CourierShift;
+import fdo.domain.DeliverySolution;
+import fdo.generator.CourierPool;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Watches the best solutions of one solver job and adds couriers, as a problem change, when the pool has run out
+ * while a shift is too long or a courier overloaded, which more couriers can fix. Other hard constraints, like
+ * delivery windows no courier can reach, are left to the solver. The new couriers get the capacities of the last one
+ * of the pool, and the pool never grows past {@link CourierPool#upperBound}.
+ * A new request is only made once the previous one is part of the best solution.
+ */
+@Slf4j
+public class CourierPoolGrowth {
+
+    private final Consumer<ProblemChange<DeliverySolution>> problemChanges;
+    private int requestedSize;
+
+    /**
+     * @param problemChanges submits a problem change to the job, e.g. {@code change -> solverManager.addProblemChange(jobId, change)}
+     */
+    public CourierPoolGrowth(Consumer<ProblemChange<DeliverySolution>> problemChanges) {
+        this.problemChanges = problemChanges;
+    }
+
+    public void onBestSolution(DeliverySolution solution) {
+        List<CourierShift> couriers = solution.getCourierShifts();
+        if (couriers.isEmpty() || solution.getScore() == null || solution.getScore().isFeasible()
+                || !CourierPool.isExhausted(solution) || !isShortOfCouriers(couriers)) {
+            return;
+        }
+        int upperBound = CourierPool.upperBound(solution.getOrders());
+        AddCourierShifts change;
+        synchronized (this) {
+            if (couriers.size() < requestedSize || couriers.size() >= upperBound) {
+                return;
+            }
+            CourierShift last = couriers.get(couriers.size() - 1);
+            change = new AddCourierShifts(Math.min(CourierPool.growth(couriers.size()), upperBound - couriers.size()),
+                    last.getHotCapacity(), last.getColdCapacity());
+            requestedSize = couriers.size() + change.getCount();
+        }
+        log.info("All {} couriers are used by an infeasible solution, adding {}", couriers.size(), change.getCount());
+        problemChanges.accept(change);
+    }
+
+    /**
+     * Whether a shift is longer than allowed or a courier carries more than fits, see
+     * courierShiftDurationBetween3And6Hours and capacityExceeded.
+     */
+    private static boolean isShortOfCouriers(List<CourierShift> couriers) {
+        for (CourierShift courier : couriers) {
+            if (courier.isUsed() && (courier.getDurationMinutes() > DeliveryConstraintProvider.MAX_SHIFT_MINUTES
+                    || courier.isAnyCapacityExceeded())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
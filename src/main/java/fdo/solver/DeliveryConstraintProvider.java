@@ -2,6 +2,7 @@ package fdo.solver;
 
 import fdo.domain.*;
 import ai.timefold.solver.core.api.score.stream.*;
+import ai.timefold.solver.core.api.score.stream.bi.BiConstraintStream;
 import ai.timefold.solver.core.api.score.buildin.hardsoft.HardSoftScore;
 
 import java.util.Objects;
@@ -11,6 +12,23 @@ import static java.lang.String.join;
 
 public class DeliveryConstraintProvider implements ConstraintProvider {
 
+    // weights read by RouteCost as well, so the greedy insertion prices routes like the score does
+    /** Hard penalty per delivery left unassigned. */
+    public static final int UNDELIVERED_ORDER_PENALTY = 100;
+    /** Hard penalty per delivery without its pickup before it on the same courier. */
+    public static final int ORDER_PAIR_PENALTY = 3;
+    /** Longest shift without a hard penalty. */
+    public static final int MAX_SHIFT_MINUTES = 360;
+    /** Shorter shifts are paid as this long. */
+    public static final int MIN_PAID_SHIFT_MINUTES = 180;
+    public static final int EXTRA_COURIER_PENALTY = 100;
+    /** Soft penalty per started hour of a shift. */
+    public static final int COURIER_TIME_PENALTY = 25;
+    /** Soft penalty per minute of driving. */
+    public static final int ROAD_TIME_WEIGHT = 3;
+    public static final int OVERLOADED_PICKUP_PENALTY = 100;
+    public static final int EXTRA_PICKUP_PENALTY = 100;
+
     @Override
     public Constraint[] defineConstraints(ConstraintFactory factory) {
         return new Constraint[] {
@@ -64,7 +82,7 @@ public class DeliveryConstraintProvider implements ConstraintProvider {
         return factory.forEachIncludingUnassigned(Visit.class)
                 .filter(v -> v.getType() == Visit.VisitType.CUSTOMER)
                 .filter(v -> v.getCourier() == null)
-                .penalize(HardSoftScore.ofHard(100))
+                .penalize(HardSoftScore.ofHard(UNDELIVERED_ORDER_PENALTY))
                 .asConstraint("Order must be delivered");
     }
 
@@ -72,63 +90,37 @@ public class DeliveryConstraintProvider implements ConstraintProvider {
      * HARD:
      * Both pickup and delivery visits for the same order must be assigned to the same courier.
      */
-    private Constraint sameOrderSameCourier(ConstraintFactory factory) {
-        return factory.forEach(Visit.class)
-                // 1. Start with the Customer visit
-                .filter(v -> v.getType() == Visit.VisitType.CUSTOMER && v.getCourier() != null)
-                // 2. Penalize ONLY if there does NOT exist a restaurant visit...
-                .ifNotExists(Visit.class,
-                        // ...belonging to the same order
-                        Joiners.equal(Visit::getOrder),
-                        // ...assigned to the same courier
-                        Joiners.equal(Visit::getCourier),
-                        // ...that is actually a restaurant
-                        Joiners.filtering((c,v) -> v.getType() == Visit.VisitType.RESTAURANT)
-                )
-                // 3. If no such restaurant exists, the order is broken
-                .penalize(HardSoftScore.ofHard(3))
+    Constraint sameOrderSameCourier(ConstraintFactory factory) {
+        return orderAssignments(factory)
+                .filter((order, assignment) -> assignment.deliveriesWithoutPickupOnCourier() > 0)
+                .penalize(HardSoftScore.ofHard(ORDER_PAIR_PENALTY), (order, assignment) -> assignment.deliveriesWithoutPickupOnCourier())
                 .asConstraint("At least one restaurant must be on the same courier as the customer");
     }
 
     /**
-     * HARD:
-     * Pickup visit must use a restaurant from the same chain as the ordered food.
+     * SOFT:
+     * Restaurant can cook only parallelCookingCapacity orders at once.
+     * Visits are grouped per location onto a timeline of their cook intervals, see {@link CookingTimeline}.
      */
-    private Constraint restaurantMaxParallelCapacity(ConstraintFactory factory) {
+    Constraint restaurantMaxParallelCapacity(ConstraintFactory factory) {
         return factory.forEach(Visit.class)
-                .filter(v -> v.getType() == Visit.VisitType.RESTAURANT && v.getMinuteTime() != null)
-                // Join visits happening at the same restaurant
-                .join(Visit.class,
-                        Joiners.equal(Visit::getLocation),
-                        Joiners.lessThan(Visit::getId) // Avoid double-counting (A-B and B-A) and self-comparison
-                )
-                // Filter for time overlaps
-                // An overlap exists if: Visit A starts before Visit B finishes, AND Visit B starts before Visit A finishes
-                .filter((v1, v2) -> {
-                    int start1 = v1.getMinuteTime() - v1.getOrder().getTotalCookTime();
-                    int end1 = v1.getMinuteTime();
-
-                    int start2 = v2.getMinuteTime() - v2.getOrder().getTotalCookTime();
-                    int end2 = v2.getMinuteTime();
-
-                    return start1 < end2 && start2 < end1;
-                })
-                // Group by the first visit to count how many other visits overlap with it
-                .groupBy((v1, v2) -> v1, ConstraintCollectors.countBi())
-                // Penalize if the number of simultaneous orders (count + 1 for self) > maxParallel
-                .filter((v1, overlapCount) -> (overlapCount + 1) > v1.getRestaurant().getParallelCookingCapacity())
-                .penalize(HardSoftScore.ofSoft(100))
+                .filter(v -> v.getMinuteTime() != null)
+                .groupBy(Visit::getLocation, CookingTimeline.overloadedPickupCount())
+                .filter((location, overloadedCount) -> overloadedCount > 0)
+                // one penalty per overloaded pickup, as when each pickup was matched on its own
+                .penalize(HardSoftScore.ofSoft(OVERLOADED_PICKUP_PENALTY), (location, overloadedCount) -> overloadedCount)
                 .asConstraint("Restaurant max parallel capacity exceeded");
     }
 
     /**
      * HARD:
      * Hot food capacity per courier shift.
-     * Sum HOT food volumes of all CUSTOMER visits in the shift.
+     * The running HOT/COLD load is kept on every visit, one penalty per shift with any overloaded visit.
      */
     private Constraint capacityExceeded(ConstraintFactory factory) {
-        return factory.forEach(CourierShift.class)
-                .filter(CourierShift::isAnyCapacityExceeded)
+        return factory.forEach(Visit.class)
+                .filter(Visit::isCapacityExceeded)
+                .groupBy(Visit::getCourier)
                 .penalize(HardSoftScore.ONE_HARD)
                 .asConstraint("Hot or Cold capacity exceeded over time");
     }
@@ -139,25 +131,17 @@ public class DeliveryConstraintProvider implements ConstraintProvider {
      * If a customer delivery is assigned, there must be a corresponding restaurant pickup assigned.
      * Ensures that every assigned customer visit has at least one restaurant visit for the same order.
      */
-    private Constraint deliveryRequiresPickup(ConstraintFactory factory) {
-        return factory.forEach(Visit.class)
-                .filter(v -> v.getType() == Visit.VisitType.CUSTOMER)
-                .filter(v -> v.getCourier() != null) // Customer delivery is assigned
-                .ifNotExists(Visit.class,
-                        Joiners.equal(Visit::getOrder, Visit::getOrder),
-                        Joiners.filtering((cust, rest) ->
-                                rest.getType() == Visit.VisitType.RESTAURANT &&
-                                        rest.getCourier() != null)) // No assigned restaurant pickup found
-                .penalize(HardSoftScore.ofHard(3))
+    Constraint deliveryRequiresPickup(ConstraintFactory factory) {
+        return orderAssignments(factory)
+                .filter((order, assignment) -> assignment.deliveriesWithoutPickup() > 0)
+                .penalize(HardSoftScore.ofHard(ORDER_PAIR_PENALTY), (order, assignment) -> assignment.deliveriesWithoutPickup())
                 .asConstraint("Delivery requires pickup");
     }
 
-    private Constraint onlyOnePickup(ConstraintFactory factory) {
-        return factory.forEach(Visit.class)
-                .filter(v -> v.getType() == Visit.VisitType.RESTAURANT && v.getCourier() != null)
-                .groupBy(Visit::getOrder, ConstraintCollectors.count())
-                .filter((order, count) -> count > 1)
-                .penalize(HardSoftScore.ofSoft(100), (o, c) -> o.getTotalCookTime() * (c - 1)) // penalize each extra pickup
+    Constraint onlyOnePickup(ConstraintFactory factory) {
+        return orderAssignments(factory)
+                .filter((order, assignment) -> assignment.pickupCount() > 1)
+                .penalize(HardSoftScore.ofSoft(EXTRA_PICKUP_PENALTY), (o, a) -> o.getTotalCookTime() * (a.pickupCount() - 1)) // penalize each extra pickup
                 .asConstraint("There can be only one pickup per order");
     }
 
@@ -166,19 +150,10 @@ public class DeliveryConstraintProvider implements ConstraintProvider {
      * Pickup must occur before delivery.
      * Ensures the customer visit comes after the restaurant visit in the route.
      */
-    private Constraint pickupBeforeDelivery(ConstraintFactory factory) {
-        return factory.forEach(Visit.class)
-                .filter(v -> v.getType() == Visit.VisitType.CUSTOMER)
-                .join(Visit.class,
-                        Joiners.equal(Visit::getOrder, Visit::getOrder),
-                        Joiners.filtering((cust, rest) -> rest.getType() == Visit.VisitType.RESTAURANT && rest.getCourier() != null))
-                .filter((cust, rest) -> {
-                    // If times are null (unassigned), we can't compare, so skip
-                    if (cust.getMinuteTime() == null || rest.getMinuteTime() == null || cust.getCourier() != rest.getCourier()) return false;
-                    // Violation if Pickup Time >= Delivery Time
-                    return rest.getMinuteTime() >= cust.getMinuteTime();
-                })
-                .penalize(HardSoftScore.ofHard(3))
+    Constraint pickupBeforeDelivery(ConstraintFactory factory) {
+        return orderAssignments(factory)
+                .filter((order, assignment) -> assignment.pickupsNotBeforeDelivery() > 0)
+                .penalize(HardSoftScore.ofHard(ORDER_PAIR_PENALTY), (order, assignment) -> assignment.pickupsNotBeforeDelivery())
                 .asConstraint("Pickup must occur before delivery");
     }
     /**
@@ -186,24 +161,25 @@ public class DeliveryConstraintProvider implements ConstraintProvider {
      * Do not use new couriers if possible.
      * Make extra penalty if courier have been added.
      */
-    private static final int EXTRA_COURIER_PENALTY = 100;
-    private static final int COURIER_TIME_PENALTY = 25;
     private Constraint minimizeCouriers(ConstraintFactory factory) {
         return factory.forEach(CourierShift.class)
                 .filter(CourierShift::isUsed)
-                .penalize(HardSoftScore.ONE_SOFT,
-                        c -> {
-                            var endTime = (int)Math.ceil((float)Math.max(c.getDurationMinutes(), 180)/60);
-                            return EXTRA_COURIER_PENALTY + endTime * COURIER_TIME_PENALTY;
-                        }
-                )
+                .penalize(HardSoftScore.ONE_SOFT, c -> courierCost(c.getDurationMinutes()))
                 .asConstraint("Extra couriers are expensive");
     }
 
+    /**
+     * Soft penalty of a used courier whose shift lasts the given minutes.
+     */
+    public static int courierCost(int durationMinutes) {
+        var endTime = (int)Math.ceil((float)Math.max(durationMinutes, MIN_PAID_SHIFT_MINUTES)/60);
+        return EXTRA_COURIER_PENALTY + endTime * COURIER_TIME_PENALTY;
+    }
+
     private Constraint minimizeTotalDistance(ConstraintFactory factory) {
         return factory.forEach(Visit.class)
                 .filter(visit -> visit.getRoadTime() != null && visit.getRoadTime() != 0)
-                .penalize(HardSoftScore.ONE_SOFT, v -> v.getRoadTime() * 3)
+                .penalize(HardSoftScore.ONE_SOFT, v -> v.getRoadTime() * ROAD_TIME_WEIGHT)
                 .asConstraint("Minimize total travel time");
     }
 
@@ -217,7 +193,7 @@ public class DeliveryConstraintProvider implements ConstraintProvider {
                 .filter(CourierShift::isUsed)
                 .filter(shift -> {
                     int d = shift.getDurationMinutes();
-                    return d > 360;
+                    return d > MAX_SHIFT_MINUTES;
                 })
                 .penalize(HardSoftScore.ONE_HARD)
                 .asConstraint("Courier shift must not be more than 6 hours");
@@ -237,37 +213,21 @@ public class DeliveryConstraintProvider implements ConstraintProvider {
      * Food maximum delivery time must not be exceeded.
      * Measured from pickup minuteTime to delivery minuteTime.
      */
-    private Constraint foodMaxDeliveryTimeNotExceeded(ConstraintFactory factory) {
-        return factory.forEach(Visit.class)
-                .filter(v -> v.getType() == Visit.VisitType.CUSTOMER)
-                .join(Visit.class,
-                        Joiners.equal(Visit::getOrder),
-                        Joiners.filtering((cust, rest) -> rest.getType() == Visit.VisitType.RESTAURANT))
-                .filter((c,r) -> maxDeliveryPenalty(c,r) > 0)
-                .penalize(HardSoftScore.ONE_HARD, (c,r) -> maxDeliveryPenalty(c,r))
+    Constraint foodMaxDeliveryTimeNotExceeded(ConstraintFactory factory) {
+        return orderAssignments(factory)
+                .filter((order, assignment) -> assignment.deliveriesTooLong() > 0)
+                .penalize(HardSoftScore.ONE_HARD, (order, assignment) -> assignment.deliveriesTooLong())
                 .asConstraint("Food max delivery time exceeded");
     }
 
-    private int maxDeliveryPenalty(Visit cust, Visit rest) {
-        Integer dTime = cust.getMinuteTime();
-        Integer pTime = rest.getMinuteTime();
-        if (dTime == null || pTime == null) return 0;
-        return calculateDeliveryTimePenalty(cust, rest) > 0 ? 1 : 0;
-    }
-
-    // private method that calculates the penalty
-    private int calculateDeliveryTimePenalty(Visit cust, Visit rest) {
-        int pickupTime = rest.getMinuteTime();
-        int customerDeliveryTime = cust.getMinuteTime();
-
-        if (customerDeliveryTime <= pickupTime) {
-            return 0;
-        }
-
-        int allowedDeliveryTime = cust.getOrder().getMinAllowedTimeToDeliver();
-
-        int actualDeliveryTime = customerDeliveryTime - pickupTime;
+    private static final Function<Visit, Order> VISIT_ORDER = Visit::getOrder;
 
-        return Math.max(0, actualDeliveryTime - allowedDeliveryTime);
+    /**
+     * Assigned visits grouped per order, shared by the order constraints.
+     * Built from the same function and collector instances each time, so the constraint network holds one group node.
+     */
+    private BiConstraintStream<Order, OrderAssignment> orderAssignments(ConstraintFactory factory) {
+        return factory.forEach(Visit.class)
+                .groupBy(VISIT_ORDER, OrderAssignment.collector());
     }
 }
\ No newline at end of file
@@ -0,0 +1,106 @@
+package fdo.solver;
+
+import ai.timefold.solver.core.api.score.stream.uni.UniConstraintCollector;
+import fdo.domain.CourierShift;
+import fdo.domain.Order;
+import fdo.domain.Visit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * What the assigned visits of one order add up to: how many pickups there are and which delivery rules they break.
+ * <p>
+ * Built by {@link #collector()} while grouping visits by order, so a move only recomputes the few visits of the
+ * orders it touches, instead of joining every delivery with every pickup candidate of its order.
+ *
+ * @param pickupCount assigned pickups of the order
+ * @param deliveriesWithoutPickup assigned deliveries while no pickup is assigned
+ * @param deliveriesWithoutPickupOnCourier assigned deliveries without a pickup on the same courier
+ * @param pickupsNotBeforeDelivery (delivery, pickup) pairs on the same courier with the pickup at or after the delivery
+ * @param deliveriesTooLong (delivery, pickup) pairs where the food travels longer than the order allows
+ */
+public record OrderAssignment(int pickupCount,
+                              int deliveriesWithoutPickup,
+                              int deliveriesWithoutPickupOnCourier,
+                              int pickupsNotBeforeDelivery,
+                              int deliveriesTooLong) {
+
+    // snapshot of a visit when it entered the group, its shadow variables change later
+    private record VisitState(CourierShift courier, Integer minuteTime) {}
+
+    private static final class OrderVisits {
+        private Order order;
+        private final List<VisitState> pickups = new ArrayList<>();
+        private final List<VisitState> deliveries = new ArrayList<>();
+    }
+
+    private static final UniConstraintCollector<Visit, OrderVisits, OrderAssignment> COLLECTOR =
+            new UniConstraintCollector<>() {
+                @Override
+                public Supplier<OrderVisits> supplier() {
+                    return OrderVisits::new;
+                }
+
+                @Override
+                public BiFunction<OrderVisits, Visit, Runnable> accumulator() {
+                    return (orderVisits, visit) -> {
+                        orderVisits.order = visit.getOrder();
+                        VisitState state = new VisitState(visit.getCourier(), visit.getMinuteTime());
+                        List<VisitState> states = visit.getType() == Visit.VisitType.RESTAURANT
+                                ? orderVisits.pickups
+                                : orderVisits.deliveries;
+                        states.add(state);
+                        return () -> states.remove(state);
+                    };
+                }
+
+                @Override
+                public Function<OrderVisits, OrderAssignment> finisher() {
+                    return OrderAssignment::of;
+                }
+            };
+
+    /**
+     * One shared instance, so all constraints grouping by order reuse the same node of the constraint network.
+     */
+    public static UniConstraintCollector<Visit, ?, OrderAssignment> collector() {
+        return COLLECTOR;
+    }
+
+    private static OrderAssignment of(OrderVisits orderVisits) {
+        int deliveriesWithoutPickup = 0;
+        int deliveriesWithoutPickupOnCourier = 0;
+        int pickupsNotBeforeDelivery = 0;
+        int deliveriesTooLong = 0;
+        for (VisitState delivery : orderVisits.deliveries) {
+            if (orderVisits.pickups.isEmpty()) {
+                deliveriesWithoutPickup++;
+            }
+            boolean pickupOnCourier = false;
+            for (VisitState pickup : orderVisits.pickups) {
+                if (pickup.courier() == delivery.courier()) {
+                    pickupOnCourier = true;
+                }
+                if (delivery.minuteTime() == null || pickup.minuteTime() == null) {
+                    continue;
+                }
+                if (pickup.courier() == delivery.courier() && pickup.minuteTime() >= delivery.minuteTime()) {
+                    pickupsNotBeforeDelivery++;
+                }
+                if (delivery.minuteTime() > pickup.minuteTime()
+                        && delivery.minuteTime() - pickup.minuteTime() > orderVisits.order.getMinAllowedTimeToDeliver()) {
+                    deliveriesTooLong++;
+                }
+            }
+            if (!pickupOnCourier) {
+                deliveriesWithoutPickupOnCourier++;
+            }
+        }
+        return new OrderAssignment(orderVisits.pickups.size(), deliveriesWithoutPickup,
+                deliveriesWithoutPickupOnCourier, pickupsNotBeforeDelivery, deliveriesTooLong);
+    }
+}
@@ -0,0 +1,79 @@
+package fdo.solver;
+
+import ai.timefold.solver.core.api.score.director.ScoreDirector;
+import ai.timefold.solver.core.api.solver.phase.PhaseCommand;
+import fdo.domain.DeliverySolution;
+import fdo.domain.Order;
+import fdo.domain.Visit;
+import fdo.solver.move.OrderCompatibility;
+import fdo.solver.move.OrderVisitIndex;
+import fdo.solver.move.RouteEdit;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Construction phase that plans whole orders: by earliest minute, each order goes to its cheapest place,
+ * restaurant, courier and both positions chosen at once, see {@link CheapestInsertion}.
+ * <p>
+ * The stock construction heuristic places one visit at a time and tries each against every courier of the pool,
+ * without knowing that a delivery needs its pickup. Here routes are priced by {@link RouteCost} from the travel
+ * matrix, and the score director only sees the finished routes, as one change.
+ * Orders with a visit that is already assigned are left as they are.
+ */
+@Slf4j
+public class OrderInsertionPhaseCommand implements PhaseCommand<DeliverySolution> {
+
+    static final String MOVE_TYPE = "OrderInsertion";
+
+    @Override
+    public void changeWorkingSolution(ScoreDirector<DeliverySolution> scoreDirector,
+                                      BooleanSupplier isPhaseTerminated) {
+        long start = System.nanoTime();
+        DeliverySolution solution = scoreDirector.getWorkingSolution();
+        OrderVisitIndex orderVisits = OrderVisitIndex.of(solution, null);
+        OrderCompatibility compatibility = OrderCompatibility.of(orderVisits, null);
+
+        List<Order> orders = new ArrayList<>();
+        for (Order order : orderVisits.getOrders()) {
+            if (!isPlanned(orderVisits, order)) {
+                orders.add(order);
+            }
+        }
+        orders.sort(Comparator.comparingInt(Order::getEarliestMinute).thenComparingInt(Order::getLatestMinute));
+
+        RouteEdit edit = new RouteEdit();
+        int inserted = 0;
+        for (Order order : orders) {
+            if (isPhaseTerminated.getAsBoolean()) {
+                break;
+            }
+            Visit delivery = orderVisits.getDelivery(order);
+            List<Visit> pickups = orderVisits.getPickups(order);
+            if (delivery == null || pickups.isEmpty()) {
+                continue;
+            }
+            CheapestInsertion.Insertion insertion = CheapestInsertion.find(delivery, pickups,
+                    solution.getCourierShifts(), edit::view, (o, route) -> compatibility.fitsRoute(o, route, null));
+            if (insertion != null) {
+                edit.insert(insertion.courier(), insertion.pickupIndex(), insertion.pickup());
+                edit.insert(insertion.courier(), insertion.deliveryIndex(), delivery);
+                inserted++;
+            }
+        }
+
+        if (!edit.isEmpty()) {
+            edit.toMove(MOVE_TYPE).doMoveOnly(scoreDirector);
+        }
+        log.info("Inserted {} of {} unplanned orders in {} ms", inserted, orders.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static boolean isPlanned(OrderVisitIndex orderVisits, Order order) {
+        Visit delivery = orderVisits.getDelivery(order);
+        return (delivery != null && delivery.getCourier() != null) || orderVisits.getAssignedPickup(order) != null;
+    }
+}
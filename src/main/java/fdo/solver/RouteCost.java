@@ -0,0 +1,391 @@
+package fdo.solver;
+
+import fdo.domain.CourierShift;
+import fdo.domain.Order;
+import fdo.domain.Visit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static fdo.solver.DeliveryConstraintProvider.MAX_SHIFT_MINUTES;
+import static fdo.solver.DeliveryConstraintProvider.ORDER_PAIR_PENALTY;
+import static fdo.solver.DeliveryConstraintProvider.ROAD_TIME_WEIGHT;
+
+/**
+ * Cost of one courier's route outside of the score director, for the greedy insertion heuristics.
+ * <p>
+ * Times and loads are simulated the way the Visit shadow variables compute them, and the route level constraints of
+ * {@link DeliveryConstraintProvider} are applied with their weights. Constraints across routes (restaurant cooking
+ * capacity, unassigned deliveries) are left out. Hard and soft are folded into one number, one hard point
+ * outweighing any soft total a route can reach.
+ * <p>
+ * The simulation keeps its prefix times and loads, so inserting an order is priced without simulating the new
+ * route again, see {@link #forEachInsertion}. An insertion delays the visits after it, by less after every visit
+ * that waited for its order. Each delivery has a forward time slack: how much the visits from some index on can be
+ * delayed before it, or the food picked up for it, becomes late. While the delay stays within the slack, the
+ * penalties of the route's own visits do not change, and only the inserted order is checked. Otherwise the
+ * delayed visits are checked until the waiting has taken the delay up.
+ */
+public final class RouteCost {
+
+    public static final long HARD_WEIGHT = 1_000_000L;
+
+    private static final int NO_SLACK_LIMIT = Integer.MAX_VALUE;
+
+    private final CourierShift courier;
+    private final List<Visit> route;
+    private final int[] minutes;
+    // minutes waited for the orders' earliest minutes, summed from the first visit
+    private final int[] waited;
+    private final int[] hotLoads;
+    private final int[] coldLoads;
+    // per delivery, the delay from its own index that starts a penalty, plus waited; minimum from each index on
+    private final int[] slack;
+    private final int[] slackFrom;
+    // last pickup index per order on the route, earlier ones chained before it, -1 when only its delivery is there
+    private final Map<Order, Integer> lastPickups = new IdentityHashMap<>();
+    private final int[] earlierPickups;
+    // per delivery, the last pickup index of its order
+    private final int[] deliveryPickups;
+    // pickup and delivery index of the pairs whose food is already too long on the way
+    private final List<int[]> tooLongPairs = new ArrayList<>();
+    // earliest latest minute of the deliveries in time
+    private int firstDeadline = Integer.MAX_VALUE;
+    private long visitHard;
+    private boolean capacityExceeded;
+    private long roadMinutes;
+
+    private RouteCost(CourierShift courier, List<Visit> route) {
+        this.courier = courier;
+        this.route = route;
+        int size = route.size();
+        minutes = new int[size];
+        waited = new int[size];
+        hotLoads = new int[size];
+        coldLoads = new int[size];
+        slack = new int[size];
+        slackFrom = new int[size];
+        earlierPickups = new int[size];
+        deliveryPickups = new int[size];
+        int hotLoad = 0;
+        int coldLoad = 0;
+
+        for (int i = 0; i < size; i++) {
+            Visit visit = route.get(i);
+            Order order = visit.getOrder();
+            int arrival;
+            if (i == 0) {
+                arrival = order.getEarliestMinute();
+            } else {
+                Visit previous = route.get(i - 1);
+                arrival = minutes[i - 1] + Visit.travelMinutes(previous.getLocation(), visit.getLocation())
+                        + Visit.serviceMinutes(previous.getType());
+                roadMinutes += Visit.roadMinutes(previous.getLocation(), visit.getLocation());
+            }
+            minutes[i] = Math.max(arrival, order.getEarliestMinute());
+            waited[i] = (i == 0 ? 0 : waited[i - 1]) + minutes[i] - arrival;
+
+            if (visit.getType() == Visit.VisitType.RESTAURANT) {
+                hotLoad += order.getHotVolume();
+                coldLoad += order.getColdVolume();
+                Integer earlier = lastPickups.put(order, i);
+                earlierPickups[i] = earlier == null ? -1 : earlier;
+            } else {
+                hotLoad -= order.getHotVolume();
+                coldLoad -= order.getColdVolume();
+                lastPickups.putIfAbsent(order, -1);
+            }
+            hotLoads[i] = hotLoad;
+            coldLoads[i] = coldLoad;
+            if (hotLoad > courier.getHotCapacity() || coldLoad > courier.getColdCapacity()) {
+                capacityExceeded = true;
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            slack[i] = NO_SLACK_LIMIT;
+            Visit visit = route.get(i);
+            if (visit.getType() == Visit.VisitType.CUSTOMER) {
+                priceDelivery(i);
+            }
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            slackFrom[i] = i == size - 1 ? slack[i] : Math.min(slack[i], slackFrom[i + 1]);
+        }
+    }
+
+    /**
+     * Simulates the route once, to be priced by {@link #cost()} or to have orders inserted.
+     */
+    public static RouteCost simulate(CourierShift courier, List<Visit> route) {
+        return new RouteCost(courier, route);
+    }
+
+    public static long of(CourierShift courier, List<Visit> route) {
+        return new RouteCost(courier, route).cost();
+    }
+
+    public CourierShift getCourier() {
+        return courier;
+    }
+
+    public long cost() {
+        int size = route.size();
+        if (size == 0) {
+            return 0;
+        }
+        return cost(visitHard, capacityExceeded, roadMinutes, minutes[size - 1] - minutes[0]);
+    }
+
+    private long soft() {
+        int size = route.size();
+        if (size == 0) {
+            return 0;
+        }
+        return ROAD_TIME_WEIGHT * roadMinutes + DeliveryConstraintProvider.courierCost(minutes[size - 1] - minutes[0]);
+    }
+
+    private static long cost(long visitHard, boolean capacityExceeded, long roadMinutes, int duration) {
+        long hard = visitHard + (capacityExceeded ? 1 : 0) + (duration > MAX_SHIFT_MINUTES ? 1 : 0);
+        return hard * HARD_WEIGHT + ROAD_TIME_WEIGHT * roadMinutes + DeliveryConstraintProvider.courierCost(duration);
+    }
+
+    // lateness and the pickups of the delivery's order on this route: after the delivery, or too long before it
+    private void priceDelivery(int deliveryIndex) {
+        Order order = route.get(deliveryIndex).getOrder();
+        int minute = minutes[deliveryIndex];
+        int delayLimit = NO_SLACK_LIMIT;
+        if (minute > order.getLatestMinute()) {
+            visitHard++;
+        } else {
+            delayLimit = order.getLatestMinute() - minute;
+            firstDeadline = Math.min(firstDeadline, order.getLatestMinute());
+        }
+        int pickupIndex = lastPickups.get(order);
+        deliveryPickups[deliveryIndex] = pickupIndex;
+        if (pickupIndex < 0) {
+            visitHard += ORDER_PAIR_PENALTY;
+        }
+        for (; pickupIndex >= 0; pickupIndex = earlierPickups[pickupIndex]) {
+            if (pickupIndex > deliveryIndex) {
+                visitHard += ORDER_PAIR_PENALTY;
+            } else if (minute - minutes[pickupIndex] > order.getMinAllowedTimeToDeliver()) {
+                visitHard++;
+                tooLongPairs.add(new int[] {pickupIndex, deliveryIndex});
+            } else {
+                delayLimit = Math.min(delayLimit,
+                        order.getMinAllowedTimeToDeliver() - (minute - minutes[pickupIndex]));
+            }
+        }
+        if (delayLimit != NO_SLACK_LIMIT) {
+            slack[deliveryIndex] = delayLimit + waited[deliveryIndex];
+        }
+    }
+
+    /**
+     * The cost increase of inserting the order at the cheapest place can not be lower than this: more than the
+     * route's soft total when wherever the order goes, it breaks a shift, delivery window or capacity that nothing
+     * on the route breaks yet, else zero. Lets couriers whose shift is far from the order be skipped.
+     * <p>
+     * Assumes that an insertion only delays the visits after it, as with travel times of shortest paths and the
+     * service minutes in between.
+     */
+    long insertionLowerBound(Order order) {
+        int size = route.size();
+        if (lastPickups.containsKey(order) || !tooLongPairs.isEmpty()
+                || (size > 0 && minutes[size - 1] - minutes[0] > MAX_SHIFT_MINUTES)) {
+            // penalties the insertion may take away
+            return 0;
+        }
+        long soft = soft();
+        if (!capacityExceeded && (order.getHotVolume() > courier.getHotCapacity()
+                || order.getColdVolume() > courier.getColdCapacity())) {
+            return HARD_WEIGHT - soft;
+        }
+        if (size == 0) {
+            return 0;
+        }
+        int earliest = order.getEarliestMinute();
+        // after the first visit, the delivery comes later than it
+        boolean afterFirstBreaks = earliest - minutes[0] > MAX_SHIFT_MINUTES || minutes[0] >= order.getLatestMinute();
+        // before it, every visit of the route comes after the order's earliest minute
+        boolean beforeFirstBreaks = firstInsertIndex() > 0 || earliest >= firstDeadline
+                || minutes[size - 1] - earliest > MAX_SHIFT_MINUTES;
+        return afterFirstBreaks && beforeFirstBreaks ? HARD_WEIGHT - soft : 0;
+    }
+
+    @FunctionalInterface
+    interface InsertionCost {
+        void accept(int pickupIndex, int deliveryIndex, long costIncrease);
+    }
+
+    /**
+     * Prices the pickup at every index after the courier's pinned visits, with the delivery at every index after it
+     * in the route that has the pickup.
+     */
+    void forEachInsertion(Visit pickup, Visit delivery, InsertionCost consumer) {
+        int size = route.size();
+        int firstIndex = firstInsertIndex();
+        Order order = delivery.getOrder();
+        long before = cost();
+        if (lastPickups.containsKey(order)) {
+            // other visits of the order are on the route, their pairs change
+            for (int pickupIndex = firstIndex; pickupIndex <= size; pickupIndex++) {
+                for (int deliveryIndex = pickupIndex + 1; deliveryIndex <= size + 1; deliveryIndex++) {
+                    consumer.accept(pickupIndex, deliveryIndex,
+                            priceInFull(pickup, pickupIndex, delivery, deliveryIndex) - before);
+                }
+            }
+            return;
+        }
+        int earliest = order.getEarliestMinute();
+        for (int pickupIndex = firstIndex; pickupIndex <= size; pickupIndex++) {
+            Visit previous = pickupIndex > 0 ? route.get(pickupIndex - 1) : null;
+            Visit next = pickupIndex < size ? route.get(pickupIndex) : null;
+            int pickupMinute = previous == null ? earliest : Math.max(earliest, minutes[pickupIndex - 1]
+                    + Visit.travelMinutes(previous.getLocation(), pickup.getLocation())
+                    + Visit.serviceMinutes(previous.getType()));
+            int pickupRoad = roadMinutes(previous, pickup) + roadMinutes(pickup, next) - roadMinutes(previous, next);
+            int pickupDelay = next == null ? 0 : delay(pickupIndex, pickupMinute
+                    + Visit.travelMinutes(pickup.getLocation(), next.getLocation()) + Visit.PICKUP_SERVICE_MINUTES);
+            int hotMax = (pickupIndex > 0 ? hotLoads[pickupIndex - 1] : 0) + order.getHotVolume();
+            int coldMax = (pickupIndex > 0 ? coldLoads[pickupIndex - 1] : 0) + order.getColdVolume();
+            // penalties of the carrying visits, which the delivery index only adds to
+            long carriedHard = 0;
+
+            for (int deliveryIndex = pickupIndex + 1; deliveryIndex <= size + 1; deliveryIndex++) {
+                // the route's visits from pickupIndex up to deliveryIndex - 2 carry the order
+                int restFrom = deliveryIndex - 1;
+                Visit deliveryPrevious = pickup;
+                int deliveryPreviousMinute = pickupMinute;
+                if (deliveryIndex > pickupIndex + 1) {
+                    int carrying = deliveryIndex - 2;
+                    int carryingDelay = delayAt(carrying, pickupIndex, pickupDelay);
+                    deliveryPrevious = route.get(carrying);
+                    deliveryPreviousMinute = minutes[carrying] + carryingDelay;
+                    hotMax = Math.max(hotMax, hotLoads[carrying] + order.getHotVolume());
+                    coldMax = Math.max(coldMax, coldLoads[carrying] + order.getColdVolume());
+                    if (carryingDelay > 0 && deliveryPrevious.getType() == Visit.VisitType.CUSTOMER) {
+                        carriedHard += delayPenalties(carrying, carryingDelay, pickupIndex, pickupDelay, size, 0);
+                    }
+                }
+                Visit deliveryNext = restFrom < size ? route.get(restFrom) : null;
+                int deliveryMinute = Math.max(earliest, deliveryPreviousMinute
+                        + Visit.travelMinutes(deliveryPrevious.getLocation(), delivery.getLocation())
+                        + Visit.serviceMinutes(deliveryPrevious.getType()));
+                int deliveryDelay = deliveryNext == null ? 0 : delay(restFrom, deliveryMinute
+                        + Visit.travelMinutes(delivery.getLocation(), deliveryNext.getLocation())
+                        + Visit.DELIVERY_SERVICE_MINUTES);
+                if ((pickupDelay < 0 && deliveryIndex > pickupIndex + 1) || deliveryDelay < 0) {
+                    // earlier than simulated, only with travel times that are not shortest paths
+                    consumer.accept(pickupIndex, deliveryIndex,
+                            priceInFull(pickup, pickupIndex, delivery, deliveryIndex) - before);
+                    continue;
+                }
+
+                long hard = visitHard + carriedHard
+                        + (deliveryMinute > order.getLatestMinute() ? 1 : 0)
+                        + (deliveryMinute - pickupMinute > order.getMinAllowedTimeToDeliver() ? 1 : 0);
+                if (deliveryNext != null && deliveryDelay > slackFrom[restFrom] - waited[restFrom]) {
+                    for (int index = restFrom; index < size; index++) {
+                        int restDelay = delayAt(index, restFrom, deliveryDelay);
+                        if (restDelay <= slackFrom[index] - waited[index]) {
+                            // taken up by waiting, or no penalty starts from here on
+                            break;
+                        }
+                        if (route.get(index).getType() == Visit.VisitType.CUSTOMER) {
+                            hard += delayPenalties(index, restDelay, pickupIndex, pickupDelay, restFrom, deliveryDelay);
+                        }
+                    }
+                }
+                for (int[] pair : tooLongPairs) {
+                    // a pickup delayed more than its delivery may get the food there in time again
+                    if (pair[0] >= pickupIndex && minutes[pair[1]] - minutes[pair[0]]
+                            + delayOf(pair[1], pickupIndex, pickupDelay, restFrom, deliveryDelay)
+                            - delayOf(pair[0], pickupIndex, pickupDelay, restFrom, deliveryDelay)
+                            <= route.get(pair[1]).getOrder().getMinAllowedTimeToDeliver()) {
+                        hard--;
+                    }
+                }
+
+                int firstMinute = pickupIndex == 0 ? pickupMinute : minutes[0];
+                int lastMinute = deliveryNext == null ? deliveryMinute
+                        : minutes[size - 1] + delayAt(size - 1, restFrom, deliveryDelay);
+                boolean exceeded = capacityExceeded
+                        || hotMax > courier.getHotCapacity() || coldMax > courier.getColdCapacity();
+                int deliveryRoad = roadMinutes(deliveryPrevious, delivery) + roadMinutes(delivery, deliveryNext)
+                        - roadMinutes(deliveryPrevious, deliveryNext);
+                consumer.accept(pickupIndex, deliveryIndex, cost(hard, exceeded,
+                        roadMinutes + pickupRoad + deliveryRoad, lastMinute - firstMinute) - before);
+            }
+        }
+    }
+
+    /**
+     * New penalties of the delivery at index when it is delayed: late, or its food too long on the way. Pairs already
+     * too long are left to {@link #tooLongPairs}.
+     */
+    private int delayPenalties(int index, int delay, int pickupIndex, int pickupDelay, int restFrom, int restDelay) {
+        Order order = route.get(index).getOrder();
+        int penalties = 0;
+        if (minutes[index] <= order.getLatestMinute() && minutes[index] + delay > order.getLatestMinute()) {
+            penalties++;
+        }
+        for (int pickup = deliveryPickups[index]; pickup >= 0; pickup = earlierPickups[pickup]) {
+            int onTheWay = minutes[index] - minutes[pickup];
+            if (pickup < index && onTheWay <= order.getMinAllowedTimeToDeliver()
+                    && onTheWay + delay - delayOf(pickup, pickupIndex, pickupDelay, restFrom, restDelay)
+                    > order.getMinAllowedTimeToDeliver()) {
+                penalties++;
+            }
+        }
+        return penalties;
+    }
+
+    // the delay of the visit at index, with the pickup delaying the visits from pickupIndex and the delivery the
+    // visits from restFrom
+    private int delayOf(int index, int pickupIndex, int pickupDelay, int restFrom, int restDelay) {
+        if (index >= restFrom) {
+            return delayAt(index, restFrom, restDelay);
+        }
+        return index >= pickupIndex ? delayAt(index, pickupIndex, pickupDelay) : 0;
+    }
+
+    private int firstInsertIndex() {
+        return Math.min(courier.getPinIndex(), route.size());
+    }
+
+    // how much later the visit at index starts when it is reached at the arrival minute
+    private int delay(int index, int arrival) {
+        return Math.max(arrival, route.get(index).getOrder().getEarliestMinute()) - minutes[index];
+    }
+
+    // a delay of the visit at from, less what the visits after it waited, as it reaches the visit at index
+    private int delayAt(int index, int from, int delay) {
+        return Math.max(0, delay - (waited[index] - waited[from]));
+    }
+
+    private long priceInFull(Visit pickup, int pickupIndex, Visit delivery, int deliveryIndex) {
+        Visit[] candidate = new Visit[route.size() + 2];
+        for (int i = 0, j = 0; i < candidate.length; i++) {
+            if (i == pickupIndex) {
+                candidate[i] = pickup;
+            } else if (i == deliveryIndex) {
+                candidate[i] = delivery;
+            } else {
+                candidate[i] = route.get(j++);
+            }
+        }
+        return of(courier, Arrays.asList(candidate));
+    }
+
+    private static int roadMinutes(Visit from, Visit to) {
+        if (from == null || to == null) {
+            return 0;
+        }
+        return Visit.roadMinutes(from.getLocation(), to.getLocation());
+    }
+}
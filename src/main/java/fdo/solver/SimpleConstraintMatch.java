@@ -14,4 +14,9 @@ public class SimpleConstraintMatch {
         this.constraintName = constraintMatch.getConstraintRef().constraintName();
         this.score = constraintMatch.getScore();
     }
+
+    public SimpleConstraintMatch(String constraintName, HardSoftScore score) {
+        this.constraintName = constraintName;
+        this.score = score;
+    }
 }
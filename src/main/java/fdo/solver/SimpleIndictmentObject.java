@@ -42,4 +42,18 @@ public class SimpleIndictmentObject {
                 .map(SimpleConstraintMatch::new)
                 .collect(Collectors.toList());
     }
+
+    public SimpleIndictmentObject(
+            String indictedObjectID,
+            String indictedObjectClass,
+            HardSoftScore score,
+            int matchCount,
+            List<SimpleConstraintMatch> constraintMatches
+    ) {
+        this.indictedObjectID = indictedObjectID;
+        this.indictedObjectClass = indictedObjectClass;
+        this.score = score;
+        this.matchCount = matchCount;
+        this.constraintMatches = constraintMatches;
+    }
 }
@@ -0,0 +1,59 @@
+package fdo.solver.live;
+
+import ai.timefold.solver.core.api.solver.change.ProblemChange;
+import ai.timefold.solver.core.api.solver.change.ProblemChangeDirector;
+import fdo.domain.DeliverySolution;
+import fdo.domain.Location;
+import fdo.domain.Order;
+import fdo.domain.TravelMatrix;
+import fdo.domain.Visit;
+
+import java.util.List;
+
+/**
+ * Adds an order with its unassigned visits to a solution that is being solved, prepared by
+ * {@link LiveProblem#addOrder}. The solver goes on from its best solution, its construction phase plans the order.
+ */
+public class AddOrder implements ProblemChange<DeliverySolution> {
+
+    private final Order order;
+    private final List<Location> addedLocations;
+    private final TravelMatrix travelMatrix;
+    private final List<Visit> visits;
+
+    /**
+     * @param travelMatrix the matrix extended by {@code addedLocations}, null when none was added
+     */
+    public AddOrder(Order order, List<Location> addedLocations, TravelMatrix travelMatrix, List<Visit> visits) {
+        this.order = order;
+        this.addedLocations = addedLocations;
+        this.travelMatrix = travelMatrix;
+        this.visits = visits;
+    }
+
+    @Override
+    public void doChange(DeliverySolution workingSolution, ProblemChangeDirector problemChangeDirector) {
+        if (travelMatrix != null) {
+            // the extended matrix holds the same cells at the same indices, so no travel time and no score changes
+            workingSolution.setTravelMatrix(travelMatrix);
+            for (Location location : workingSolution.getLocationList()) {
+                location.setTravelMatrix(travelMatrix);
+            }
+            for (Location location : addedLocations) {
+                problemChangeDirector.addProblemFact(location, workingSolution.getLocationList()::add);
+            }
+        }
+        problemChangeDirector.addProblemFact(order, workingSolution.getOrders()::add);
+        for (Visit visit : visits) {
+            problemChangeDirector.addEntity(visit, workingSolution.getVisitList()::add);
+        }
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public List<Visit> getVisits() {
+        return visits;
+    }
+}
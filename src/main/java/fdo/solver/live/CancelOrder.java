@@ -0,0 +1,58 @@
+package fdo.solver.live;
+
+import ai.timefold.solver.core.api.solver.change.ProblemChange;
+import ai.timefold.solver.core.api.solver.change.ProblemChangeDirector;
+import fdo.domain.CourierShift;
+import fdo.domain.DeliverySolution;
+import fdo.domain.Order;
+import fdo.domain.Visit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes an order and its visits from a solution that is being solved. Visits are taken out of their routes first,
+ * also pinned ones, then the rest of each route closes up. Its delivery location stays, as the matrix is indexed by it.
+ */
+public class CancelOrder implements ProblemChange<DeliverySolution> {
+
+    private static final String VISITS = "visits";
+
+    private final String orderId;
+
+    public CancelOrder(String orderId) {
+        this.orderId = orderId;
+    }
+
+    @Override
+    public void doChange(DeliverySolution workingSolution, ProblemChangeDirector problemChangeDirector) {
+        List<Visit> orderVisits = new ArrayList<>();
+        for (Visit visit : workingSolution.getVisitList()) {
+            if (orderId.equals(visit.getOrder().getId())) {
+                orderVisits.add(visit);
+            }
+        }
+        for (Visit visit : orderVisits) {
+            CourierShift courier = visit.getCourier();
+            if (courier != null) {
+                if (courier.getVisits().indexOf(visit) < courier.getPinIndex()) {
+                    problemChangeDirector.changeProblemProperty(courier,
+                            workingCourier -> workingCourier.setPinIndex(workingCourier.getPinIndex() - 1));
+                }
+                problemChangeDirector.changeVariable(courier, VISITS,
+                        workingCourier -> workingCourier.getVisits().remove(visit));
+            }
+            problemChangeDirector.removeEntity(visit, workingSolution.getVisitList()::remove);
+        }
+        for (Order order : workingSolution.getOrders()) {
+            if (orderId.equals(order.getId())) {
+                problemChangeDirector.removeProblemFact(order, workingSolution.getOrders()::remove);
+                break;
+            }
+        }
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+}
@@ -0,0 +1,17 @@
+package fdo.solver.live;
+
+import ai.timefold.solver.core.api.score.buildin.hardsoft.HardSoftScore;
+
+/**
+ * Where a new order could go, ranked by {@link InsertionRecommender}: its pickup at {@code pickupIndex} of the
+ * courier's route, then its delivery at {@code deliveryIndex} of the route with the pickup in it.
+ *
+ * @param newCourier whether the courier has no visits yet, so taking the order means one more courier on the road
+ * @param pickupMinute when the courier would be at the restaurant
+ * @param deliveryMinute when the courier would be at the customer
+ * @param scoreImpact the solution's score with the order placed here minus its score without the order planned
+ */
+public record InsertionOption(String courierId, boolean newCourier, String restaurantId, int pickupIndex,
+                              int deliveryIndex, Integer pickupMinute, Integer deliveryMinute,
+                              HardSoftScore scoreImpact) {
+}
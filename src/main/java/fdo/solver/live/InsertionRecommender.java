@@ -0,0 +1,198 @@
+package fdo.solver.live;
+
+import ai.timefold.solver.core.api.score.buildin.hardsoft.HardSoftScore;
+import ai.timefold.solver.core.api.solver.SolverFactory;
+import ai.timefold.solver.core.impl.score.director.InnerScoreDirector;
+import ai.timefold.solver.core.impl.score.director.ScoreDirectorFactory;
+import ai.timefold.solver.core.impl.solver.DefaultSolverFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import fdo.domain.CourierShift;
+import fdo.domain.DeliverySolution;
+import fdo.domain.DeliverySolutionCloner;
+import fdo.domain.Food;
+import fdo.domain.Location;
+import fdo.domain.Order;
+import fdo.domain.Router;
+import fdo.domain.TravelMatrix;
+import fdo.domain.Visit;
+import fdo.generator.Generator;
+import fdo.generator.JsonIO;
+import fdo.solver.CheapestInsertion;
+import fdo.solver.RouteCost;
+import fdo.solver.move.RouteChangeMove;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ranks where a new order would best go in a job's best solution, in milliseconds instead of a solve, without
+ * changing the job.
+ * <p>
+ * The pickup placements on the used couriers, and on one empty courier per capacity, are screened by
+ * {@link RouteCost} as in {@link CheapestInsertion}. For the cheapest few, every delivery position after the pickup
+ * on the pickup's courier is scored on a clone of the solution, which also counts the constraints across routes
+ * that the route cost leaves out. The clone is scored from scratch once, each position is then put in, scored
+ * incrementally and taken out again.
+ */
+@Slf4j
+public class InsertionRecommender {
+
+    public static final int DEFAULT_TOP_K = 5;
+
+    // insertions screened by route cost per option asked for, their pickup placements are scored
+    private static final int SCREENED_PER_OPTION = 4;
+
+    private final ScoreDirectorFactory<DeliverySolution, HardSoftScore> scoreDirectorFactory;
+    private final Router router;
+    private final DeliverySolutionCloner cloner = new DeliverySolutionCloner();
+
+    public InsertionRecommender(SolverFactory<DeliverySolution> solverFactory, Router router) {
+        this.scoreDirectorFactory = ((DefaultSolverFactory<DeliverySolution>) solverFactory).getScoreDirectorFactory();
+        this.router = router;
+    }
+
+    /**
+     * @param orderNode an order of the custom JSON template, see {@link JsonIO#parse_order}, with the foods and
+     * locations of the solution
+     * @throws IllegalArgumentException when the order is not valid or already in the solution
+     */
+    public List<InsertionOption> recommend(DeliverySolution bestSolution, JsonNode orderNode, int topK) {
+        Map<String, Food> foods = new HashMap<>();
+        for (Food food : bestSolution.getFoods()) {
+            foods.put(food.getId(), food);
+        }
+        Map<Long, Location> locations = new HashMap<>();
+        for (Location location : bestSolution.getLocationList()) {
+            locations.put(location.getId(), location);
+        }
+        return recommend(bestSolution, JsonIO.parse_order(orderNode, foods, locations), topK);
+    }
+
+    /**
+     * @param order not part of the solution, with a delivery location of the solution or a new one
+     * @return at most {@code topK} options, the best score impact first, none when the order has no restaurant
+     * @throws IllegalArgumentException when the order is already in the solution
+     */
+    public List<InsertionOption> recommend(DeliverySolution bestSolution, Order order, int topK) {
+        for (Order existing : bestSolution.getOrders()) {
+            if (existing.getId().equals(order.getId())) {
+                throw new IllegalArgumentException("Order " + order.getId() + " is already in the job");
+            }
+        }
+        long start = System.nanoTime();
+        DeliverySolution solution = cloner.cloneSolution(bestSolution);
+        TravelMatrix extendedMatrix = null;
+        if (order.getDeliveryLocation().getTravelMatrix() == null) {
+            extendedMatrix = extendTravelMatrix(solution, order.getDeliveryLocation());
+        }
+
+        long nextVisitId = 1;
+        for (Visit visit : solution.getVisitList()) {
+            if (visit.getId() != null) {
+                nextVisitId = Math.max(nextVisitId, visit.getId() + 1);
+            }
+        }
+        List<Visit> visits = Generator.VisitGenerator.generateForOrder(solution.getRestaurantList(), order,
+                Generator.VisitGenerator.DEFAULT_MAX_PICKUP_CANDIDATES, nextVisitId);
+        if (visits.size() < 2) {
+            return List.of();
+        }
+        solution.getOrders().add(order);
+        solution.getVisitList().addAll(visits);
+        if (extendedMatrix != null) {
+            rebindVisitLocations(solution, extendedMatrix);
+        }
+        Visit delivery = visits.get(0);
+        List<Visit> pickups = visits.subList(1, visits.size());
+
+        List<CheapestInsertion.Insertion> screened = CheapestInsertion.cheapest(delivery, pickups,
+                solution.getCourierShifts(), CourierShift::getVisits, (o, route) -> true, topK * SCREENED_PER_OPTION);
+        Map<String, CheapestInsertion.Insertion> pickupPlacements = new LinkedHashMap<>();
+        for (CheapestInsertion.Insertion insertion : screened) {
+            if (pickupPlacements.size() >= topK) {
+                break;
+            }
+            pickupPlacements.putIfAbsent(insertion.courier().getId() + "/" + insertion.pickup().getId() + "/"
+                    + insertion.pickupIndex(), insertion);
+        }
+
+        List<InsertionOption> options = new ArrayList<>();
+        try (InnerScoreDirector<DeliverySolution, HardSoftScore> scoreDirector =
+                     scoreDirectorFactory.buildScoreDirector()) {
+            scoreDirector.setWorkingSolution(solution);
+            HardSoftScore baseScore = scoreDirector.calculateScore().raw();
+            for (CheapestInsertion.Insertion placement : pickupPlacements.values()) {
+                scoreDeliveries(scoreDirector, placement, delivery, baseScore, options);
+            }
+        }
+        options.sort(Comparator.comparing(InsertionOption::scoreImpact).reversed());
+        List<InsertionOption> best = options.size() > topK ? List.copyOf(options.subList(0, topK)) : options;
+        log.debug("Recommended {} of {} options for order {} in {} us", best.size(), options.size(), order.getId(),
+                (System.nanoTime() - start) / 1_000);
+        return best;
+    }
+
+    /**
+     * Scores the delivery at every position after the pickup on the pickup's courier, each time putting both into
+     * the route and restoring the route afterwards.
+     */
+    private static void scoreDeliveries(InnerScoreDirector<DeliverySolution, HardSoftScore> scoreDirector,
+                                        CheapestInsertion.Insertion placement, Visit delivery,
+                                        HardSoftScore baseScore, List<InsertionOption> options) {
+        CourierShift courier = placement.courier();
+        Visit pickup = placement.pickup();
+        boolean newCourier = courier.getVisits().isEmpty();
+        List<Visit> route = List.copyOf(courier.getVisits());
+        RouteChangeMove restore = new RouteChangeMove(Map.of(courier, route), List.of(pickup, delivery),
+                "InsertionRestore");
+        for (int deliveryIndex = placement.pickupIndex() + 1; deliveryIndex <= route.size() + 1; deliveryIndex++) {
+            List<Visit> newRoute = new ArrayList<>(route.size() + 2);
+            newRoute.addAll(route);
+            newRoute.add(placement.pickupIndex(), pickup);
+            newRoute.add(deliveryIndex, delivery);
+            new RouteChangeMove(Map.of(courier, newRoute), List.of(pickup, delivery), "Insertion")
+                    .doMoveOnly(scoreDirector);
+            HardSoftScore scoreImpact = scoreDirector.calculateScore().raw().subtract(baseScore);
+            options.add(new InsertionOption(courier.getId(), newCourier, pickup.getRestaurant().getId(),
+                    placement.pickupIndex(), deliveryIndex, pickup.getMinuteTime(), delivery.getMinuteTime(),
+                    scoreImpact));
+            restore.doMoveOnly(scoreDirector);
+        }
+    }
+
+    /**
+     * Extends the clone's matrix by the order's new location. The clone's locations are shared with the job's
+     * solver, which may be extending the matrix of the job itself, so they are left alone: the visits of the clone
+     * get copies bound to the extended matrix instead, see {@link #rebindVisitLocations}.
+     */
+    private TravelMatrix extendTravelMatrix(DeliverySolution solution, Location location) {
+        List<Location> locations = new ArrayList<>(solution.getLocationList());
+        locations.sort(Comparator.comparingInt(Location::getIndex));
+        TravelMatrix matrix = router.extendTravelMatrix(solution.getTravelMatrix(), locations, List.of(location));
+        solution.getLocationList().add(location);
+        solution.setTravelMatrix(matrix);
+        return matrix;
+    }
+
+    private static void rebindVisitLocations(DeliverySolution solution, TravelMatrix matrix) {
+        Map<Location, Location> copies = new IdentityHashMap<>();
+        for (Visit visit : solution.getVisitList()) {
+            Location location = visit.getLocation();
+            if (location == null || location.getTravelMatrix() == matrix) {
+                continue;
+            }
+            visit.setLocation(copies.computeIfAbsent(location, original -> {
+                Location copy = new Location(original.getId(), original.getLat(), original.getLon());
+                copy.setIndex(original.getIndex());
+                copy.setTravelMatrix(matrix);
+                return copy;
+            }));
+        }
+    }
+}
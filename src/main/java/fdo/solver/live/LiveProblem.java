@@ -0,0 +1,130 @@
+package fdo.solver.live;
+
+import ai.timefold.solver.core.api.solver.change.ProblemChange;
+import com.fasterxml.jackson.databind.JsonNode;
+import fdo.domain.DeliverySolution;
+import fdo.domain.Food;
+import fdo.domain.Location;
+import fdo.domain.Order;
+import fdo.domain.Restaurant;
+import fdo.domain.Router;
+import fdo.domain.TravelMatrix;
+import fdo.domain.Visit;
+import fdo.generator.Generator;
+import fdo.generator.JsonIO;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * The facts of a job that is being solved, as the problem changes submitted to it leave them: its orders, its
+ * locations in matrix index order and the newest travel matrix. Orders added to the job are prepared here, on the
+ * caller's thread, so the solver thread only swaps in the extended matrix and the new visits, see {@link AddOrder}.
+ * <p>
+ * Changes are prepared and submitted one at a time, so they reach the solver in the order they were prepared.
+ */
+public class LiveProblem {
+
+    private final Router router;
+    private final Consumer<ProblemChange<DeliverySolution>> problemChanges;
+    private final List<Restaurant> restaurants;
+    private final Map<String, Food> foods = new HashMap<>();
+    private final List<Location> locations;
+    private final Map<Long, Location> locationsById = new HashMap<>();
+    private final Set<String> orderIds = new HashSet<>();
+    private TravelMatrix travelMatrix;
+    private long nextVisitId = 1;
+
+    /**
+     * @param problem routed, with its visits, as given to the solver
+     * @param problemChanges submits a problem change to the job, see {@link fdo.solver.CourierPoolGrowth}, and throws
+     * when the job does not take problem changes anymore; nothing is changed then
+     */
+    public LiveProblem(DeliverySolution problem, Router router,
+                       Consumer<ProblemChange<DeliverySolution>> problemChanges) {
+        this.router = router;
+        this.problemChanges = problemChanges;
+        this.restaurants = List.copyOf(orEmpty(problem.getRestaurantList()));
+        for (Food food : orEmpty(problem.getFoods())) {
+            foods.put(food.getId(), food);
+        }
+        this.locations = new ArrayList<>(orEmpty(problem.getLocationList()));
+        locations.sort(Comparator.comparingInt(Location::getIndex));
+        for (Location location : locations) {
+            locationsById.put(location.getId(), location);
+        }
+        for (Order order : orEmpty(problem.getOrders())) {
+            orderIds.add(order.getId());
+        }
+        for (Visit visit : orEmpty(problem.getVisitList())) {
+            if (visit.getId() != null) {
+                nextVisitId = Math.max(nextVisitId, visit.getId() + 1);
+            }
+        }
+        this.travelMatrix = problem.getTravelMatrix();
+    }
+
+    /**
+     * Parses the order, see {@link JsonIO#parse_order}, extends the matrix when its delivery location is new,
+     * generates its visits and submits them.
+     *
+     * @throws IllegalArgumentException when the order is not valid or already in the job; nothing is changed then
+     */
+    public synchronized AddOrder addOrder(JsonNode orderNode) {
+        Map<Long, Location> knownLocations = new HashMap<>(locationsById);
+        Order order = JsonIO.parse_order(orderNode, foods, knownLocations);
+        if (orderIds.contains(order.getId())) {
+            throw new IllegalArgumentException("Order " + order.getId() + " is already in the job");
+        }
+
+        List<Location> addedLocations = new ArrayList<>();
+        TravelMatrix extendedMatrix = null;
+        if (!locationsById.containsKey(order.getDeliveryLocation().getId())) {
+            addedLocations.add(order.getDeliveryLocation());
+            extendedMatrix = router.extendTravelMatrix(travelMatrix, locations, addedLocations);
+        }
+        List<Visit> visits = Generator.VisitGenerator.generateForOrder(restaurants, order,
+                Generator.VisitGenerator.DEFAULT_MAX_PICKUP_CANDIDATES, nextVisitId);
+        AddOrder change = new AddOrder(order, addedLocations, extendedMatrix, visits);
+        problemChanges.accept(change);
+
+        for (Location location : addedLocations) {
+            locations.add(location);
+            locationsById.put(location.getId(), location);
+        }
+        if (extendedMatrix != null) {
+            travelMatrix = extendedMatrix;
+        }
+        orderIds.add(order.getId());
+        nextVisitId += visits.size();
+        return change;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the order is not in the job
+     */
+    public synchronized void cancelOrder(String orderId) {
+        if (!orderIds.contains(orderId)) {
+            throw new IllegalArgumentException("Order " + orderId + " is not in the job");
+        }
+        problemChanges.accept(new CancelOrder(orderId));
+        orderIds.remove(orderId);
+    }
+
+    /**
+     * Pins the dispatched visits, see {@link PinVisits}.
+     */
+    public synchronized void pinVisits(Set<Long> visitIds) {
+        problemChanges.accept(new PinVisits(Set.copyOf(visitIds)));
+    }
+
+    private static <T> List<T> orEmpty(List<T> list) {
+        return list == null ? List.of() : list;
+    }
+}
@@ -0,0 +1,45 @@
+package fdo.solver.live;
+
+import ai.timefold.solver.core.api.solver.change.ProblemChange;
+import ai.timefold.solver.core.api.solver.change.ProblemChangeDirector;
+import fdo.domain.CourierShift;
+import fdo.domain.DeliverySolution;
+import fdo.domain.Visit;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Pins dispatched visits to their couriers: each route is pinned up to and including the last given visit on it,
+ * see {@link CourierShift#getPinIndex()}. Pins never shrink, unassigned visits are left as they are.
+ * <p>
+ * The solver applies problem changes to its best solution, so these are the routes last published, unless a better
+ * one was found in between.
+ */
+public class PinVisits implements ProblemChange<DeliverySolution> {
+
+    private final Set<Long> visitIds;
+
+    public PinVisits(Set<Long> visitIds) {
+        this.visitIds = visitIds;
+    }
+
+    @Override
+    public void doChange(DeliverySolution workingSolution, ProblemChangeDirector problemChangeDirector) {
+        for (CourierShift courier : workingSolution.getCourierShifts()) {
+            List<Visit> visits = courier.getVisits();
+            for (int i = visits.size() - 1; i >= courier.getPinIndex(); i--) {
+                if (visitIds.contains(visits.get(i).getId())) {
+                    int pinIndex = i + 1;
+                    problemChangeDirector.changeProblemProperty(courier,
+                            workingCourier -> workingCourier.setPinIndex(pinIndex));
+                    break;
+                }
+            }
+        }
+    }
+
+    public Set<Long> getVisitIds() {
+        return visitIds;
+    }
+}
@@ -0,0 +1,43 @@
+package fdo.solver.move;
+
+import ai.timefold.solver.core.api.score.director.ScoreDirector;
+import ai.timefold.solver.core.impl.heuristic.move.Move;
+import ai.timefold.solver.core.impl.heuristic.selector.common.decorator.SelectionFilter;
+import ai.timefold.solver.core.impl.heuristic.selector.move.generic.list.ListAssignMove;
+import ai.timefold.solver.core.impl.heuristic.selector.move.generic.list.ListChangeMove;
+import fdo.domain.CourierShift;
+import fdo.domain.DeliverySolution;
+import fdo.domain.Visit;
+
+/**
+ * Drops list change and assign moves that put a visit on a courier carrying an order incompatible with the visit's
+ * order, see {@link OrderCompatibility}. Set as {@code filterClass} of the listChangeMoveSelector, which also makes
+ * assign and unassign moves because visits may stay unassigned; unassigning never conflicts.
+ */
+public class CompatibleListChangeMoveFilter implements SelectionFilter<DeliverySolution, Move<DeliverySolution>> {
+
+    private OrderVisitIndex index;
+    private OrderCompatibility compatibility;
+
+    @Override
+    public boolean accept(ScoreDirector<DeliverySolution> scoreDirector, Move<DeliverySolution> move) {
+        if (move instanceof ListChangeMove<DeliverySolution> changeMove) {
+            if (changeMove.getSourceEntity() == changeMove.getDestinationEntity()) {
+                return true;
+            }
+            return fits(scoreDirector, (Visit) changeMove.getMovedValue(),
+                    (CourierShift) changeMove.getDestinationEntity());
+        }
+        if (move instanceof ListAssignMove<DeliverySolution> assignMove) {
+            return fits(scoreDirector, (Visit) assignMove.getMovedValue(),
+                    (CourierShift) assignMove.getDestinationEntity());
+        }
+        return true;
+    }
+
+    private boolean fits(ScoreDirector<DeliverySolution> scoreDirector, Visit visit, CourierShift destination) {
+        index = OrderVisitIndex.of(scoreDirector.getWorkingSolution(), index);
+        compatibility = OrderCompatibility.of(index, compatibility);
+        return compatibility.fitsRoute(visit.getOrder(), destination.getVisits(), null);
+    }
+}
@@ -0,0 +1,61 @@
+package fdo.solver.move;
+
+import ai.timefold.solver.core.api.score.director.ScoreDirector;
+import ai.timefold.solver.core.impl.heuristic.move.CompositeMove;
+import ai.timefold.solver.core.impl.heuristic.move.Move;
+import ai.timefold.solver.core.impl.heuristic.selector.common.decorator.SelectionFilter;
+import ai.timefold.solver.core.impl.heuristic.selector.move.generic.list.ListAssignMove;
+import ai.timefold.solver.core.impl.heuristic.selector.move.generic.list.ListSwapMove;
+import ai.timefold.solver.core.impl.heuristic.selector.move.generic.list.ListUnassignMove;
+import fdo.domain.CourierShift;
+import fdo.domain.DeliverySolution;
+import fdo.domain.Visit;
+
+/**
+ * Drops list swap moves between two couriers when either visit would end up next to an order it is incompatible
+ * with, see {@link OrderCompatibility}. Set as {@code filterClass} of the listSwapMoveSelector. A swap with an
+ * unassigned visit comes as a composite of unassigning the one and assigning the other in its place.
+ */
+public class CompatibleListSwapMoveFilter implements SelectionFilter<DeliverySolution, Move<DeliverySolution>> {
+
+    private OrderVisitIndex index;
+    private OrderCompatibility compatibility;
+
+    @Override
+    public boolean accept(ScoreDirector<DeliverySolution> scoreDirector, Move<DeliverySolution> move) {
+        if (move instanceof ListSwapMove<DeliverySolution> swapMove) {
+            if (swapMove.getLeftEntity() == swapMove.getRightEntity()) {
+                return true;
+            }
+            Visit left = (Visit) swapMove.getLeftValue();
+            Visit right = (Visit) swapMove.getRightValue();
+            CourierShift leftCourier = (CourierShift) swapMove.getLeftEntity();
+            CourierShift rightCourier = (CourierShift) swapMove.getRightEntity();
+            // each visit takes the place of the other one
+            return fits(scoreDirector, left, rightCourier, right) && fits(scoreDirector, right, leftCourier, left);
+        }
+        if (move instanceof CompositeMove<DeliverySolution> compositeMove) {
+            Visit unassigned = null;
+            for (Move<DeliverySolution> part : compositeMove.getMoves()) {
+                if (part instanceof ListUnassignMove<DeliverySolution> unassignMove) {
+                    unassigned = (Visit) unassignMove.getMovedValue();
+                }
+            }
+            for (Move<DeliverySolution> part : compositeMove.getMoves()) {
+                if (part instanceof ListAssignMove<DeliverySolution> assignMove && !fits(scoreDirector,
+                        (Visit) assignMove.getMovedValue(), (CourierShift) assignMove.getDestinationEntity(),
+                        unassigned)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean fits(ScoreDirector<DeliverySolution> scoreDirector, Visit visit, CourierShift destination,
+                         Visit replaced) {
+        index = OrderVisitIndex.of(scoreDirector.getWorkingSolution(), index);
+        compatibility = OrderCompatibility.of(index, compatibility);
+        return compatibility.fitsRoute(visit.getOrder(), destination.getVisits(), replaced);
+    }
+}
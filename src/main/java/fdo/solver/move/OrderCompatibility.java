@@ -0,0 +1,169 @@
+package fdo.solver.move;
+
+import fdo.domain.DeliverySolution;
+import fdo.domain.Order;
+import fdo.domain.Visit;
+import fdo.solver.DeliveryConstraintProvider;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static fdo.domain.Visit.DELIVERY_SERVICE_MINUTES;
+import static fdo.domain.Visit.PICKUP_SERVICE_MINUTES;
+import static fdo.domain.Visit.travelMinutes;
+
+/**
+ * Which pairs of orders can possibly share a courier, as a bit matrix built once per working solution.
+ * <p>
+ * Two orders are incompatible when no route of one courier can serve both: the shift would have to be longer
+ * than {@link DeliveryConstraintProvider#MAX_SHIFT_MINUTES}, or neither order can be delivered before the other is picked up while
+ * interleaving them is ruled out by the windows or by the max delivery time of the food. The checks only use lower
+ * bounds of the real times, so a compatible pair may still turn out infeasible, but an incompatible one never is.
+ * Move filters use it to drop moves before the score director sees them.
+ */
+public class OrderCompatibility {
+
+    private final DeliverySolution solution;
+    private final Map<Order, Integer> indexByOrder = new IdentityHashMap<>();
+    private final int wordsPerRow;
+    private final long[] bits;
+    private int incompatiblePairCount;
+
+    private OrderCompatibility(OrderVisitIndex orderVisits) {
+        this.solution = orderVisits.getSolution();
+        List<Order> orders = orderVisits.getOrders();
+        int size = orders.size();
+        for (int i = 0; i < size; i++) {
+            indexByOrder.put(orders.get(i), i);
+        }
+        wordsPerRow = (size + 63) / 64;
+        bits = new long[size * wordsPerRow];
+
+        int[] earliestDelivery = new int[size];
+        int[] latestPickup = new int[size];
+        for (int i = 0; i < size; i++) {
+            Order order = orders.get(i);
+            earliestDelivery[i] = Integer.MAX_VALUE;
+            latestPickup[i] = Integer.MIN_VALUE;
+            for (Visit pickup : orderVisits.getPickups(order)) {
+                int foodMinutes = PICKUP_SERVICE_MINUTES + travelMinutes(pickup.getLocation(), order.getDeliveryLocation());
+                earliestDelivery[i] = Math.min(earliestDelivery[i], order.getEarliestMinute() + foodMinutes);
+                latestPickup[i] = Math.max(latestPickup[i], order.getLatestMinute() - foodMinutes);
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            set(i, i);
+            for (int j = i + 1; j < size; j++) {
+                if (compatible(orderVisits, orders.get(i), orders.get(j), i, j, earliestDelivery, latestPickup)) {
+                    set(i, j);
+                    set(j, i);
+                } else {
+                    incompatiblePairCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * The compatibility of the given working solution, reusing {@code previous} when it was built for the same one.
+     */
+    public static OrderCompatibility of(OrderVisitIndex orderVisits, OrderCompatibility previous) {
+        if (previous != null && previous.solution == orderVisits.getSolution()) {
+            return previous;
+        }
+        return new OrderCompatibility(orderVisits);
+    }
+
+    public boolean isCompatible(Order a, Order b) {
+        Integer i = indexByOrder.get(a);
+        Integer j = indexByOrder.get(b);
+        if (i == null || j == null) {
+            return true;
+        }
+        return (bits[i * wordsPerRow + (j >>> 6)] & (1L << j)) != 0;
+    }
+
+    /**
+     * Whether the order is compatible with every other order on the route, except the ones of {@code ignored}.
+     */
+    public boolean fitsRoute(Order order, List<Visit> route, Visit ignored) {
+        for (Visit visit : route) {
+            if (visit != ignored && visit.getOrder() != order && !isCompatible(order, visit.getOrder())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getOrderCount() {
+        return indexByOrder.size();
+    }
+
+    public int getIncompatiblePairCount() {
+        return incompatiblePairCount;
+    }
+
+    private static boolean compatible(OrderVisitIndex orderVisits, Order a, Order b, int i, int j,
+                                      int[] earliestDelivery, int[] latestPickup) {
+        // a shift serving both starts no later than the first delivery and ends no earlier than the last pickup
+        if (Math.max(a.getEarliestMinute(), b.getEarliestMinute())
+                - Math.min(a.getLatestMinute(), b.getLatestMinute()) > DeliveryConstraintProvider.MAX_SHIFT_MINUTES) {
+            return false;
+        }
+        return before(orderVisits, a, b, earliestDelivery[i], latestPickup[j])
+                || before(orderVisits, b, a, earliestDelivery[j], latestPickup[i])
+                || canInterleave(orderVisits, a, b);
+    }
+
+    // a delivered, then the courier drives to a pickup of b in time
+    private static boolean before(OrderVisitIndex orderVisits, Order a, Order b, int earliestDeliveryOfA,
+                                  int latestPickupOfB) {
+        if (earliestDeliveryOfA == Integer.MAX_VALUE || latestPickupOfB == Integer.MIN_VALUE) {
+            return true;
+        }
+        for (Visit pickup : orderVisits.getPickups(b)) {
+            int arrival = earliestDeliveryOfA + DELIVERY_SERVICE_MINUTES
+                    + travelMinutes(a.getDeliveryLocation(), pickup.getLocation());
+            if (arrival <= latestPickupOfB) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * In any interleaving, the food of one order rides along while the courier stops at a visit of the other,
+     * so the windows must overlap and one of them must be able to take that detour.
+     */
+    private static boolean canInterleave(OrderVisitIndex orderVisits, Order a, Order b) {
+        if (a.getEarliestMinute() >= b.getLatestMinute() || b.getEarliestMinute() >= a.getLatestMinute()) {
+            return false;
+        }
+        return canDetour(orderVisits, a, b) || canDetour(orderVisits, b, a);
+    }
+
+    // a's food passes b's pickup or b's customer on the way
+    private static boolean canDetour(OrderVisitIndex orderVisits, Order a, Order b) {
+        for (Visit pickupA : orderVisits.getPickups(a)) {
+            for (Visit pickupB : orderVisits.getPickups(b)) {
+                int viaPickup = PICKUP_SERVICE_MINUTES + travelMinutes(pickupA.getLocation(), pickupB.getLocation())
+                        + PICKUP_SERVICE_MINUTES + travelMinutes(pickupB.getLocation(), a.getDeliveryLocation());
+                if (viaPickup <= a.getMinAllowedTimeToDeliver()) {
+                    return true;
+                }
+            }
+            int viaCustomer = PICKUP_SERVICE_MINUTES + travelMinutes(pickupA.getLocation(), b.getDeliveryLocation())
+                    + DELIVERY_SERVICE_MINUTES + travelMinutes(b.getDeliveryLocation(), a.getDeliveryLocation());
+            if (viaCustomer <= a.getMinAllowedTimeToDeliver()) {
+                return true;
+            }
+        }
+        return orderVisits.getPickups(a).isEmpty() || orderVisits.getPickups(b).isEmpty();
+    }
+
+    private void set(int i, int j) {
+        bits[i * wordsPerRow + (j >>> 6)] |= 1L << j;
+    }
+}
@@ -0,0 +1,302 @@
+package fdo.solver.move;
+
+import ai.timefold.solver.core.api.score.director.ScoreDirector;
+import ai.timefold.solver.core.impl.heuristic.selector.move.factory.MoveIteratorFactory;
+import fdo.domain.CourierShift;
+import fdo.domain.DeliverySolution;
+import fdo.domain.Order;
+import fdo.domain.Visit;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Moves an order's pickup and delivery together to random positions of one courier, pickup first.
+ * <p>
+ * The pickup is the one the order currently uses, or a random candidate when the order is not planned yet.
+ * Any other assigned pickup of the order is unassigned by the same move. Stock list moves take one visit at a
+ * time, so they nearly always split a pair and get rejected by the hard constraints.
+ * <p>
+ * With {@code nearbyDistributionSize} set (a custom property in the solver config), the pair is instead put next
+ * to one of the nearest assigned visits of its pickup, see {@link VisitNeighbourhood}.
+ * <p>
+ * Couriers carrying an order that cannot share a shift with the moved one, see {@link OrderCompatibility},
+ * are skipped, so those moves never reach the score director.
+ * <p>
+ * In original selection order every order is put, with each pickup it may use, at every pair of positions of
+ * every compatible courier, see {@link OriginalMoveIterator}.
+ */
+public class OrderPairMoveIteratorFactory implements MoveIteratorFactory<DeliverySolution, RouteChangeMove> {
+
+    static final String MOVE_TYPE = "OrderPairMove";
+
+    // a delivery put near an anchor lands at most this many positions after its pickup
+    private static final int NEARBY_DELIVERY_WINDOW = 4;
+    private static final int NEARBY_ANCHOR_ATTEMPTS = 5;
+    private static final int COMPATIBLE_COURIER_ATTEMPTS = 5;
+
+    private int nearbyDistributionSize = 0;
+
+    private OrderVisitIndex index;
+    private VisitNeighbourhood neighbourhood;
+    private OrderCompatibility compatibility;
+
+    /**
+     * @param nearbyDistributionSize number of nearest visits to pick an anchor from, 0 picks couriers at random
+     */
+    public void setNearbyDistributionSize(int nearbyDistributionSize) {
+        this.nearbyDistributionSize = nearbyDistributionSize;
+    }
+
+    @Override
+    public long getSize(ScoreDirector<DeliverySolution> scoreDirector) {
+        DeliverySolution solution = scoreDirector.getWorkingSolution();
+        return (long) solution.getOrders().size() * solution.getCourierShifts().size();
+    }
+
+    @Override
+    public Iterator<RouteChangeMove> createOriginalMoveIterator(ScoreDirector<DeliverySolution> scoreDirector) {
+        DeliverySolution solution = scoreDirector.getWorkingSolution();
+        OrderVisitIndex orderVisits = index = OrderVisitIndex.of(solution, index);
+        OrderCompatibility compatible = compatibility = OrderCompatibility.of(orderVisits, compatibility);
+        return new OriginalMoveIterator(orderVisits, compatible);
+    }
+
+    @Override
+    public Iterator<RouteChangeMove> createRandomMoveIterator(ScoreDirector<DeliverySolution> scoreDirector,
+                                                              Random workingRandom) {
+        DeliverySolution solution = scoreDirector.getWorkingSolution();
+        OrderVisitIndex orderVisits = index = OrderVisitIndex.of(solution, index);
+        OrderCompatibility compatible = compatibility = OrderCompatibility.of(orderVisits, compatibility);
+        VisitNeighbourhood nearby = nearbyDistributionSize > 0
+                ? neighbourhood = VisitNeighbourhood.of(solution, neighbourhood,
+                        Math.max(nearbyDistributionSize, VisitNeighbourhood.DEFAULT_MAX_NEIGHBOURS))
+                : null;
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !orderVisits.getOrders().isEmpty();
+            }
+
+            @Override
+            public RouteChangeMove next() {
+                Order order = orderVisits.getOrders().get(workingRandom.nextInt(orderVisits.getOrders().size()));
+                if (nearby != null) {
+                    return createNearbyMove(orderVisits, compatible, nearby, order, nearbyDistributionSize,
+                            workingRandom);
+                }
+                Visit pickup = choosePickup(orderVisits, order, workingRandom);
+                CourierShift courier = randomCompatibleCourier(compatible, solution, order, workingRandom);
+                if (courier == null) {
+                    return RouteChangeMove.none(MOVE_TYPE);
+                }
+                return createMove(orderVisits, order, pickup, courier, null, workingRandom);
+            }
+        };
+    }
+
+    /**
+     * Half of the time the courier of a random assigned visit, so busy couriers are tried as often as empty ones,
+     * of which there are many more.
+     */
+    static CourierShift randomCourier(DeliverySolution solution, Random random) {
+        if (random.nextBoolean()) {
+            List<Visit> visits = solution.getVisitList();
+            CourierShift courier = visits.get(random.nextInt(visits.size())).getCourier();
+            if (courier != null) {
+                return courier;
+            }
+        }
+        List<CourierShift> couriers = solution.getCourierShifts();
+        return couriers.get(random.nextInt(couriers.size()));
+    }
+
+    /**
+     * A {@link #randomCourier} whose orders are all compatible with the given one, or null after a few misses.
+     */
+    static CourierShift randomCompatibleCourier(OrderCompatibility compatibility, DeliverySolution solution,
+                                                Order order, Random random) {
+        for (int attempt = 0; attempt < COMPATIBLE_COURIER_ATTEMPTS; attempt++) {
+            CourierShift courier = randomCourier(solution, random);
+            if (compatibility.fitsRoute(order, courier.getVisits(), null)) {
+                return courier;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Puts the pair next to an assigned visit of another order near the pickup, or anywhere when none is found.
+     */
+    static RouteChangeMove createNearbyMove(OrderVisitIndex orderVisits, OrderCompatibility compatibility,
+                                            VisitNeighbourhood neighbourhood, Order order, int distributionSize,
+                                            Random random) {
+        Visit pickup = choosePickup(orderVisits, order, random);
+        if (pickup == null) {
+            return RouteChangeMove.none(MOVE_TYPE);
+        }
+        for (int attempt = 0; attempt < NEARBY_ANCHOR_ATTEMPTS; attempt++) {
+            Visit anchor = neighbourhood.getRandomNeighbour(pickup, distributionSize, random);
+            if (anchor != null && anchor.getCourier() != null && anchor.getOrder() != order
+                    && compatibility.fitsRoute(order, anchor.getCourier().getVisits(), null)) {
+                return createMove(orderVisits, order, pickup, anchor.getCourier(), anchor, random);
+            }
+        }
+        CourierShift courier = randomCompatibleCourier(compatibility, orderVisits.getSolution(), order, random);
+        if (courier == null) {
+            return RouteChangeMove.none(MOVE_TYPE);
+        }
+        return createMove(orderVisits, order, pickup, courier, null, random);
+    }
+
+    /**
+     * @param pickup the pickup candidate the order will use, see {@link #choosePickup}
+     * @param anchor visit on the courier to insert the pickup right before or after, null for random positions
+     */
+    static RouteChangeMove createMove(OrderVisitIndex orderVisits, Order order, Visit pickup, CourierShift courier,
+                                      Visit anchor, Random random) {
+        Visit delivery = orderVisits.getDelivery(order);
+        if (delivery == null || pickup == null) {
+            return RouteChangeMove.none(MOVE_TYPE);
+        }
+        RouteEdit edit = unassign(orderVisits, order);
+        List<Visit> route = edit.route(courier);
+        int pickupIndex;
+        int deliveryWindow;
+        if (anchor != null) {
+            pickupIndex = route.indexOf(anchor) + random.nextInt(2);
+            deliveryWindow = NEARBY_DELIVERY_WINDOW;
+        } else {
+            pickupIndex = random.nextInt(route.size() + 1);
+            deliveryWindow = Integer.MAX_VALUE;
+        }
+        edit.insert(courier, pickupIndex, pickup);
+        int deliveryIndex = pickupIndex + 1 + random.nextInt(Math.min(route.size() - pickupIndex, deliveryWindow));
+        edit.insert(courier, deliveryIndex, delivery);
+        return edit.toMove(MOVE_TYPE);
+    }
+
+    /**
+     * Takes the delivery and every assigned pickup of the order out of their routes.
+     */
+    static RouteEdit unassign(OrderVisitIndex orderVisits, Order order) {
+        RouteEdit edit = new RouteEdit();
+        for (Visit candidate : orderVisits.getPickups(order)) {
+            if (candidate.getCourier() != null) {
+                edit.remove(candidate);
+            }
+        }
+        edit.remove(orderVisits.getDelivery(order));
+        return edit;
+    }
+
+    /**
+     * The pickups the order may use: the one it currently uses, or all candidates when it is not planned yet.
+     */
+    static List<Visit> pickupChoices(OrderVisitIndex orderVisits, Order order) {
+        Visit pickup = orderVisits.getAssignedPickup(order);
+        return pickup != null ? List.of(pickup) : orderVisits.getPickups(order);
+    }
+
+    /**
+     * The pickup the order currently uses, or a random candidate when it is not planned yet.
+     */
+    static Visit choosePickup(OrderVisitIndex orderVisits, Order order, Random random) {
+        List<Visit> pickups = orderVisits.getPickups(order);
+        if (pickups.isEmpty()) {
+            return null;
+        }
+        Visit pickup = orderVisits.getAssignedPickup(order);
+        return pickup != null ? pickup : pickups.get(random.nextInt(pickups.size()));
+    }
+
+    /**
+     * Orders in solution order, then their {@link #pickupChoices}, then the compatible couriers, then the pickup
+     * position on the courier's route without the order and the delivery position after it.
+     * Computes one move at a time, the full neighbourhood is far too large to hold.
+     */
+    private static final class OriginalMoveIterator implements Iterator<RouteChangeMove> {
+
+        private final OrderVisitIndex orderVisits;
+        private final OrderCompatibility compatibility;
+        private final List<Order> orders;
+        private final List<CourierShift> couriers;
+
+        private int orderIndex = 0;
+        private int pickupChoiceIndex = 0;
+        private int courierIndex = -1;
+        // the route the pair is put on, its length without the order's visits and the next positions on it
+        private CourierShift courier;
+        private int routeSize;
+        private int pickupIndex;
+        private int deliveryIndex;
+
+        OriginalMoveIterator(OrderVisitIndex orderVisits, OrderCompatibility compatibility) {
+            this.orderVisits = orderVisits;
+            this.compatibility = compatibility;
+            this.orders = orderVisits.getOrders();
+            this.couriers = orderVisits.getSolution().getCourierShifts();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return courier != null || nextCourier();
+        }
+
+        @Override
+        public RouteChangeMove next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Order order = orders.get(orderIndex);
+            Visit pickup = pickupChoices(orderVisits, order).get(pickupChoiceIndex);
+            RouteEdit edit = unassign(orderVisits, order);
+            edit.insert(courier, pickupIndex, pickup);
+            edit.insert(courier, deliveryIndex, orderVisits.getDelivery(order));
+
+            if (deliveryIndex <= routeSize) {
+                deliveryIndex++;
+            } else if (pickupIndex < routeSize) {
+                pickupIndex++;
+                deliveryIndex = pickupIndex + 1;
+            } else {
+                courier = null;
+            }
+            return edit.toMove(MOVE_TYPE);
+        }
+
+        /**
+         * Moves on to the next compatible courier, pickup choice or order.
+         *
+         * @return false when all orders are done
+         */
+        private boolean nextCourier() {
+            while (orderIndex < orders.size()) {
+                Order order = orders.get(orderIndex);
+                List<Visit> pickupChoices = pickupChoices(orderVisits, order);
+                if (orderVisits.getDelivery(order) == null || pickupChoiceIndex >= pickupChoices.size()) {
+                    orderIndex++;
+                    pickupChoiceIndex = 0;
+                    courierIndex = -1;
+                    continue;
+                }
+                if (++courierIndex >= couriers.size()) {
+                    pickupChoiceIndex++;
+                    courierIndex = -1;
+                    continue;
+                }
+                CourierShift candidate = couriers.get(courierIndex);
+                if (compatibility.fitsRoute(order, candidate.getVisits(), null)) {
+                    courier = candidate;
+                    routeSize = unassign(orderVisits, order).route(candidate).size();
+                    pickupIndex = 0;
+                    deliveryIndex = 1;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package fdo.solver.move;
+
+import fdo.domain.DeliverySolution;
+import fdo.domain.Order;
+import fdo.domain.Visit;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The delivery visit and the pickup candidates of every order of a working solution.
+ * The visits themselves only change by problem changes, which give the solver a new working solution.
+ */
+public class OrderVisitIndex {
+
+    private final DeliverySolution solution;
+    private final List<Order> orders = new ArrayList<>();
+    private final Map<Order, Visit> deliveryByOrder = new IdentityHashMap<>();
+    private final Map<Order, List<Visit>> pickupsByOrder = new IdentityHashMap<>();
+
+    private OrderVisitIndex(DeliverySolution solution) {
+        this.solution = solution;
+        for (Visit visit : solution.getVisitList()) {
+            Order order = visit.getOrder();
+            if (!deliveryByOrder.containsKey(order) && !pickupsByOrder.containsKey(order)) {
+                orders.add(order);
+            }
+            if (visit.getType() == Visit.VisitType.RESTAURANT) {
+                pickupsByOrder.computeIfAbsent(order, o -> new ArrayList<>()).add(visit);
+            } else {
+                deliveryByOrder.put(order, visit);
+            }
+        }
+    }
+
+    /**
+     * The index of the given working solution, reusing {@code previous} when it was built for the same one.
+     */
+    public static OrderVisitIndex of(DeliverySolution solution, OrderVisitIndex previous) {
+        if (previous != null && previous.solution == solution) {
+            return previous;
+        }
+        return new OrderVisitIndex(solution);
+    }
+
+    public DeliverySolution getSolution() {
+        return solution;
+    }
+
+    public List<Order> getOrders() {
+        return orders;
+    }
+
+    public Visit getDelivery(Order order) {
+        return deliveryByOrder.get(order);
+    }
+
+    public List<Visit> getPickups(Order order) {
+        return pickupsByOrder.getOrDefault(order, List.of());
+    }
+
+    /**
+     * The pickup the order currently uses: its first assigned candidate, or null.
+     */
+    public Visit getAssignedPickup(Order order) {
+        for (Visit pickup : getPickups(order)) {
+            if (pickup.getCourier() != null) {
+                return pickup;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,117 @@
+package fdo.solver.move;
+
+import ai.timefold.solver.core.api.score.director.ScoreDirector;
+import ai.timefold.solver.core.impl.heuristic.selector.move.factory.MoveIteratorFactory;
+import fdo.domain.CourierShift;
+import fdo.domain.DeliverySolution;
+import fdo.domain.Order;
+import fdo.domain.Visit;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Lets an order pick up from another restaurant of its chain: the assigned pickup visit is replaced,
+ * at the same position of the same courier, by another pickup candidate of the order.
+ * <p>
+ * In original selection order each planned order is swapped to each of its other candidates in turn.
+ */
+public class RestaurantSwapMoveIteratorFactory implements MoveIteratorFactory<DeliverySolution, RouteChangeMove> {
+
+    static final String MOVE_TYPE = "RestaurantSwapMove";
+
+    private OrderVisitIndex index;
+
+    @Override
+    public long getSize(ScoreDirector<DeliverySolution> scoreDirector) {
+        return scoreDirector.getWorkingSolution().getVisitList().size();
+    }
+
+    @Override
+    public Iterator<RouteChangeMove> createOriginalMoveIterator(ScoreDirector<DeliverySolution> scoreDirector) {
+        OrderVisitIndex orderVisits = index = OrderVisitIndex.of(scoreDirector.getWorkingSolution(), index);
+        List<Order> orders = orderVisits.getOrders();
+        return new Iterator<>() {
+            private int orderIndex = 0;
+            private int replacementIndex = -1;
+
+            @Override
+            public boolean hasNext() {
+                while (orderIndex < orders.size()) {
+                    Order order = orders.get(orderIndex);
+                    Visit pickup = orderVisits.getAssignedPickup(order);
+                    List<Visit> pickups = orderVisits.getPickups(order);
+                    if (pickup != null && replacementIndex + 1 < pickups.size()) {
+                        if (pickups.get(replacementIndex + 1) != pickup) {
+                            return true;
+                        }
+                        replacementIndex++;
+                        continue;
+                    }
+                    orderIndex++;
+                    replacementIndex = -1;
+                }
+                return false;
+            }
+
+            @Override
+            public RouteChangeMove next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Order order = orders.get(orderIndex);
+                Visit replacement = orderVisits.getPickups(order).get(++replacementIndex);
+                return createMove(orderVisits.getAssignedPickup(order), replacement);
+            }
+        };
+    }
+
+    @Override
+    public Iterator<RouteChangeMove> createRandomMoveIterator(ScoreDirector<DeliverySolution> scoreDirector,
+                                                              Random workingRandom) {
+        OrderVisitIndex orderVisits = index = OrderVisitIndex.of(scoreDirector.getWorkingSolution(), index);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !orderVisits.getOrders().isEmpty();
+            }
+
+            @Override
+            public RouteChangeMove next() {
+                Order order = orderVisits.getOrders().get(workingRandom.nextInt(orderVisits.getOrders().size()));
+                return createMove(orderVisits, order, workingRandom);
+            }
+        };
+    }
+
+    static RouteChangeMove createMove(OrderVisitIndex orderVisits, Order order, Random random) {
+        List<Visit> pickups = orderVisits.getPickups(order);
+        Visit pickup = orderVisits.getAssignedPickup(order);
+        if (pickup == null || pickups.size() < 2) {
+            return RouteChangeMove.none(MOVE_TYPE);
+        }
+        Visit replacement = pickups.get(random.nextInt(pickups.size() - 1));
+        if (replacement == pickup) {
+            replacement = pickups.get(pickups.size() - 1);
+        }
+        return createMove(pickup, replacement);
+    }
+
+    /**
+     * @param pickup the assigned pickup
+     * @param replacement another pickup candidate of the same order
+     */
+    static RouteChangeMove createMove(Visit pickup, Visit replacement) {
+        RouteEdit edit = new RouteEdit();
+        // a replacement that was assigned as well (a second pickup) leaves its old place
+        edit.remove(replacement);
+        CourierShift courier = pickup.getCourier();
+        List<Visit> route = edit.route(courier);
+        int position = route.indexOf(pickup);
+        edit.remove(pickup);
+        edit.insert(courier, position, replacement);
+        return edit.toMove(MOVE_TYPE);
+    }
+}
@@ -0,0 +1,180 @@
+package fdo.solver.move;
+
+import ai.timefold.solver.core.api.score.director.ScoreDirector;
+import ai.timefold.solver.core.impl.heuristic.move.AbstractMove;
+import fdo.domain.CourierShift;
+import fdo.domain.DeliverySolution;
+import fdo.domain.Visit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces the visit lists of some couriers at once.
+ * <p>
+ * Every move of this package is built as such a replacement (see {@link RouteEdit}), which lets a single move
+ * take several visits of an order to another courier together. Visits that leave all lists become unassigned,
+ * visits that were in none become assigned. Only the changed middle of each list is reported to the score
+ * director, so the cascading visit times are recomputed from the first changed position on.
+ * <p>
+ * Unlike the stock list moves, these are not filtered by the solver for pinned visits, so a move that changes
+ * the pinned start of a route is not doable.
+ */
+public class RouteChangeMove extends AbstractMove<DeliverySolution> {
+
+    static final String VISITS = "visits";
+
+    private final Map<CourierShift, List<Visit>> newRoutes;
+    private final List<Visit> movedVisits;
+    private final String moveType;
+
+    public RouteChangeMove(Map<CourierShift, List<Visit>> newRoutes, List<Visit> movedVisits, String moveType) {
+        this.newRoutes = newRoutes;
+        this.movedVisits = movedVisits;
+        this.moveType = moveType;
+    }
+
+    /**
+     * A move that changes nothing, returned when no sensible move could be built.
+     */
+    static RouteChangeMove none(String moveType) {
+        return new RouteChangeMove(Collections.emptyMap(), Collections.emptyList(), moveType);
+    }
+
+    public Map<CourierShift, List<Visit>> getNewRoutes() {
+        return newRoutes;
+    }
+
+    public List<Visit> getMovedVisits() {
+        return movedVisits;
+    }
+
+    @Override
+    public boolean isMoveDoable(ScoreDirector<DeliverySolution> scoreDirector) {
+        boolean changes = false;
+        for (Map.Entry<CourierShift, List<Visit>> entry : newRoutes.entrySet()) {
+            List<Visit> route = entry.getKey().getVisits();
+            List<Visit> newRoute = entry.getValue();
+            int pinIndex = Math.min(entry.getKey().getPinIndex(), route.size());
+            if (pinIndex > 0 && (newRoute.size() < pinIndex
+                    || !route.subList(0, pinIndex).equals(newRoute.subList(0, pinIndex)))) {
+                return false;
+            }
+            changes |= !route.equals(newRoute);
+        }
+        return changes;
+    }
+
+    @Override
+    protected void doMoveOnGenuineVariables(ScoreDirector<DeliverySolution> scoreDirector) {
+        Set<Visit> oldVisits = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Visit> newVisits = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Map.Entry<CourierShift, List<Visit>> entry : newRoutes.entrySet()) {
+            oldVisits.addAll(entry.getKey().getVisits());
+            newVisits.addAll(entry.getValue());
+        }
+        List<Visit> unassigned = new ArrayList<>();
+        for (Visit visit : oldVisits) {
+            if (!newVisits.contains(visit)) {
+                unassigned.add(visit);
+                scoreDirector.beforeListVariableElementUnassigned(visit.getCourier(), VISITS, visit);
+            }
+        }
+        List<Visit> assigned = new ArrayList<>();
+        List<CourierShift> assignedTo = new ArrayList<>();
+        for (Map.Entry<CourierShift, List<Visit>> entry : newRoutes.entrySet()) {
+            for (Visit visit : entry.getValue()) {
+                if (!oldVisits.contains(visit)) {
+                    assigned.add(visit);
+                    assignedTo.add(entry.getKey());
+                    scoreDirector.beforeListVariableElementAssigned(entry.getKey(), VISITS, visit);
+                }
+            }
+        }
+        Map<Visit, CourierShift> unassignedFrom = new IdentityHashMap<>();
+        for (Visit visit : unassigned) {
+            unassignedFrom.put(visit, visit.getCourier());
+        }
+
+        for (Map.Entry<CourierShift, List<Visit>> entry : newRoutes.entrySet()) {
+            replaceChangedRange(scoreDirector, entry.getKey(), entry.getValue());
+        }
+
+        for (Visit visit : unassigned) {
+            scoreDirector.afterListVariableElementUnassigned(unassignedFrom.get(visit), VISITS, visit);
+        }
+        for (int i = 0; i < assigned.size(); i++) {
+            scoreDirector.afterListVariableElementAssigned(assignedTo.get(i), VISITS, assigned.get(i));
+        }
+    }
+
+    private static void replaceChangedRange(ScoreDirector<DeliverySolution> scoreDirector, CourierShift courier,
+                                            List<Visit> newRoute) {
+        List<Visit> route = courier.getVisits();
+        int oldSize = route.size();
+        int newSize = newRoute.size();
+        int from = 0;
+        while (from < oldSize && from < newSize && route.get(from) == newRoute.get(from)) {
+            from++;
+        }
+        if (from == oldSize && from == newSize) {
+            return;
+        }
+        int commonSuffix = 0;
+        while (commonSuffix < oldSize - from && commonSuffix < newSize - from
+                && route.get(oldSize - 1 - commonSuffix) == newRoute.get(newSize - 1 - commonSuffix)) {
+            commonSuffix++;
+        }
+        int oldTo = oldSize - commonSuffix;
+        int newTo = newSize - commonSuffix;
+
+        scoreDirector.beforeListVariableChanged(courier, VISITS, from, oldTo);
+        route.subList(from, oldTo).clear();
+        route.addAll(from, newRoute.subList(from, newTo));
+        scoreDirector.afterListVariableChanged(courier, VISITS, from, newTo);
+    }
+
+    @Override
+    public RouteChangeMove rebase(ScoreDirector<DeliverySolution> destinationScoreDirector) {
+        Map<CourierShift, List<Visit>> rebasedRoutes = new LinkedHashMap<>();
+        newRoutes.forEach((courier, route) -> {
+            List<Visit> rebasedRoute = new ArrayList<>(route.size());
+            for (Visit visit : route) {
+                rebasedRoute.add(destinationScoreDirector.lookUpWorkingObject(visit));
+            }
+            rebasedRoutes.put(destinationScoreDirector.lookUpWorkingObject(courier), rebasedRoute);
+        });
+        List<Visit> rebasedVisits = new ArrayList<>(movedVisits.size());
+        for (Visit visit : movedVisits) {
+            rebasedVisits.add(destinationScoreDirector.lookUpWorkingObject(visit));
+        }
+        return new RouteChangeMove(rebasedRoutes, rebasedVisits, moveType);
+    }
+
+    @Override
+    public String getSimpleMoveTypeDescription() {
+        return moveType;
+    }
+
+    @Override
+    public Collection<?> getPlanningEntities() {
+        return newRoutes.keySet();
+    }
+
+    @Override
+    public Collection<?> getPlanningValues() {
+        return movedVisits;
+    }
+
+    @Override
+    public String toString() {
+        return moveType + " " + movedVisits.stream().map(Visit::getId).toList() + " on "
+                + newRoutes.keySet().stream().map(CourierShift::getId).toList();
+    }
+}
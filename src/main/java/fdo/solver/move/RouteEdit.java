@@ -0,0 +1,78 @@
+package fdo.solver.move;
+
+import fdo.domain.CourierShift;
+import fdo.domain.Visit;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies of the routes a move is about to change, edited freely and then turned into a {@link RouteChangeMove}.
+ * The working solution itself is not touched until the move is done.
+ */
+public class RouteEdit {
+
+    private final Map<CourierShift, List<Visit>> routes = new LinkedHashMap<>();
+    private final List<Visit> movedVisits = new ArrayList<>();
+
+    /**
+     * The edited copy of the courier's route, copied on first access.
+     */
+    public List<Visit> route(CourierShift courier) {
+        return routes.computeIfAbsent(courier, c -> new ArrayList<>(c.getVisits()));
+    }
+
+    /**
+     * The courier's route as edited so far, without copying it: its edited copy or else its current visits.
+     * Must not be modified.
+     */
+    public List<Visit> view(CourierShift courier) {
+        List<Visit> route = routes.get(courier);
+        return route != null ? route : courier.getVisits();
+    }
+
+    /**
+     * Takes the visit out of the route it is currently on, if any.
+     */
+    public void remove(Visit visit) {
+        CourierShift courier = currentCourier(visit);
+        if (courier != null) {
+            route(courier).remove(visit);
+        }
+        markMoved(visit);
+    }
+
+    public void insert(CourierShift courier, int index, Visit visit) {
+        route(courier).add(index, visit);
+        markMoved(visit);
+    }
+
+    /**
+     * Courier the visit is on in this edit: its original courier, unless it was removed or inserted since.
+     */
+    public CourierShift currentCourier(Visit visit) {
+        for (Map.Entry<CourierShift, List<Visit>> entry : routes.entrySet()) {
+            if (entry.getValue().contains(visit)) {
+                return entry.getKey();
+            }
+        }
+        CourierShift courier = visit.getCourier();
+        return courier != null && !routes.containsKey(courier) ? courier : null;
+    }
+
+    public boolean isEmpty() {
+        return routes.isEmpty();
+    }
+
+    public RouteChangeMove toMove(String moveType) {
+        return new RouteChangeMove(routes, movedVisits, moveType);
+    }
+
+    private void markMoved(Visit visit) {
+        if (!movedVisits.contains(visit)) {
+            movedVisits.add(visit);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package fdo.solver.move;
+
+import ai.timefold.solver.core.api.score.director.ScoreDirector;
+import ai.timefold.solver.core.impl.heuristic.selector.move.factory.MoveIteratorFactory;
+import fdo.domain.DeliverySolution;
+import fdo.domain.Order;
+import fdo.domain.Visit;
+import fdo.solver.CheapestInsertion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Unassigns a cluster of orders, pickups and deliveries, and puts them back one by one at their cheapest place,
+ * see {@link CheapestInsertion}. Leaves local optima that single visit and single order moves cannot.
+ * <p>
+ * The cluster is, at random, the orders with visits nearest to a random order's delivery (by travel time) or the
+ * orders next to it by earliest minute. Its size is the {@code ruinedOrderCount} custom property. Orders that are
+ * not planned yet can be part of a cluster, so they get planned by the recreate step too.
+ * <p>
+ * In original selection order every order seeds both clusters in turn, the time window one centred on the seed,
+ * and the orders are reinserted in cluster order instead of shuffled.
+ */
+public class RuinRecreateMoveIteratorFactory implements MoveIteratorFactory<DeliverySolution, RouteChangeMove> {
+
+    static final String MOVE_TYPE = "RuinRecreateMove";
+
+    private int ruinedOrderCount = 5;
+
+    private OrderVisitIndex index;
+    private VisitNeighbourhood neighbourhood;
+    private OrderCompatibility compatibility;
+    private List<Order> ordersByEarliest;
+
+    /**
+     * @param ruinedOrderCount number of orders taken out and reinserted by one move
+     */
+    public void setRuinedOrderCount(int ruinedOrderCount) {
+        this.ruinedOrderCount = ruinedOrderCount;
+    }
+
+    @Override
+    public long getSize(ScoreDirector<DeliverySolution> scoreDirector) {
+        return scoreDirector.getWorkingSolution().getOrders().size();
+    }
+
+    @Override
+    public Iterator<RouteChangeMove> createOriginalMoveIterator(ScoreDirector<DeliverySolution> scoreDirector) {
+        OrderVisitIndex orderVisits = refresh(scoreDirector.getWorkingSolution());
+        List<Order> byEarliest = ordersByEarliest;
+        VisitNeighbourhood nearby = neighbourhood;
+        OrderCompatibility compatible = compatibility;
+        List<Order> seeds = orderVisits.getOrders();
+        return new Iterator<>() {
+            // two moves per seed, the nearby cluster first
+            private int moveIndex = 0;
+
+            @Override
+            public boolean hasNext() {
+                return moveIndex < 2 * seeds.size();
+            }
+
+            @Override
+            public RouteChangeMove next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Order seed = seeds.get(moveIndex / 2);
+                List<Order> ruined = moveIndex % 2 == 0
+                        ? nearbyCluster(orderVisits, nearby, seed, ruinedOrderCount)
+                        : timeWindowCluster(byEarliest, seed, ruinedOrderCount, ruinedOrderCount / 2);
+                moveIndex++;
+                return createMove(orderVisits, compatible, ruined);
+            }
+        };
+    }
+
+    @Override
+    public Iterator<RouteChangeMove> createRandomMoveIterator(ScoreDirector<DeliverySolution> scoreDirector,
+                                                              Random workingRandom) {
+        OrderVisitIndex orderVisits = refresh(scoreDirector.getWorkingSolution());
+        List<Order> byEarliest = ordersByEarliest;
+        VisitNeighbourhood nearby = neighbourhood;
+        OrderCompatibility compatible = compatibility;
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !orderVisits.getOrders().isEmpty();
+            }
+
+            @Override
+            public RouteChangeMove next() {
+                Order seed = orderVisits.getOrders().get(workingRandom.nextInt(orderVisits.getOrders().size()));
+                List<Order> ruined = workingRandom.nextBoolean()
+                        ? nearbyCluster(orderVisits, nearby, seed, ruinedOrderCount)
+                        : timeWindowCluster(byEarliest, seed, ruinedOrderCount,
+                                workingRandom.nextInt(Math.min(ruinedOrderCount, byEarliest.size())));
+                Collections.shuffle(ruined, workingRandom);
+                return createMove(orderVisits, compatible, ruined);
+            }
+        };
+    }
+
+    /**
+     * Brings the order index, the orders by earliest minute, the neighbourhood and the compatibility up to date
+     * with the working solution, each only rebuilt when its input changed.
+     */
+    private OrderVisitIndex refresh(DeliverySolution solution) {
+        OrderVisitIndex previous = index;
+        OrderVisitIndex orderVisits = index = OrderVisitIndex.of(solution, index);
+        if (orderVisits != previous) {
+            ordersByEarliest = new ArrayList<>(orderVisits.getOrders());
+            ordersByEarliest.sort(Comparator.comparingInt(Order::getEarliestMinute));
+        }
+        neighbourhood = VisitNeighbourhood.of(solution, neighbourhood, VisitNeighbourhood.DEFAULT_MAX_NEIGHBOURS);
+        compatibility = OrderCompatibility.of(orderVisits, compatibility);
+        return orderVisits;
+    }
+
+    /**
+     * The seed and the orders of the visits nearest to its delivery, up to {@code count} orders.
+     */
+    static List<Order> nearbyCluster(OrderVisitIndex orderVisits, VisitNeighbourhood neighbourhood, Order seed,
+                                     int count) {
+        Set<Order> cluster = new LinkedHashSet<>();
+        cluster.add(seed);
+        Visit delivery = orderVisits.getDelivery(seed);
+        if (delivery != null) {
+            int neighbourCount = neighbourhood.getNeighbourCount(delivery);
+            for (int rank = 0; rank < neighbourCount && cluster.size() < count; rank++) {
+                cluster.add(neighbourhood.getNeighbour(delivery, rank).getOrder());
+            }
+        }
+        return new ArrayList<>(cluster);
+    }
+
+    /**
+     * {@code count} orders in a row by earliest minute, the seed {@code seedOffset} orders after the first of them
+     * where the ends of the list allow.
+     */
+    static List<Order> timeWindowCluster(List<Order> ordersByEarliest, Order seed, int count, int seedOffset) {
+        int size = Math.min(count, ordersByEarliest.size());
+        int position = ordersByEarliest.indexOf(seed);
+        int from = Math.max(0, Math.min(position - seedOffset, ordersByEarliest.size() - size));
+        return new ArrayList<>(ordersByEarliest.subList(from, from + size));
+    }
+
+    /**
+     * @param ruined orders to unassign, reinserted in this order
+     */
+    static RouteChangeMove createMove(OrderVisitIndex orderVisits, OrderCompatibility compatibility,
+                                      List<Order> ruined) {
+        RouteEdit edit = new RouteEdit();
+        for (Order order : ruined) {
+            for (Visit pickup : orderVisits.getPickups(order)) {
+                if (pickup.getCourier() != null) {
+                    edit.remove(pickup);
+                }
+            }
+            Visit delivery = orderVisits.getDelivery(order);
+            if (delivery != null && delivery.getCourier() != null) {
+                edit.remove(delivery);
+            }
+        }
+
+        for (Order order : ruined) {
+            Visit delivery = orderVisits.getDelivery(order);
+            List<Visit> pickups = orderVisits.getPickups(order);
+            if (delivery == null || pickups.isEmpty()) {
+                continue;
+            }
+            CheapestInsertion.Insertion insertion = CheapestInsertion.find(delivery, pickups,
+                    orderVisits.getSolution().getCourierShifts(), edit::view,
+                    (o, route) -> compatibility.fitsRoute(o, route, null));
+            if (insertion != null) {
+                edit.insert(insertion.courier(), insertion.pickupIndex(), insertion.pickup());
+                edit.insert(insertion.courier(), insertion.deliveryIndex(), delivery);
+            }
+        }
+        return edit.toMove(MOVE_TYPE);
+    }
+}
@@ -0,0 +1,18 @@
+package fdo.solver.move;
+
+import ai.timefold.solver.core.impl.heuristic.selector.common.nearby.NearbyDistanceMeter;
+import fdo.domain.Visit;
+
+/**
+ * Routed travel time in seconds from one visit's location to another's, read from the travel matrix.
+ */
+public class VisitNearbyDistanceMeter implements NearbyDistanceMeter<Visit, Visit> {
+
+    @Override
+    public double getNearbyDistance(Visit origin, Visit destination) {
+        if (origin.getLocation() == null || destination.getLocation() == null) {
+            return Double.MAX_VALUE;
+        }
+        return origin.getLocation().timeTo(destination.getLocation());
+    }
+}
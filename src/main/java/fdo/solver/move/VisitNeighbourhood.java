@@ -0,0 +1,90 @@
+package fdo.solver.move;
+
+import fdo.domain.DeliverySolution;
+import fdo.domain.Visit;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The nearest visits of every visit by {@link VisitNearbyDistanceMeter}, sorted once per working solution.
+ * <p>
+ * Only the {@code maxNeighbours} nearest are kept per origin, as primitive index arrays, so a lookup neither
+ * allocates nor measures anything.
+ */
+public class VisitNeighbourhood {
+
+    public static final int DEFAULT_MAX_NEIGHBOURS = 50;
+
+    private final DeliverySolution solution;
+    private final List<Visit> visits;
+    private final Map<Visit, Integer> indexByVisit = new IdentityHashMap<>();
+    private final int[][] neighbours;
+
+    private VisitNeighbourhood(DeliverySolution solution, int maxNeighbours) {
+        this.solution = solution;
+        this.visits = solution.getVisitList();
+        int size = visits.size();
+        for (int i = 0; i < size; i++) {
+            indexByVisit.put(visits.get(i), i);
+        }
+
+        VisitNearbyDistanceMeter meter = new VisitNearbyDistanceMeter();
+        neighbours = new int[size][];
+        long[] keys = new long[Math.max(0, size - 1)];
+        for (int i = 0; i < size; i++) {
+            Visit origin = visits.get(i);
+            int k = 0;
+            for (int j = 0; j < size; j++) {
+                if (j != i) {
+                    // seconds in the high bits, index in the low bits, so sorting the keys sorts by distance
+                    long seconds = (long) Math.min(meter.getNearbyDistance(origin, visits.get(j)), Integer.MAX_VALUE);
+                    keys[k++] = seconds << 32 | j;
+                }
+            }
+            Arrays.sort(keys, 0, k);
+            int count = Math.min(k, maxNeighbours);
+            int[] nearest = new int[count];
+            for (int n = 0; n < count; n++) {
+                nearest[n] = (int) keys[n];
+            }
+            neighbours[i] = nearest;
+        }
+    }
+
+    /**
+     * The neighbourhood of the given working solution, reusing {@code previous} when it was built for the same one.
+     */
+    public static VisitNeighbourhood of(DeliverySolution solution, VisitNeighbourhood previous, int maxNeighbours) {
+        if (previous != null && previous.solution == solution) {
+            return previous;
+        }
+        return new VisitNeighbourhood(solution, maxNeighbours);
+    }
+
+    public int getNeighbourCount(Visit origin) {
+        Integer index = indexByVisit.get(origin);
+        return index == null ? 0 : neighbours[index].length;
+    }
+
+    /**
+     * @param rank 0 for the nearest visit
+     */
+    public Visit getNeighbour(Visit origin, int rank) {
+        return visits.get(neighbours[indexByVisit.get(origin)][rank]);
+    }
+
+    /**
+     * One of the {@code distributionSize} nearest visits, uniformly, or null when the origin has no neighbours.
+     */
+    public Visit getRandomNeighbour(Visit origin, int distributionSize, Random random) {
+        int count = Math.min(getNeighbourCount(origin), distributionSize);
+        if (count == 0) {
+            return null;
+        }
+        return getNeighbour(origin, random.nextInt(count));
+    }
+}
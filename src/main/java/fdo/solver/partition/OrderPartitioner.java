@@ -0,0 +1,90 @@
+package fdo.solver.partition;
+
+import fdo.domain.Location;
+import fdo.domain.Order;
+import fdo.domain.Visit;
+import fdo.solver.move.OrderVisitIndex;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits the orders of a problem into groups that can be solved on their own: first into time slots of equal
+ * order count by earliest minute, then each slot into geographic strips of equal order count.
+ * An order is placed by the middle between its customer and its pickup candidates, so restaurants and customers
+ * of one group are near each other. Strips run across the wider of the latitude and longitude spreads.
+ */
+public class OrderPartitioner {
+
+    private OrderPartitioner() {}
+
+    /**
+     * About {@code partitionCount} groups, as many time slots as geographic strips per slot, none empty.
+     */
+    public static List<List<Order>> partition(OrderVisitIndex orderVisits, int partitionCount) {
+        int timeSlots = Math.max(1, (int) Math.round(Math.sqrt(partitionCount)));
+        int strips = Math.max(1, (partitionCount + timeSlots - 1) / timeSlots);
+
+        List<Order> byEarliest = new ArrayList<>(orderVisits.getOrders());
+        byEarliest.sort(Comparator.comparingInt(Order::getEarliestMinute));
+
+        Map<Order, double[]> positions = new IdentityHashMap<>();
+        for (Order order : byEarliest) {
+            positions.put(order, position(orderVisits, order));
+        }
+
+        List<List<Order>> partitions = new ArrayList<>();
+        for (List<Order> slot : split(byEarliest, timeSlots)) {
+            int axis = spread(slot, positions, 0) >= spread(slot, positions, 1) ? 0 : 1;
+            List<Order> sorted = new ArrayList<>(slot);
+            sorted.sort(Comparator.comparingDouble(order -> positions.get(order)[axis]));
+            partitions.addAll(split(sorted, strips));
+        }
+        return partitions;
+    }
+
+    // consecutive, non empty chunks of nearly equal size
+    private static List<List<Order>> split(List<Order> orders, int count) {
+        List<List<Order>> chunks = new ArrayList<>();
+        int size = orders.size();
+        for (int i = 0; i < count; i++) {
+            int from = (int) ((long) size * i / count);
+            int to = (int) ((long) size * (i + 1) / count);
+            if (to > from) {
+                chunks.add(new ArrayList<>(orders.subList(from, to)));
+            }
+        }
+        return chunks;
+    }
+
+    // {lat, lon} halfway between the customer and the average pickup candidate
+    private static double[] position(OrderVisitIndex orderVisits, Order order) {
+        Location customer = order.getDeliveryLocation();
+        List<Visit> pickups = orderVisits.getPickups(order);
+        if (pickups.isEmpty()) {
+            return new double[] {customer.getLat(), customer.getLon()};
+        }
+        double lat = 0;
+        double lon = 0;
+        for (Visit pickup : pickups) {
+            lat += pickup.getLocation().getLat();
+            lon += pickup.getLocation().getLon();
+        }
+        return new double[] {(customer.getLat() + lat / pickups.size()) / 2,
+                (customer.getLon() + lon / pickups.size()) / 2};
+    }
+
+    private static double spread(List<Order> orders, Map<Order, double[]> positions, int axis) {
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (Order order : orders) {
+            double value = positions.get(order)[axis];
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        return max - min;
+    }
+}
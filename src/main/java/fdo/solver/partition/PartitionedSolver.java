@@ -0,0 +1,203 @@
+package fdo.solver.partition;
+
+import ai.timefold.solver.core.api.solver.SolverConfigOverride;
+import ai.timefold.solver.core.api.solver.SolverJob;
+import ai.timefold.solver.core.api.solver.SolverManager;
+import ai.timefold.solver.core.config.solver.SolverConfig;
+import ai.timefold.solver.core.config.solver.SolverManagerConfig;
+import ai.timefold.solver.core.config.solver.termination.TerminationConfig;
+import fdo.domain.CourierShift;
+import fdo.domain.DeliverySolution;
+import fdo.domain.Order;
+import fdo.domain.Visit;
+import fdo.generator.CourierPool;
+import fdo.solver.move.OrderVisitIndex;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Solves a large problem as several smaller ones: the orders are split by {@link OrderPartitioner}, every partition
+ * gets its own couriers and is solved on its own core, and the partition results are merged into one solution.
+ * That solution is meant to be refined by a short solve of the whole problem, see {@link #refinement(Duration)}.
+ * <p>
+ * Timefold's own partitioned search is an Enterprise Edition feature, this works with the Community Edition.
+ * Only problems without assigned visits are partitioned.
+ */
+@Slf4j
+public class PartitionedSolver implements AutoCloseable {
+
+    public static final Duration DEFAULT_PARTITION_SPENT_LIMIT = Duration.ofMinutes(2);
+    public static final Duration DEFAULT_REFINEMENT_SPENT_LIMIT = Duration.ofMinutes(1);
+
+    private final SolverManager<DeliverySolution, String> partitionSolverManager;
+    // the partition solves of each job being partitioned, to terminate them with the job
+    private final ConcurrentMap<String, List<SolverJob<DeliverySolution, String>>> jobIdToPartitionJobs =
+            new ConcurrentHashMap<>();
+
+    /**
+     * @param solverConfig solves each partition, without move threads as the partitions already use every core
+     */
+    public PartitionedSolver(SolverConfig solverConfig) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.partitionSolverManager = SolverManager.create(
+                solverConfig.copyConfig().withMoveThreadCount(SolverConfig.MOVE_THREAD_COUNT_NONE),
+                new SolverManagerConfig().withParallelSolverCount(String.valueOf(cores)));
+    }
+
+    /**
+     * Splits the problem into {@code partitionCount} parts, solves them in parallel for {@code spentLimit} and
+     * returns the merged solution, or the problem itself when it is already (partly) planned.
+     *
+     * @throws CancellationException when the job is terminated early by {@link #terminateEarly(String)}
+     */
+    public DeliverySolution solvePartitions(String jobId, DeliverySolution problem, int partitionCount,
+                                            Duration spentLimit) {
+        for (CourierShift courier : problem.getCourierShifts()) {
+            if (courier.isUsed()) {
+                log.info("Problem has assigned visits, solving it as a whole");
+                return problem;
+            }
+        }
+        long start = System.nanoTime();
+        OrderVisitIndex orderVisits = OrderVisitIndex.of(problem, null);
+        List<List<Order>> partitions = OrderPartitioner.partition(orderVisits, partitionCount);
+
+        String idPrefix = UUID.randomUUID() + "-";
+        SolverConfigOverride<DeliverySolution> configOverride = new SolverConfigOverride<DeliverySolution>()
+                .withTerminationConfig(new TerminationConfig().withSpentLimit(spentLimit));
+        List<SolverJob<DeliverySolution, String>> jobs = new CopyOnWriteArrayList<>();
+        if (jobIdToPartitionJobs.putIfAbsent(jobId, jobs) != null) {
+            throw new RuntimeException("Job " + jobId + " is already solving partitions");
+        }
+        List<DeliverySolution> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < partitions.size(); i++) {
+                DeliverySolution subProblem = subProblem(problem, orderVisits, partitions.get(i), i + 1);
+                jobs.add(partitionSolverManager.solveBuilder()
+                        .withProblemId(idPrefix + i)
+                        .withProblem(subProblem)
+                        .withConfigOverride(configOverride)
+                        .run());
+                // terminateEarly may have taken the list before this partition was added to it
+                if (jobIdToPartitionJobs.get(jobId) != jobs) {
+                    jobs.forEach(SolverJob::terminateEarly);
+                    throw new CancellationException("Partitions of job " + jobId + " terminated early");
+                }
+            }
+            for (SolverJob<DeliverySolution, String> job : jobs) {
+                results.add(job.getFinalBestSolution());
+            }
+            if (jobIdToPartitionJobs.get(jobId) != jobs) {
+                throw new CancellationException("Partitions of job " + jobId + " terminated early");
+            }
+        } catch (InterruptedException e) {
+            jobs.forEach(SolverJob::terminateEarly);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while solving partitions", e);
+        } catch (ExecutionException e) {
+            jobs.forEach(SolverJob::terminateEarly);
+            throw new RuntimeException("Solving a partition failed", e.getCause());
+        } finally {
+            jobIdToPartitionJobs.remove(jobId, jobs);
+        }
+
+        DeliverySolution merged = merge(problem, results);
+        log.info("Solved {} orders in {} partitions in {} ms", problem.getOrders().size(), partitions.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        return merged;
+    }
+
+    /**
+     * Stops the partition solves of the job, if it is solving partitions.
+     */
+    public void terminateEarly(String jobId) {
+        List<SolverJob<DeliverySolution, String>> jobs = jobIdToPartitionJobs.remove(jobId);
+        if (jobs != null) {
+            jobs.forEach(SolverJob::terminateEarly);
+        }
+    }
+
+    /**
+     * Config override for the solve of the merged solution.
+     */
+    public static SolverConfigOverride<DeliverySolution> refinement(Duration spentLimit) {
+        return new SolverConfigOverride<DeliverySolution>()
+                .withTerminationConfig(new TerminationConfig().withSpentLimit(spentLimit));
+    }
+
+    /**
+     * The orders with their visits and a courier pool of their own, ids prefixed by the partition number.
+     * Facts and the travel matrix are shared with the whole problem.
+     */
+    static DeliverySolution subProblem(DeliverySolution problem, OrderVisitIndex orderVisits, List<Order> orders,
+                                       int partitionNumber) {
+        List<Visit> visits = new ArrayList<>();
+        for (Order order : orders) {
+            Visit delivery = orderVisits.getDelivery(order);
+            if (delivery != null) {
+                visits.add(delivery);
+            }
+            visits.addAll(orderVisits.getPickups(order));
+        }
+
+        int hotCapacity = CourierPool.DEFAULT_HOT_CAPACITY;
+        int coldCapacity = CourierPool.DEFAULT_COLD_CAPACITY;
+        if (!problem.getCourierShifts().isEmpty()) {
+            hotCapacity = problem.getCourierShifts().get(0).getHotCapacity();
+            coldCapacity = problem.getCourierShifts().get(0).getColdCapacity();
+        }
+        List<CourierShift> couriers = CourierPool.create(CourierPool.size(orders, hotCapacity, coldCapacity),
+                hotCapacity, coldCapacity, Set.of());
+        for (CourierShift courier : couriers) {
+            courier.setId("P" + partitionNumber + "-" + courier.getId());
+        }
+
+        DeliverySolution subProblem = new DeliverySolution();
+        subProblem.setCourierShifts(couriers);
+        subProblem.setVisitList(visits);
+        subProblem.setOrders(new ArrayList<>(orders));
+        subProblem.setRestaurantList(problem.getRestaurantList());
+        subProblem.setFoods(problem.getFoods());
+        subProblem.setLocations(problem.getLocations());
+        subProblem.setLocationList(problem.getLocationList());
+        subProblem.setTravelMatrix(problem.getTravelMatrix());
+        return subProblem;
+    }
+
+    /**
+     * One solution with the couriers and visits of all partition results, which are disjoint.
+     */
+    static DeliverySolution merge(DeliverySolution problem, List<DeliverySolution> partitionSolutions) {
+        List<CourierShift> couriers = new ArrayList<>();
+        List<Visit> visits = new ArrayList<>();
+        for (DeliverySolution partition : partitionSolutions) {
+            couriers.addAll(partition.getCourierShifts());
+            visits.addAll(partition.getVisitList());
+        }
+        DeliverySolution merged = new DeliverySolution();
+        merged.setCourierShifts(couriers);
+        merged.setVisitList(visits);
+        merged.setOrders(new ArrayList<>(problem.getOrders()));
+        merged.setRestaurantList(new ArrayList<>(problem.getRestaurantList()));
+        merged.setFoods(problem.getFoods() == null ? null : new ArrayList<>(problem.getFoods()));
+        merged.setLocations(problem.getLocations());
+        merged.setLocationList(new ArrayList<>(problem.getLocationList()));
+        merged.setTravelMatrix(problem.getTravelMatrix());
+        return merged;
+    }
+
+    @Override
+    public void close() {
+        partitionSolverManager.close();
+    }
+}
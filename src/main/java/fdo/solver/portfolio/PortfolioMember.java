@@ -0,0 +1,49 @@
+package fdo.solver.portfolio;
+
+import ai.timefold.solver.core.config.localsearch.LocalSearchPhaseConfig;
+import ai.timefold.solver.core.config.localsearch.decider.acceptor.LocalSearchAcceptorConfig;
+import ai.timefold.solver.core.config.localsearch.decider.forager.LocalSearchForagerConfig;
+import ai.timefold.solver.core.config.phase.PhaseConfig;
+import ai.timefold.solver.core.config.solver.SolverConfig;
+
+import java.util.List;
+
+/**
+ * One solver of a portfolio: the configured solver with the acceptor and forager of its local search phases replaced,
+ * or as it is when {@code acceptor} is null. Phases, moves and terminations stay those of solverConfig.xml.
+ *
+ * @param name shown in the logs
+ * @param acceptor used by every local search phase, null to keep the configured ones
+ * @param acceptedCountLimit forager limit going with the acceptor
+ */
+public record PortfolioMember(String name, LocalSearchAcceptorConfig acceptor, Integer acceptedCountLimit) {
+
+    /**
+     * The configs that won on some problem size in BenchmarkConfig.xml, the configured solver first.
+     */
+    public static final List<PortfolioMember> DEFAULT_MEMBERS = List.of(
+            new PortfolioMember("Configured", null, null),
+            new PortfolioMember("LAHC 400",
+                    new LocalSearchAcceptorConfig().withLateAcceptanceSize(400), 100),
+            new PortfolioMember("Tabu 5",
+                    new LocalSearchAcceptorConfig().withValueTabuSize(5), 1000),
+            new PortfolioMember("Simulated Annealing - soft",
+                    new LocalSearchAcceptorConfig().withSimulatedAnnealingStartingTemperature("2hard/500soft"), 100));
+
+    /**
+     * A copy of the solver config with this member's acceptor and the given random seed.
+     */
+    public SolverConfig configure(SolverConfig solverConfig, long randomSeed) {
+        SolverConfig config = solverConfig.copyConfig().withRandomSeed(randomSeed);
+        if (acceptor == null || config.getPhaseConfigList() == null) {
+            return config;
+        }
+        for (PhaseConfig<?> phase : config.getPhaseConfigList()) {
+            if (phase instanceof LocalSearchPhaseConfig localSearch) {
+                localSearch.setAcceptorConfig(acceptor.copyConfig());
+                localSearch.setForagerConfig(new LocalSearchForagerConfig().withAcceptedCountLimit(acceptedCountLimit));
+            }
+        }
+        return config;
+    }
+}
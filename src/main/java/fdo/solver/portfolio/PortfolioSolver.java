@@ -0,0 +1,262 @@
+package fdo.solver.portfolio;
+
+import ai.timefold.solver.core.api.score.buildin.hardsoft.HardSoftScore;
+import ai.timefold.solver.core.api.solver.Solver;
+import ai.timefold.solver.core.api.solver.SolverFactory;
+import ai.timefold.solver.core.api.solver.SolverStatus;
+import ai.timefold.solver.core.config.solver.SolverConfig;
+import fdo.domain.DeliverySolution;
+import fdo.domain.DeliverySolutionCloner;
+import fdo.solver.CourierPoolGrowth;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Races several differently configured solvers on one job, see {@link PortfolioMember}, each on its own core and its
+ * own clone of the problem. The best solution across them is published as it improves, and every
+ * {@link #DEFAULT_ROUND_DURATION} the worse half of the solvers still running is terminated, as long as it is behind
+ * the leader. With more cores than members, members repeat with other random seeds.
+ * <p>
+ * All portfolio jobs share a pool of {@code coreCount} solver threads, a job waits for cores when they are taken.
+ */
+@Slf4j
+public class PortfolioSolver implements AutoCloseable {
+
+    public static final Duration DEFAULT_ROUND_DURATION = Duration.ofSeconds(30);
+
+    private final SolverConfig solverConfig;
+    private final List<PortfolioMember> members;
+    private final int coreCount;
+    private final Duration roundDuration;
+    private final ExecutorService solverExecutor;
+    private final ScheduledExecutorService roundExecutor = Executors.newSingleThreadScheduledExecutor();
+    // one factory per slot of a portfolio, as a slot's member and seed never change
+    private final ConcurrentMap<Integer, SolverFactory<DeliverySolution>> slotSolverFactories = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Race> jobIdToRace = new ConcurrentHashMap<>();
+    private final DeliverySolutionCloner cloner = new DeliverySolutionCloner();
+
+    /**
+     * @param coreCount solver threads shared by all portfolio jobs, 0 or less for every core of the machine
+     */
+    public PortfolioSolver(SolverConfig solverConfig, List<PortfolioMember> members, int coreCount,
+                           Duration roundDuration) {
+        if (members.isEmpty()) {
+            throw new RuntimeException("A portfolio needs at least one member");
+        }
+        this.solverConfig = solverConfig;
+        this.members = List.copyOf(members);
+        this.coreCount = coreCount > 0 ? coreCount : Runtime.getRuntime().availableProcessors();
+        this.roundDuration = roundDuration;
+        this.solverExecutor = Executors.newFixedThreadPool(this.coreCount);
+    }
+
+    public PortfolioSolver(SolverConfig solverConfig, int coreCount) {
+        this(solverConfig, PortfolioMember.DEFAULT_MEMBERS, coreCount, DEFAULT_ROUND_DURATION);
+    }
+
+    public int getCoreCount() {
+        return coreCount;
+    }
+
+    /**
+     * Starts racing {@code cores} solvers on the problem, which itself is not changed.
+     *
+     * @param bestSolutionConsumer called with each solution better than all before it, from any solver thread
+     * @return completes with the best solution once every solver has finished
+     */
+    public CompletableFuture<DeliverySolution> solve(String jobId, DeliverySolution problem, int cores,
+                                                     Consumer<DeliverySolution> bestSolutionConsumer) {
+        if (cores < 1 || cores > coreCount) {
+            throw new RuntimeException("A portfolio job takes 1 to " + coreCount + " cores, got " + cores);
+        }
+        List<Runner> runners = new ArrayList<>(cores);
+        for (int slot = 0; slot < cores; slot++) {
+            PortfolioMember member = members.get(slot % members.size());
+            int seed = slot;
+            SolverFactory<DeliverySolution> solverFactory = slotSolverFactories.computeIfAbsent(slot,
+                    s -> SolverFactory.create(member.configure(solverConfig, seed)));
+            String name = slot < members.size() ? member.name() : member.name() + " #" + (slot / members.size() + 1);
+            runners.add(new Runner(name, solverFactory.buildSolver()));
+        }
+
+        Race race = new Race(jobId, runners, bestSolutionConsumer);
+        if (jobIdToRace.putIfAbsent(jobId, race) != null) {
+            throw new RuntimeException("Portfolio job " + jobId + " is already solving");
+        }
+        long roundMillis = roundDuration.toMillis();
+        race.rounds = roundExecutor.scheduleAtFixedRate(() -> nextRound(race), roundMillis, roundMillis,
+                TimeUnit.MILLISECONDS);
+        for (Runner runner : runners) {
+            DeliverySolution runnerProblem = cloner.cloneSolution(problem);
+            CourierPoolGrowth poolGrowth = new CourierPoolGrowth(runner.solver::addProblemChange);
+            runner.solver.addEventListener(event -> {
+                DeliverySolution solution = event.getNewBestSolution();
+                runner.bestScore = solution.getScore();
+                race.offer(runner, solution);
+                poolGrowth.onBestSolution(solution);
+            });
+            solverExecutor.execute(() -> run(race, runner, runnerProblem));
+        }
+        log.info("Portfolio job {} races {} solvers", jobId, runners.size());
+        return race.result;
+    }
+
+    /**
+     * Active while one of the job's solvers runs, scheduled while none has a core yet, not solving otherwise,
+     * also for jobs this portfolio does not know.
+     */
+    public SolverStatus getSolverStatus(String jobId) {
+        Race race = jobIdToRace.get(jobId);
+        if (race == null) {
+            return SolverStatus.NOT_SOLVING;
+        }
+        for (Runner runner : race.runners) {
+            if (runner.started) {
+                return SolverStatus.SOLVING_ACTIVE;
+            }
+        }
+        return SolverStatus.SOLVING_SCHEDULED;
+    }
+
+    public void terminateEarly(String jobId) {
+        Race race = jobIdToRace.get(jobId);
+        if (race != null) {
+            race.runners.forEach(Runner::terminate);
+        }
+    }
+
+    private void run(Race race, Runner runner, DeliverySolution problem) {
+        if (!runner.start()) {
+            race.finish(null);
+            return;
+        }
+        try {
+            runner.solver.solve(problem);
+            runner.finished = true;
+            race.finish(null);
+        } catch (RuntimeException e) {
+            log.error("Portfolio solver {} of job {} failed.", runner.name, race.jobId, e);
+            runner.finished = true;
+            race.finish(e);
+        }
+    }
+
+    /**
+     * Terminates the worse half of the running solvers that are behind the leader, keeping at least one.
+     */
+    private void nextRound(Race race) {
+        List<Runner> running = new ArrayList<>();
+        for (Runner runner : race.runners) {
+            if (runner.started && !runner.finished && !runner.terminated && runner.bestScore != null) {
+                running.add(runner);
+            }
+        }
+        if (running.size() <= 1) {
+            return;
+        }
+        running.sort(Comparator.comparing((Runner runner) -> runner.bestScore).reversed());
+        HardSoftScore leaderScore = running.get(0).bestScore;
+        for (Runner runner : running.subList(running.size() - running.size() / 2, running.size())) {
+            if (runner.bestScore.compareTo(leaderScore) < 0) {
+                log.info("Portfolio job {}: stopping {} at {}, leader {} is at {}", race.jobId, runner.name,
+                        runner.bestScore, running.get(0).name, leaderScore);
+                runner.terminate();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        jobIdToRace.values().forEach(race -> race.runners.forEach(Runner::terminate));
+        roundExecutor.shutdownNow();
+        solverExecutor.shutdownNow();
+    }
+
+    private static final class Runner {
+        private final String name;
+        private final Solver<DeliverySolution> solver;
+        private volatile HardSoftScore bestScore;
+        // terminateEarly only reaches a solver that has started, so the flags are set together under the lock
+        private volatile boolean started;
+        private volatile boolean terminated;
+        private volatile boolean finished;
+
+        private Runner(String name, Solver<DeliverySolution> solver) {
+            this.name = name;
+            this.solver = solver;
+        }
+
+        private synchronized boolean start() {
+            started = !terminated;
+            return started;
+        }
+
+        private synchronized void terminate() {
+            terminated = true;
+            if (started) {
+                solver.terminateEarly();
+            }
+        }
+    }
+
+    private final class Race {
+        private final String jobId;
+        private final List<Runner> runners;
+        private final Consumer<DeliverySolution> bestSolutionConsumer;
+        private final CompletableFuture<DeliverySolution> result = new CompletableFuture<>();
+        private volatile ScheduledFuture<?> rounds;
+        private DeliverySolution best;
+        private int finishedCount;
+        private RuntimeException failure;
+
+        private Race(String jobId, List<Runner> runners, Consumer<DeliverySolution> bestSolutionConsumer) {
+            this.jobId = jobId;
+            this.runners = runners;
+            this.bestSolutionConsumer = bestSolutionConsumer;
+        }
+
+        private synchronized void offer(Runner runner, DeliverySolution solution) {
+            if (best != null && solution.getScore().compareTo(best.getScore()) <= 0) {
+                return;
+            }
+            best = solution;
+            log.debug("Portfolio job {}: new best {} by {}", jobId, solution.getScore(), runner.name);
+            bestSolutionConsumer.accept(solution);
+        }
+
+        private void finish(RuntimeException exception) {
+            synchronized (this) {
+                if (exception != null && failure == null) {
+                    failure = exception;
+                }
+                if (++finishedCount < runners.size()) {
+                    return;
+                }
+            }
+            if (rounds != null) {
+                rounds.cancel(false);
+            }
+            jobIdToRace.remove(jobId, this);
+            if (best != null) {
+                log.info("Portfolio job {} finished with {}", jobId, best.getScore());
+                result.complete(best);
+            } else {
+                result.completeExceptionally(failure != null ? failure
+                        : new RuntimeException("Portfolio job " + jobId + " was terminated before solving"));
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package fdo.domain;
+
+import ai.timefold.solver.core.api.solver.SolutionManager;
+import ai.timefold.solver.core.api.solver.SolverFactory;
+import ai.timefold.solver.core.config.phase.custom.CustomPhaseConfig;
+import ai.timefold.solver.core.config.solver.EnvironmentMode;
+import ai.timefold.solver.core.config.solver.SolverConfig;
+import ai.timefold.solver.core.config.solver.termination.TerminationConfig;
+import ai.timefold.solver.core.impl.domain.solution.cloner.FieldAccessingSolutionCloner;
+import ai.timefold.solver.core.impl.domain.solution.descriptor.SolutionDescriptor;
+import fdo.generator.Generator;
+import fdo.generator.JsonIO;
+import fdo.solver.OrderInsertionPhaseCommand;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link DeliverySolutionCloner} against the reflection based cloner it replaces, on every field of the solution and
+ * its entities, so a field added without the cloner being updated fails here.
+ */
+class DeliverySolutionClonerTest {
+
+    private static final String PROBLEM = "src/main/resources/DeliveryProblem50.json";
+
+    @Test
+    void cloneEqualsReflectionClone() throws IllegalAccessException {
+        DeliverySolution solution = constructed();
+        // a pinned courier and an unassigned visit, so neither is only ever seen with its default
+        CourierShift pinned = solution.getCourierShifts().stream()
+                .filter(CourierShift::isUsed)
+                .findFirst()
+                .orElseThrow();
+        pinned.setPinIndex(1);
+        assertTrue(solution.getVisitList().stream().anyMatch(visit -> visit.getCourier() == null));
+        assertTrue(solution.getVisitList().stream().anyMatch(visit -> visit.getHotLoad() != null));
+
+        DeliverySolution expected = new FieldAccessingSolutionCloner<>(SolutionDescriptor.buildSolutionDescriptor(
+                DeliverySolution.class, CourierShift.class, Visit.class)).cloneSolution(solution);
+        DeliverySolution actual = new DeliverySolutionCloner().cloneSolution(solution);
+
+        Map<Object, Object> originals = new IdentityHashMap<>();
+        solution.getCourierShifts().forEach(courier -> originals.put(courier, courier));
+        solution.getVisitList().forEach(visit -> originals.put(visit, visit));
+        for (Field field : fields(DeliverySolution.class)) {
+            assertFieldEquals(field, field.get(expected), field.get(actual), field.get(solution), originals);
+        }
+        for (int i = 0; i < expected.getCourierShifts().size(); i++) {
+            CourierShift courier = actual.getCourierShifts().get(i);
+            for (Field field : fields(CourierShift.class)) {
+                assertFieldEquals(field, field.get(expected.getCourierShifts().get(i)), field.get(courier),
+                        field.get(solution.getCourierShifts().get(i)), originals);
+            }
+        }
+        for (int i = 0; i < expected.getVisitList().size(); i++) {
+            Visit visit = actual.getVisitList().get(i);
+            for (Field field : fields(Visit.class)) {
+                assertFieldEquals(field, field.get(expected.getVisitList().get(i)), field.get(visit),
+                        field.get(solution.getVisitList().get(i)), originals);
+            }
+            if (visit.getCourier() != null) {
+                assertTrue(actual.getCourierShifts().stream().anyMatch(courier -> courier == visit.getCourier()),
+                        "courier of visit " + visit.getId() + " is not one of the clone");
+            }
+        }
+    }
+
+    @Test
+    void fullAssertSolve() {
+        DeliverySolution problem = problem();
+        SolverConfig solverConfig = SolverConfig.createFromXmlResource("solverConfig.xml")
+                .withEnvironmentMode(EnvironmentMode.FULL_ASSERT)
+                .withTerminationConfig(new TerminationConfig().withSpentLimit(Duration.ofSeconds(10)));
+        // every new best solution is cloned, and FULL_ASSERT fails on a clone scoring differently from its original
+        DeliverySolution solution = SolverFactory.<DeliverySolution>create(solverConfig).buildSolver().solve(problem);
+        assertNotNull(solution.getScore());
+    }
+
+    /**
+     * Entities and entity lists are compared by id and must be the clone's own, facts must be shared with the
+     * original, fact lists copied, and everything else equal.
+     */
+    private static void assertFieldEquals(Field field, Object expected, Object actual, Object original,
+                                          Map<Object, Object> originals) {
+        String name = field.getDeclaringClass().getSimpleName() + "." + field.getName();
+        if (expected instanceof List<?> expectedList) {
+            List<?> actualList = (List<?>) actual;
+            assertNotSame(original, actual, name + " is the original's list");
+            assertEquals(ids(expectedList), ids(actualList), name);
+            for (Object element : actualList) {
+                if (element instanceof CourierShift || element instanceof Visit) {
+                    assertFalse(originals.containsKey(element), name + " holds an original entity");
+                }
+            }
+            for (int i = 0; i < actualList.size(); i++) {
+                if (!(actualList.get(i) instanceof CourierShift || actualList.get(i) instanceof Visit)) {
+                    assertSame(((List<?>) original).get(i), actualList.get(i), name + " does not share its facts");
+                }
+            }
+        } else if (expected instanceof CourierShift || expected instanceof Visit) {
+            assertEquals(id(expected), id(actual), name);
+            assertFalse(originals.containsKey(actual), name + " is an original entity");
+        } else {
+            assertEquals(expected, actual, name);
+        }
+    }
+
+    private static List<Object> ids(List<?> list) {
+        List<Object> ids = new ArrayList<>(list.size());
+        for (Object element : list) {
+            ids.add(id(element));
+        }
+        return ids;
+    }
+
+    private static Object id(Object value) {
+        if (value instanceof Visit visit) {
+            return visit.getId();
+        }
+        if (value instanceof CourierShift courier) {
+            return courier.getId();
+        }
+        return value;
+    }
+
+    private static List<Field> fields(Class<?> type) {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                field.setAccessible(true);
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * The solver returns a clone of its own, so the shadow variables are computed again on it, for them not to
+     * depend on the cloner under test.
+     */
+    private static DeliverySolution constructed() {
+        SolverConfig solverConfig = SolverConfig.createFromXmlResource("solverConfig.xml")
+                .withPhases(new CustomPhaseConfig()
+                        .withCustomPhaseCommandClassList(List.of(OrderInsertionPhaseCommand.class)));
+        SolverFactory<DeliverySolution> solverFactory = SolverFactory.create(solverConfig);
+        DeliverySolution solution = solverFactory.buildSolver().solve(problem());
+        SolutionManager.create(solverFactory).update(solution);
+        return solution;
+    }
+
+    /**
+     * DeliveryProblem50 with straight line travel times at 30 km/h instead of the road graph, which needs the OSM
+     * file.
+     */
+    private static DeliverySolution problem() {
+        DeliverySolution problem = JsonIO.read_json(PROBLEM);
+        List<Location> locations = problem.getLocationList();
+        TravelMatrix matrix = new TravelMatrix(locations.size());
+        for (int i = 0; i < locations.size(); i++) {
+            for (int j = 0; j < locations.size(); j++) {
+                double latKilometers = (locations.get(i).getLat() - locations.get(j).getLat()) * 111.0;
+                double lonKilometers = (locations.get(i).getLon() - locations.get(j).getLon()) * 61.0;
+                double kilometers = Math.hypot(latKilometers, lonKilometers);
+                matrix.set(i, j, Math.round(kilometers / 30 * 3600), kilometers);
+            }
+        }
+        for (int i = 0; i < locations.size(); i++) {
+            locations.get(i).setIndex(i);
+            locations.get(i).setTravelMatrix(matrix);
+        }
+        problem.setTravelMatrix(matrix);
+        problem.setVisitList(Generator.VisitGenerator.generateAll(problem));
+        return problem;
+    }
+}
@@ -0,0 +1,67 @@
+package fdo.domain;
+
+import fdo.generator.JsonIO;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The many-to-many matrix against the point-to-point one on DeliveryProblem50. Needs the OSM file, which is not part
+ * of the repository, and is skipped without it.
+ */
+class RouterMatrixModeTest {
+
+    private static final String OSM_FILE = "data/latvia-251227.osm.pbf";
+    private static final String PROBLEM = "src/main/resources/DeliveryProblem50.json";
+
+    // paths of the same weight may differ in length, times are rounded to seconds separately by both modes
+    private static final int TIME_TOLERANCE_SECONDS = 1;
+    private static final double DISTANCE_TOLERANCE_KILOMETERS = 0.05;
+
+    private static Router router;
+
+    @BeforeAll
+    static void loadGraph() {
+        assumeTrue(Files.exists(Path.of(OSM_FILE)), "OSM file " + OSM_FILE + " is missing");
+        router = new Router(OSM_FILE, ".ghtemp");
+        // every cell has to be computed by the mode under test
+        router.setTravelTimeCache(null);
+    }
+
+    @AfterAll
+    static void closeGraph() {
+        if (router != null) {
+            router.close();
+        }
+    }
+
+    @Test
+    void manyToManyEqualsPointToPoint() {
+        List<Location> pointToPoint = JsonIO.read_json(PROBLEM).getLocationList();
+        router.setMatrixMode(Router.MatrixMode.POINT_TO_POINT);
+        router.buildTravelMatrix(pointToPoint, (completedRows, totalRows) -> {});
+
+        List<Location> manyToMany = JsonIO.read_json(PROBLEM).getLocationList();
+        router.setMatrixMode(Router.MatrixMode.MANY_TO_MANY);
+        router.buildTravelMatrix(manyToMany, (completedRows, totalRows) -> {});
+
+        assertEquals(pointToPoint.size(), manyToMany.size());
+        for (int i = 0; i < pointToPoint.size(); i++) {
+            for (int j = 0; j < pointToPoint.size(); j++) {
+                String cell = pointToPoint.get(i).getId() + " -> " + pointToPoint.get(j).getId();
+                assertEquals(pointToPoint.get(i).timeTo(pointToPoint.get(j)),
+                        manyToMany.get(i).timeTo(manyToMany.get(j)), TIME_TOLERANCE_SECONDS, "time " + cell);
+                assertEquals(pointToPoint.get(i).distanceTo(pointToPoint.get(j)),
+                        manyToMany.get(i).distanceTo(manyToMany.get(j)), DISTANCE_TOLERANCE_KILOMETERS,
+                        "distance " + cell);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package fdo.solver;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CookingTimelineTest {
+
+    @Test
+    void pickupOverlappingHigherIdsBeyondCapacityIsOverloaded() {
+        List<CookingTimeline.Entry> entries = List.of(
+                pickup(1, 0, 30, 2),
+                pickup(2, 10, 40, 2),
+                pickup(3, 20, 50, 2),
+                customer(4, 25, 35));
+        // 1 overlaps 2, 3 and 4; 2 overlaps 3 and 4; 3 overlaps 4 only, which fits its capacity
+        assertEquals(2, CookingTimeline.overloadedPickupCount(entries));
+        assertEquals(2, CookingTimeline.overloadedPickupCountPairwise(entries));
+    }
+
+    @Test
+    void touchingIntervalsDoNotOverlap() {
+        List<CookingTimeline.Entry> entries = List.of(
+                pickup(1, 0, 10, 1),
+                pickup(2, 10, 20, 1),
+                pickup(3, 20, 30, 1));
+        assertEquals(0, CookingTimeline.overloadedPickupCount(entries));
+    }
+
+    @Test
+    void pickupWithoutOverlapIsNeverOverloaded() {
+        List<CookingTimeline.Entry> entries = List.of(
+                pickup(1, 0, 10, 0),
+                customer(2, 5, 5),
+                pickup(3, 30, 30, 0));
+        assertEquals(CookingTimeline.overloadedPickupCountPairwise(entries),
+                CookingTimeline.overloadedPickupCount(entries));
+    }
+
+    @Test
+    void randomTimelinesMatchPairwiseRule() {
+        Random random = new Random(37);
+        for (int round = 0; round < 500; round++) {
+            List<CookingTimeline.Entry> entries = randomEntries(random, 1 + random.nextInt(60));
+            assertEquals(CookingTimeline.overloadedPickupCountPairwise(entries),
+                    CookingTimeline.overloadedPickupCount(entries), () -> "entries " + entries);
+        }
+    }
+
+    @Test
+    void addsAndRemovesMatchPairwiseRule() {
+        Random random = new Random(41);
+        for (int round = 0; round < 50; round++) {
+            CookingTimeline timeline = CookingTimeline.overloadedPickupCount().supplier().get();
+            List<CookingTimeline.Entry> present = new ArrayList<>();
+            for (CookingTimeline.Entry entry : randomEntries(random, 200)) {
+                timeline.add(entry);
+                present.add(entry);
+                if (random.nextInt(3) == 0) {
+                    timeline.remove(present.remove(random.nextInt(present.size())));
+                }
+                assertEquals(CookingTimeline.overloadedPickupCountPairwise(present), timeline.getOverloadedCount(),
+                        () -> "entries " + present);
+            }
+        }
+    }
+
+    /**
+     * An evening of one busy restaurant: pickups with the odd customer at the same location, with shared minutes
+     * and zero length intervals.
+     */
+    static List<CookingTimeline.Entry> randomEntries(Random random, int count) {
+        List<CookingTimeline.Entry> entries = new ArrayList<>(count);
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            ids.add(id);
+        }
+        Collections.shuffle(ids, random);
+        for (long id : ids) {
+            int end = 1020 + random.nextInt(120);
+            int cookTime = random.nextInt(8) == 0 ? 0 : 5 + random.nextInt(40);
+            entries.add(random.nextInt(10) == 0
+                    ? customer(id, end - cookTime, end)
+                    : pickup(id, end - cookTime, end, random.nextInt(6)));
+        }
+        return entries;
+    }
+
+    private static CookingTimeline.Entry pickup(long id, int start, int end, int capacity) {
+        return new CookingTimeline.Entry(id, start, end, true, capacity);
+    }
+
+    private static CookingTimeline.Entry customer(long id, int start, int end) {
+        return new CookingTimeline.Entry(id, start, end, false, 0);
+    }
+}
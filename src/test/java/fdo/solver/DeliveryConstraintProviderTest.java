@@ -0,0 +1,167 @@
+package fdo.solver;
+
+import ai.timefold.solver.test.api.score.stream.ConstraintVerifier;
+import fdo.domain.CourierShift;
+import fdo.domain.DeliverySolution;
+import fdo.domain.Location;
+import fdo.domain.Order;
+import fdo.domain.Restaurant;
+import fdo.domain.Visit;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class DeliveryConstraintProviderTest {
+
+    private final ConstraintVerifier<DeliveryConstraintProvider, DeliverySolution> constraintVerifier =
+            ConstraintVerifier.build(new DeliveryConstraintProvider(), DeliverySolution.class, CourierShift.class,
+                    Visit.class);
+
+    private final CourierShift courier = new CourierShift("courier", 10, 10);
+    private final CourierShift otherCourier = new CourierShift("other-courier", 10, 10);
+    private final Location restaurantLocation = new Location(1L, 56.95, 24.10);
+
+    @Test
+    void restaurantMaxParallelCapacityFixedTimeline() {
+        List<CookingTimeline.Entry> entries = List.of(
+                new CookingTimeline.Entry(1, 0, 30, true, 2),
+                new CookingTimeline.Entry(2, 10, 40, true, 2),
+                new CookingTimeline.Entry(3, 20, 50, true, 2),
+                new CookingTimeline.Entry(4, 25, 35, false, 0));
+
+        constraintVerifier.verifyThat(DeliveryConstraintProvider::restaurantMaxParallelCapacity)
+                .given(visits(entries).toArray())
+                .penalizesBy(CookingTimeline.overloadedPickupCountPairwise(entries));
+    }
+
+    @Test
+    void restaurantMaxParallelCapacityRandomTimelines() {
+        Random random = new Random(43);
+        for (int round = 0; round < 50; round++) {
+            List<CookingTimeline.Entry> entries = CookingTimelineTest.randomEntries(random, 1 + random.nextInt(60));
+
+            constraintVerifier.verifyThat(DeliveryConstraintProvider::restaurantMaxParallelCapacity)
+                    .given(visits(entries).toArray())
+                    .penalizesBy(CookingTimeline.overloadedPickupCountPairwise(entries));
+        }
+    }
+
+    @Test
+    void sameOrderSameCourier() {
+        Order order = order(30, 10);
+
+        constraintVerifier.verifyThat(DeliveryConstraintProvider::sameOrderSameCourier)
+                .given(pickup(order, courier, 10), delivery(order, otherCourier, 20))
+                .penalizesBy(1);
+        constraintVerifier.verifyThat(DeliveryConstraintProvider::sameOrderSameCourier)
+                .given(pickup(order, courier, 10), pickup(order, otherCourier, 12), delivery(order, otherCourier, 20))
+                .penalizesBy(0);
+    }
+
+    @Test
+    void deliveryRequiresPickup() {
+        Order order = order(30, 10);
+
+        constraintVerifier.verifyThat(DeliveryConstraintProvider::deliveryRequiresPickup)
+                .given(delivery(order, courier, 20))
+                .penalizesBy(1);
+        // the pickup on another courier is sameOrderSameCourier's business
+        constraintVerifier.verifyThat(DeliveryConstraintProvider::deliveryRequiresPickup)
+                .given(pickup(order, otherCourier, 10), delivery(order, courier, 20))
+                .penalizesBy(0);
+    }
+
+    @Test
+    void onlyOnePickup() {
+        Order order = order(30, 15);
+
+        constraintVerifier.verifyThat(DeliveryConstraintProvider::onlyOnePickup)
+                .given(pickup(order, courier, 10), delivery(order, courier, 20))
+                .penalizesBy(0);
+        // total cook time per extra pickup
+        constraintVerifier.verifyThat(DeliveryConstraintProvider::onlyOnePickup)
+                .given(pickup(order, courier, 10), pickup(order, courier, 12), pickup(order, otherCourier, 14),
+                        delivery(order, courier, 20))
+                .penalizesBy(30);
+    }
+
+    @Test
+    void pickupBeforeDelivery() {
+        Order order = order(30, 10);
+
+        constraintVerifier.verifyThat(DeliveryConstraintProvider::pickupBeforeDelivery)
+                .given(pickup(order, courier, 10), delivery(order, courier, 20))
+                .penalizesBy(0);
+        constraintVerifier.verifyThat(DeliveryConstraintProvider::pickupBeforeDelivery)
+                .given(pickup(order, courier, 20), delivery(order, courier, 20))
+                .penalizesBy(1);
+        // a later pickup on another courier is not compared
+        constraintVerifier.verifyThat(DeliveryConstraintProvider::pickupBeforeDelivery)
+                .given(pickup(order, courier, 30), pickup(order, otherCourier, 40), delivery(order, courier, 20))
+                .penalizesBy(1);
+    }
+
+    @Test
+    void foodMaxDeliveryTimeNotExceeded() {
+        Order order = order(30, 10);
+
+        constraintVerifier.verifyThat(DeliveryConstraintProvider::foodMaxDeliveryTimeNotExceeded)
+                .given(pickup(order, courier, 10), delivery(order, courier, 40))
+                .penalizesBy(0);
+        constraintVerifier.verifyThat(DeliveryConstraintProvider::foodMaxDeliveryTimeNotExceeded)
+                .given(pickup(order, courier, 10), delivery(order, courier, 41))
+                .penalizesBy(1);
+        // one per pickup the delivery is too far behind, pickups after the delivery don't count
+        constraintVerifier.verifyThat(DeliveryConstraintProvider::foodMaxDeliveryTimeNotExceeded)
+                .given(pickup(order, courier, 5), pickup(order, otherCourier, 8), pickup(order, courier, 60),
+                        delivery(order, courier, 50))
+                .penalizesBy(2);
+    }
+
+    private static Order order(int minAllowedTimeToDeliver, int totalCookTime) {
+        Order order = new Order();
+        order.setId("order");
+        order.setMinAllowedTimeToDeliver(minAllowedTimeToDeliver);
+        order.setTotalCookTime(totalCookTime);
+        return order;
+    }
+
+    private Visit pickup(Order order, CourierShift courier, int minute) {
+        Restaurant restaurant = new Restaurant("restaurant", "chain", 1, false, 0, 1440);
+        return assigned(new Visit(order, restaurantLocation, Visit.VisitType.RESTAURANT, restaurant), courier, minute);
+    }
+
+    private Visit delivery(Order order, CourierShift courier, int minute) {
+        return assigned(new Visit(order, restaurantLocation, Visit.VisitType.CUSTOMER), courier, minute);
+    }
+
+    private static Visit assigned(Visit visit, CourierShift courier, int minute) {
+        visit.setCourier(courier);
+        visit.setMinuteTime(minute);
+        return visit;
+    }
+
+    /**
+     * Assigned visits at the one restaurant location with the entries' ids, cook intervals and capacities, so that
+     * {@link CookingTimeline.Entry#of} gives back the entries.
+     */
+    private List<Visit> visits(List<CookingTimeline.Entry> entries) {
+        List<Visit> visits = new ArrayList<>(entries.size());
+        for (CookingTimeline.Entry entry : entries) {
+            Order order = new Order();
+            order.setId("order-" + entry.id());
+            order.setTotalCookTime(entry.end() - entry.start());
+            Restaurant restaurant = new Restaurant("restaurant-" + entry.id(), "chain", entry.capacity(), false,
+                    0, 1440);
+            Visit visit = new Visit(order, restaurantLocation,
+                    entry.pickup() ? Visit.VisitType.RESTAURANT : Visit.VisitType.CUSTOMER, restaurant);
+            visit.setId(entry.id());
+            visit.setCourier(courier);
+            visit.setMinuteTime(entry.end());
+            visits.add(visit);
+        }
+        return visits;
+    }
+}
@@ -0,0 +1,138 @@
+package fdo.solver;
+
+import fdo.domain.CourierShift;
+import fdo.domain.Location;
+import fdo.domain.Order;
+import fdo.domain.TravelMatrix;
+import fdo.domain.Visit;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouteCostTest {
+
+    private static final int LOCATION_COUNT = 30;
+
+    @Test
+    void insertionsMatchFullSimulation() {
+        Random random = new Random(43);
+        List<Location> locations = locations(random);
+        for (int round = 0; round < 400; round++) {
+            CourierShift courier = new CourierShift("c", 10 + random.nextInt(20), 10 + random.nextInt(20));
+            List<Visit> route = randomRoute(random, locations, random.nextInt(12));
+            Visit delivery = onRouteOrNew(random, locations, route);
+            Visit pickup = new Visit(delivery.getOrder(), pick(random, locations), Visit.VisitType.RESTAURANT);
+            long before = RouteCost.of(courier, route);
+            courier.setPinIndex(random.nextInt(3) == 0 ? random.nextInt(route.size() + 1) : 0);
+            int firstIndex = courier.getPinIndex();
+            int[] priced = new int[1];
+
+            RouteCost.simulate(courier, route).forEachInsertion(pickup, delivery,
+                    (pickupIndex, deliveryIndex, costIncrease) -> {
+                        List<Visit> candidate = new ArrayList<>(route);
+                        candidate.add(pickupIndex, pickup);
+                        candidate.add(deliveryIndex, delivery);
+                        assertEquals(RouteCost.of(courier, candidate) - before, costIncrease,
+                                () -> "pickup at " + pickupIndex + ", delivery at " + deliveryIndex + " of " + route);
+                        priced[0]++;
+                    });
+            int size = route.size();
+            assertEquals((size - firstIndex + 1) * (size - firstIndex + 2) / 2, priced[0]);
+        }
+    }
+
+    @Test
+    void noInsertionIsCheaperThanLowerBound() {
+        Random random = new Random(47);
+        List<Location> locations = locations(random);
+        int bounded = 0;
+        for (int round = 0; round < 400; round++) {
+            CourierShift courier = new CourierShift("c", 20, 20);
+            List<Visit> route = randomRoute(random, locations, random.nextInt(10));
+            Visit delivery = newOrder(random, locations, 0);
+            Visit pickup = new Visit(delivery.getOrder(), pick(random, locations), Visit.VisitType.RESTAURANT);
+            RouteCost cost = RouteCost.simulate(courier, route);
+            long lowerBound = cost.insertionLowerBound(delivery.getOrder());
+            if (lowerBound == 0) {
+                continue;
+            }
+            bounded++;
+            cost.forEachInsertion(pickup, delivery, (pickupIndex, deliveryIndex, costIncrease) ->
+                    assertTrue(costIncrease >= lowerBound, () -> costIncrease + " below " + lowerBound));
+        }
+        assertTrue(bounded > 0);
+    }
+
+    /**
+     * A spread out evening of orders with late, too long, overloaded and unpaired visits, in random order.
+     */
+    private static List<Visit> randomRoute(Random random, List<Location> locations, int orderCount) {
+        List<Visit> route = new ArrayList<>();
+        for (int i = 0; i < orderCount; i++) {
+            Visit delivery = newOrder(random, locations, i + 1);
+            Order order = delivery.getOrder();
+            int pickupCount = random.nextInt(8) == 0 ? random.nextInt(3) : 1;
+            for (int j = 0; j < pickupCount; j++) {
+                route.add(new Visit(order, pick(random, locations), Visit.VisitType.RESTAURANT));
+            }
+            route.add(delivery);
+        }
+        if (random.nextBoolean()) {
+            Collections.shuffle(route, random);
+        } else {
+            // keep pickups before their deliveries, orders by earliest minute
+            route.sort((a, b) -> Integer.compare(a.getOrder().getEarliestMinute(), b.getOrder().getEarliestMinute()));
+        }
+        return route;
+    }
+
+    private static Visit onRouteOrNew(Random random, List<Location> locations, List<Visit> route) {
+        if (!route.isEmpty() && random.nextInt(10) == 0) {
+            Order order = route.get(random.nextInt(route.size())).getOrder();
+            return new Visit(order, order.getDeliveryLocation(), Visit.VisitType.CUSTOMER);
+        }
+        return newOrder(random, locations, 0);
+    }
+
+    private static Visit newOrder(Random random, List<Location> locations, int number) {
+        int earliest = random.nextInt(600);
+        Order order = new Order();
+        order.setId("o" + number);
+        order.setEarliestMinute(earliest);
+        order.setLatestMinute(earliest + 20 + random.nextInt(90));
+        order.setMinAllowedTimeToDeliver(15 + random.nextInt(60));
+        order.setHotVolume(random.nextInt(8));
+        order.setColdVolume(random.nextInt(8));
+        order.setDeliveryLocation(pick(random, locations));
+        return new Visit(order, order.getDeliveryLocation(), Visit.VisitType.CUSTOMER);
+    }
+
+    private static Location pick(Random random, List<Location> locations) {
+        return locations.get(random.nextInt(locations.size()));
+    }
+
+    // points of a 20 km square, driven straight at 30 km/h
+    private static List<Location> locations(Random random) {
+        List<Location> locations = new ArrayList<>();
+        TravelMatrix matrix = new TravelMatrix(LOCATION_COUNT);
+        for (int i = 0; i < LOCATION_COUNT; i++) {
+            Location location = new Location((long) i, random.nextDouble() * 20, random.nextDouble() * 20);
+            location.setIndex(i);
+            location.setTravelMatrix(matrix);
+            locations.add(location);
+        }
+        for (Location from : locations) {
+            for (Location to : locations) {
+                double kilometers = Math.hypot(from.getLat() - to.getLat(), from.getLon() - to.getLon());
+                matrix.set(from.getIndex(), to.getIndex(), Math.round(kilometers / 30 * 3600), kilometers);
+            }
+        }
+        return locations;
+    }
+}